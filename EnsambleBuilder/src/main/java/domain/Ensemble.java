@@ -2,10 +2,14 @@ package domain;
 
 import domain.exceptions.ForecastNotFitedModelException;
 import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
 import domain.exceptions.InvalidTemporaryValueException;
 import domain.exceptions.NoEqualsTimeSeriesException;
+import domain.metrics.Metrics;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,6 +23,11 @@ public abstract class Ensemble extends Model {
      */
     protected List<Model> models;
 
+    /**
+     * Прогнозы моделей ансамбля.
+     */
+    protected ForecastMatrix forecastMatrix;
+
     public Ensemble(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
         super(timeSeries, 1, forecastCount, trainPercent, testPercent);
         models = new ArrayList<Model>();
@@ -33,6 +42,16 @@ public abstract class Ensemble extends Model {
         return models;
     }
 
+    /**
+     * Получить матрицу прогнозов моделей ансамбля.
+     *
+     * @return матрица прогнозов (null, пока ансамбль не обучен).
+     */
+    @Nullable
+    public ForecastMatrix getForecastMatrix() {
+        return forecastMatrix;
+    }
+
     /**
      * Добавить модель.
      *
@@ -63,11 +82,44 @@ public abstract class Ensemble extends Model {
     public void fit() throws InvalidTemporaryValueException, ForecastNotFitedModelException, IOException {
         for (Model model : models) {
             if (!model.isFit()) {
+                long start = Metrics.start();
                 model.fit();
+                Metrics.stop(Metrics.Stage.MODEL_FIT, model, start);
             }
         }
+        long start = Metrics.start();
+        forecastMatrix = new ForecastMatrix(models);
         fitMetaAlgorithm();
         setFit();
+        Metrics.stop(Metrics.Stage.ENSEMBLE_FIT, this, start);
+    }
+
+    /**
+     * Учесть значения, добавленные во временной ряд после обучения.
+     * Сначала ряд догоняют модели ансамбля, затем метаалгоритм.
+     * Метаалгоритм меняет веса моделей, поэтому прогнозы ансамбля внутри ряда пересчитываются.
+     */
+    @Override
+    public void refresh() throws ForecastNotFitedModelException, InvalidTemporaryValueException {
+        for (Model model : models) {
+            model.refresh();
+        }
+        forecastMatrix = new ForecastMatrix(models);
+        super.refresh();
+        recalculateFittedValues();
+    }
+
+    /**
+     * Восстановить состояние ансамбля. Модели ансамбля к этому моменту уже восстановлены.
+     */
+    @Override
+    void readSnapshot(DataInputStream in) throws InvalidSnapshotException, IOException {
+        try {
+            forecastMatrix = new ForecastMatrix(models);
+        } catch (ForecastNotFitedModelException e) {
+            throw new InvalidSnapshotException();
+        }
+        super.readSnapshot(in);
     }
 
     /**
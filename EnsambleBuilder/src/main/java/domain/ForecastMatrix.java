@@ -0,0 +1,60 @@
+package domain;
+
+import domain.exceptions.ForecastNotFitedModelException;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
+
+/**
+ * Матрица прогнозов "модели x метки времени" для моделей ансамбля.
+ * Строки не копируются: это прогнозы, рассчитанные моделями один раз после обучения,
+ * поэтому одна и та же модель в тысячах ансамблей не пересчитывает свои прогнозы.
+ */
+@ParametersAreNonnullByDefault
+public class ForecastMatrix {
+    /**
+     * Прогнозы моделей (индекс = метка времени - 1).
+     */
+    private final double[][] rows;
+
+    /**
+     * @param models обученные модели.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     */
+    public ForecastMatrix(List<Model> models) throws ForecastNotFitedModelException {
+        rows = new double[models.size()][];
+        for (int i = 0; i < rows.length; ++i) {
+            rows[i] = models.get(i).getFittedValues();
+        }
+    }
+
+    /**
+     * Получить прогноз модели.
+     *
+     * @param model номер модели.
+     * @param t     метка времени.
+     * @return прогноз.
+     */
+    public double get(int model, int t) {
+        return rows[model][t - 1];
+    }
+
+    /**
+     * Получить прогнозы модели (индекс = метка времени - 1).
+     *
+     * @param model номер модели.
+     * @return прогнозы модели.
+     */
+    public double[] getRow(int model) {
+        return rows[model];
+    }
+
+    /**
+     * Получить количество моделей.
+     *
+     * @return количество моделей.
+     */
+    public int getModelCount() {
+        return rows.length;
+    }
+}
@@ -2,14 +2,16 @@ package domain;
 
 import domain.exceptions.ForecastNotFitedModelException;
 import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
 import domain.exceptions.InvalidTemporaryValueException;
 import domain.exceptions.TimeSeriesSizeException;
-import org.jetbrains.annotations.Contract;
+import domain.metrics.Metrics;
 
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 
 @ParametersAreNonnullByDefault
 public abstract class Model {
@@ -19,14 +21,14 @@ public abstract class Model {
     protected final TimeSeries timeSeries;
 
     /**
-     * Временной ряд для обучения.
+     * Временной ряд для обучения (представление ряда, общее для моделей с тем же разбиением).
      */
-    protected TimeSeries timeSeriesTrain;
+    protected final TimeSeries timeSeriesTrain;
 
     /**
-     * Временной ряд для тестирования.
+     * Временной ряд для тестирования (представление ряда, общее для моделей с тем же разбиением).
      */
-    protected TimeSeries timeSeriesTest;
+    protected final TimeSeries timeSeriesTest;
 
     /**
      * Горизонт прогноза.
@@ -38,6 +40,11 @@ public abstract class Model {
      */
     protected double[] forecast;
 
+    /**
+     * Прогнозы модели внутри временного ряда, рассчитанные после обучения (индекс = метка времени - 1).
+     */
+    private double[] fittedValues;
+
     /**
      * Порядок модели.
      */
@@ -48,6 +55,20 @@ public abstract class Model {
      */
     private boolean isFit;
 
+    /**
+     * Количество значений временного ряда, учтенных моделью.
+     */
+    private int observedSize;
+
+    /**
+     * Процент обучающей выборки.
+     */
+    private final int trainPercent;
+
+    /**
+     * Процент тестовой выборки.
+     */
+    private final int testPercent;
 
     public Model(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
         if (order < 1 || order >= timeSeries.getSize()) {
@@ -57,10 +78,12 @@ public abstract class Model {
         this.timeSeries = timeSeries;
         this.order = order;
         this.forecastCount = forecastCount;
+        this.trainPercent = trainPercent;
+        this.testPercent = testPercent;
 
-        this.timeSeriesTrain = new TimeSeries();
-        this.timeSeriesTest = new TimeSeries();
-        partTimeSeries(trainPercent, testPercent);
+        TimeSeries.Split split = timeSeries.split(trainPercent, testPercent);
+        this.timeSeriesTrain = split.getTrain();
+        this.timeSeriesTest = split.getTest();
     }
 
     /**
@@ -87,6 +110,36 @@ public abstract class Model {
         return mape(timeSeriesTest, timeSeriesTrain.getSize());
     }
 
+    /**
+     * Рассчитать показатели качества на обучающей и тестовой выборках за один проход по прогнозам модели.
+     *
+     * @return показатели качества.
+     * @throws TimeSeriesSizeException        некорректная длина временных рядов.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     */
+    public QualityReport evaluate() throws TimeSeriesSizeException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        int trainSize = timeSeriesTrain.getSize();
+        int testSize = timeSeriesTest.getSize();
+        if (trainSize <= order || testSize <= order) {
+            throw new TimeSeriesSizeException();
+        }
+        long start = Metrics.start();
+        double[] fitted = forecastRange(order + 1, trainSize + testSize);
+        QualityMetrics train = new QualityMetrics();
+        QualityMetrics test = new QualityMetrics();
+        for (int i = order + 1; i <= Math.max(trainSize, testSize); ++i) {
+            if (i <= trainSize) {
+                train.add(timeSeriesTrain.getTimeValue(i), fitted[i - order - 1]);
+            }
+            if (i <= testSize) {
+                test.add(timeSeriesTest.getTimeValue(i), fitted[i + trainSize - order - 1]);
+            }
+        }
+        Metrics.stop(Metrics.Stage.QUALITY, this, start);
+        return new QualityReport(train, test);
+    }
+
     /**
      * Получить прогноз.
      *
@@ -96,6 +149,64 @@ public abstract class Model {
         return forecast;
     }
 
+    /**
+     * Получить прогноз модели для метки времени.
+     * Для меток внутри временного ряда используется прогноз, рассчитанный один раз после обучения.
+     *
+     * @param t метка времени предсказываемого значения.
+     * @return прогноз.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     */
+    public double getFittedValue(int t) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
+        if (fittedValues != null && t > order && t <= observedSize) {
+            return fittedValues[t - 1];
+        }
+        return forecast(t);
+    }
+
+    /**
+     * Получить прогнозы модели для диапазона меток времени.
+     * Если диапазон целиком лежит внутри учтенной части ряда, значения копируются из рассчитанных после обучения.
+     *
+     * @param from метка времени первого предсказываемого значения (включительно).
+     * @param to   метка времени последнего предсказываемого значения (включительно).
+     * @return прогнозы (индекс = метка времени - from).
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     */
+    public double[] forecastRange(int from, int to) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
+        if (to < from) {
+            return new double[0];
+        }
+        long start = Metrics.start();
+        double[] values;
+        if (fittedValues != null && from > order && to <= observedSize) {
+            values = Arrays.copyOfRange(fittedValues, from - 1, to);
+        } else {
+            EnableForForecasting(from);
+            EnableForForecasting(to);
+            values = predictRange(from, to);
+        }
+        Metrics.stop(Metrics.Stage.MODEL_FORECAST, this, start);
+        return values;
+    }
+
+    /**
+     * Получить прогнозы модели внутри временного ряда (индекс = метка времени - 1).
+     * Значения для меток, не превышающих порядок модели, не определены, длина массива может превышать длину ряда.
+     * Массив общий для всех ансамблей с этой моделью и не должен изменяться.
+     *
+     * @return прогнозы модели.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     */
+    public double[] getFittedValues() throws ForecastNotFitedModelException {
+        if (fittedValues == null) {
+            throw new ForecastNotFitedModelException();
+        }
+        return fittedValues;
+    }
+
     /**
      * Была ли модель переобучена.
      *
@@ -109,10 +220,7 @@ public abstract class Model {
         if (!isFit()) {
             throw new ForecastNotFitedModelException();
         }
-        double mapeTrain = getTrainMape();
-        double mapeTest = getTestMape();
-        double sMape = Quality.sMape(mapeTrain, mapeTest);
-        return sMape > border;
+        return evaluate().getOverFit() > border;
     }
 
     /**
@@ -120,6 +228,62 @@ public abstract class Model {
      */
     public abstract void fit() throws InvalidTemporaryValueException, ForecastNotFitedModelException, IOException;
 
+    /**
+     * Добавить новое значение во временной ряд и учесть его без переобучения модели.
+     * Значение должно быть приведено к масштабу ряда (нормализовано так же, как ряд).
+     *
+     * @param newValue новое значение временного ряда.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     */
+    public void update(double newValue) throws ForecastNotFitedModelException, InvalidTemporaryValueException {
+        if (!isFit()) {
+            throw new ForecastNotFitedModelException();
+        }
+        timeSeries.addTimeValue(newValue);
+        refresh();
+    }
+
+    /**
+     * Учесть значения, добавленные во временной ряд после обучения, без переобучения модели.
+     * Если ряд общий для нескольких моделей, значение добавляется через update одной из них,
+     * остальные модели догоняют ряд этим методом.
+     *
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     */
+    public void refresh() throws ForecastNotFitedModelException, InvalidTemporaryValueException {
+        if (!isFit()) {
+            throw new ForecastNotFitedModelException();
+        }
+        if (observedSize == timeSeries.getSize()) {
+            return;
+        }
+        while (observedSize < timeSeries.getSize()) {
+            int t = observedSize + 1;
+            double fitted = forecast(t);
+            if (t > fittedValues.length) {
+                fittedValues = Arrays.copyOf(fittedValues, Math.max(t, fittedValues.length * 2));
+            }
+            fittedValues[t - 1] = fitted;
+            observedSize = t;
+            updateState(t);
+        }
+        rollForecast();
+    }
+
+    /**
+     * Учесть новое значение временного ряда в состоянии модели.
+     *
+     * @param t метка времени нового значения.
+     */
+    protected abstract void updateState(int t) throws ForecastNotFitedModelException, InvalidTemporaryValueException;
+
+    /**
+     * Пересчитать прогноз заданной длины от конца временного ряда.
+     */
+    protected abstract void rollForecast() throws ForecastNotFitedModelException, InvalidTemporaryValueException;
+
     /**
      * Предсказать по обученной модели.
      *
@@ -128,6 +292,22 @@ public abstract class Model {
      */
     public abstract double forecast(int t) throws InvalidTemporaryValueException, ForecastNotFitedModelException;
 
+    /**
+     * Предсказать по обученной модели значения для диапазона меток времени.
+     * Метки времени уже проверены, по умолчанию прогноз строится поточечно.
+     *
+     * @param from метка времени первого предсказываемого значения (включительно).
+     * @param to   метка времени последнего предсказываемого значения (включительно).
+     * @return прогнозы (индекс = метка времени - from).
+     */
+    protected double[] predictRange(int from, int to) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
+        double[] values = new double[to - from + 1];
+        for (int t = from; t <= to; ++t) {
+            values[t - from] = forecast(t);
+        }
+        return values;
+    }
+
     /**
      * Получить временной ряд, с которым работает модель.
      *
@@ -147,10 +327,20 @@ public abstract class Model {
     }
 
     /**
-     * Проставить флаг обученности на модель.
+     * Проставить флаг обученности на модель и рассчитать прогнозы внутри временного ряда.
      */
     public void setFit() {
         isFit = true;
+        fittedValues = calculateFittedValues();
+        observedSize = timeSeries.getSize();
+    }
+
+    /**
+     * Пересчитать прогнозы внутри временного ряда после изменения состояния,
+     * от которого зависят прогнозы во всех метках времени.
+     */
+    protected void recalculateFittedValues() {
+        fittedValues = calculateFittedValues();
     }
 
     /**
@@ -162,6 +352,33 @@ public abstract class Model {
         return order;
     }
 
+    /**
+     * Получить горизонт прогноза.
+     *
+     * @return горизонт прогноза.
+     */
+    public int getForecastCount() {
+        return forecastCount;
+    }
+
+    /**
+     * Получить процент обучающей выборки.
+     *
+     * @return процент обучающей выборки.
+     */
+    public int getTrainPercent() {
+        return trainPercent;
+    }
+
+    /**
+     * Получить процент тестовой выборки.
+     *
+     * @return процент тестовой выборки.
+     */
+    public int getTestPercent() {
+        return testPercent;
+    }
+
     /**
      * Получить обучающий временной ряд.
      *
@@ -180,6 +397,67 @@ public abstract class Model {
         return timeSeriesTest;
     }
 
+    /**
+     * Записать состояние обученной модели, см. {@link ModelSnapshot}.
+     *
+     * @param out поток снимка.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws IOException                    при записи.
+     */
+    void writeSnapshot(DataOutputStream out) throws ForecastNotFitedModelException, IOException {
+        if (!isFit()) {
+            throw new ForecastNotFitedModelException();
+        }
+        out.writeInt(observedSize);
+        out.writeLong(fingerprint(observedSize));
+        ModelSnapshot.writeDoubles(out, fittedValues);
+        ModelSnapshot.writeDoubles(out, forecast);
+        writeState(out);
+    }
+
+    /**
+     * Восстановить состояние обученной модели, записанное {@link #writeSnapshot(DataOutputStream)}.
+     * Временной ряд должен начинаться со значений, учтенных моделью при записи снимка;
+     * значения, добавленные позже, учитываются через {@link #refresh()}.
+     *
+     * @param in поток снимка.
+     * @throws InvalidSnapshotException снимок не соответствует модели или временному ряду.
+     * @throws IOException              при чтении.
+     */
+    void readSnapshot(DataInputStream in) throws InvalidSnapshotException, IOException {
+        int observed = in.readInt();
+        if (observed <= order || observed > timeSeries.getSize() || in.readLong() != fingerprint(observed)) {
+            throw new InvalidSnapshotException();
+        }
+        double[] fitted = ModelSnapshot.readDoubles(in);
+        double[] forecast = ModelSnapshot.readDoubles(in);
+        if (fitted.length < observed || forecast.length != forecastCount) {
+            throw new InvalidSnapshotException();
+        }
+        readState(in);
+        this.fittedValues = fitted;
+        this.forecast = forecast;
+        this.observedSize = observed;
+        this.isFit = true;
+    }
+
+    /**
+     * Записать собственное состояние обученной модели (коэффициенты, параметры сети и т.п.).
+     *
+     * @param out поток снимка.
+     * @throws IOException при записи.
+     */
+    protected abstract void writeState(DataOutputStream out) throws IOException;
+
+    /**
+     * Прочитать собственное состояние обученной модели, записанное {@link #writeState(DataOutputStream)}.
+     *
+     * @param in поток снимка.
+     * @throws InvalidSnapshotException некорректное состояние.
+     * @throws IOException              при чтении.
+     */
+    protected abstract void readState(DataInputStream in) throws InvalidSnapshotException, IOException;
+
     /**
      * Выброс исключений в случае невозможности сделать предсказание.
      *
@@ -197,32 +475,37 @@ public abstract class Model {
     }
 
     /**
-     * Поделить временной ряд.
+     * Расчет прогнозов модели для всех меток времени временного ряда.
+     *
+     * @return прогнозы модели.
      */
-    private void partTimeSeries(int trainPercent, int testPercent) {
-        List<Object> keys = timeSeries.getTimeSeries().keySet().stream().collect(Collectors.toList());
-        int size = keys.size();
-        int trainSize = partSize(size, trainPercent);
-        int testSize = partSize(size, testPercent);
-        int start = size - (trainSize + testSize);
-        for (Object key : keys.subList(start, trainSize + start)) {
-            this.timeSeriesTrain.addTimeValue(timeSeries.getTimeValue((int) key));
+    private double[] calculateFittedValues() {
+        double[] values = new double[timeSeries.getSize()];
+        Arrays.fill(values, 0, Math.min(order, values.length), Double.NaN);
+        if (order >= values.length) {
+            return values;
         }
-        for (Object key : keys.subList(trainSize + start, size)) {
-            this.timeSeriesTest.addTimeValue(timeSeries.getTimeValue((int) key));
+        try {
+            double[] fitted = predictRange(order + 1, values.length);
+            System.arraycopy(fitted, 0, values, order, fitted.length);
+        } catch (InvalidTemporaryValueException | ForecastNotFitedModelException e) {
+            throw new IllegalStateException(e);
         }
+        return values;
     }
 
     /**
-     * Расчитать длину обучающего временного ряда.
+     * Рассчитать контрольную сумму первых значений временного ряда.
      *
-     * @param size    длина временного ряда.
-     * @param percent процент тестовой выборки.
-     * @return размер обучающей выборки.
+     * @param count количество значений.
+     * @return контрольная сумма.
      */
-    @Contract(pure = true)
-    private int partSize(int size, int percent) {
-        return (int) (size * ((double) percent / 100));
+    private long fingerprint(int count) {
+        long hash = count;
+        for (int t = timeSeries.getStartTime(); t < timeSeries.getStartTime() + count; ++t) {
+            hash = 31 * hash + Double.doubleToLongBits(timeSeries.getTimeValue(t));
+        }
+        return hash;
     }
 
     /**
@@ -235,12 +518,11 @@ public abstract class Model {
      * @throws TimeSeriesSizeException        некорректная длина временных рядов.
      */
     private double mape(TimeSeries timeSeries, int k) throws InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException {
-        TimeSeries timeSeriesFact = new TimeSeries();
-        TimeSeries timeSeriesCalc = new TimeSeries();
-        for (int i = order + 1; i <= timeSeries.getSize(); ++i) {
-            timeSeriesFact.add(i, timeSeries.getTimeValue(i));
-            timeSeriesCalc.add(i, forecast(i + k));
+        int length = timeSeries.getSize() - order;
+        if (length <= 0) {
+            throw new TimeSeriesSizeException();
         }
-        return Quality.mape(timeSeriesFact, timeSeriesCalc);
+        double[] fitted = forecastRange(order + 1 + k, timeSeries.getSize() + k);
+        return Quality.mape(timeSeries.toArray(order + 1, timeSeries.getSize()), 0, fitted, 0, length);
     }
 }
@@ -0,0 +1,288 @@
+package domain;
+
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
+import domain.exceptions.InvalidTemporaryValueException;
+import domain.exceptions.NoEqualsTimeSeriesException;
+import domain.models.ensemble.NeuralEnsemble;
+import domain.models.ensemble.StackingEnsemble;
+import domain.models.ensemble.WeightedAverageEnsemble;
+import domain.models.single.Arima;
+import domain.models.single.Fuzzy;
+import domain.models.single.Neural;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Снимок обученной модели: загрузка снимка заменяет повторное обучение.
+ * <p>
+ * Формат (big-endian, {@link DataOutputStream}): сигнатура, версия, затем запись модели -
+ * тип, порядок, горизонт прогноза, проценты обучающей и тестовой выборок, для ансамбля - записи его моделей,
+ * количество учтенных значений ряда и их контрольная сумма, прогнозы внутри ряда, прогноз,
+ * собственное состояние модели (коэффициенты ARIMA и остатки, параметры сети DL4J или сети на Java, значения нечеткой модели,
+ * веса ансамбля, матрица Грама стекинга или параметры метасети).
+ * <p>
+ * Снимок загружается только для того же временного ряда (с той же нормализацией); значения,
+ * добавленные в ряд после записи снимка, учитываются моделью без переобучения.
+ */
+@ParametersAreNonnullByDefault
+public final class ModelSnapshot {
+    /**
+     * Сигнатура снимка ("ENSM").
+     */
+    private static final int MAGIC = 0x4D534E45;
+    private static final int VERSION = 1;
+
+    private static final byte ARIMA = 1;
+    private static final byte NEURAL = 2;
+    private static final byte FUZZY = 3;
+    private static final byte WEIGHTED_AVERAGE_ENSEMBLE = 4;
+    private static final byte NEURAL_ENSEMBLE = 5;
+    private static final byte STACKING_ENSEMBLE = 6;
+    private static final byte JAVA_NEURAL = 7;
+
+    private ModelSnapshot() {
+    }
+
+    /**
+     * Записать снимок обученной модели. Поток не закрывается.
+     *
+     * @param model  обученная модель.
+     * @param stream поток.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws IOException                    при записи.
+     */
+    public static void write(Model model, OutputStream stream) throws ForecastNotFitedModelException, IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeModel(model, out);
+        out.flush();
+    }
+
+    /**
+     * Прочитать снимок модели. Поток не закрывается.
+     *
+     * @param stream     поток.
+     * @param timeSeries временной ряд модели (нормализованный так же, как при записи снимка).
+     * @return обученная модель.
+     * @throws InvalidSnapshotException снимок некорректен или записан для другого временного ряда.
+     * @throws IOException              при чтении.
+     */
+    public static Model read(InputStream stream, TimeSeries timeSeries) throws InvalidSnapshotException, IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new InvalidSnapshotException();
+        }
+        Model model = readModel(in, timeSeries);
+        try {
+            model.refresh();
+        } catch (ForecastNotFitedModelException | InvalidTemporaryValueException e) {
+            throw new InvalidSnapshotException();
+        }
+        return model;
+    }
+
+    /**
+     * Записать массив значений с длиной.
+     *
+     * @param out    поток снимка.
+     * @param values значения.
+     * @throws IOException при записи.
+     */
+    public static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    /**
+     * Прочитать массив значений, записанный {@link #writeDoubles(DataOutputStream, double[])}.
+     *
+     * @param in поток снимка.
+     * @return значения.
+     * @throws InvalidSnapshotException некорректная длина массива.
+     * @throws IOException              при чтении.
+     */
+    public static double[] readDoubles(DataInputStream in) throws InvalidSnapshotException, IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new InvalidSnapshotException();
+        }
+        double[] values = new double[length];
+        for (int i = 0; i < length; ++i) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Записать массив байтов с длиной.
+     *
+     * @param out   поток снимка.
+     * @param bytes байты.
+     * @throws IOException при записи.
+     */
+    public static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Прочитать массив байтов, записанный {@link #writeBytes(DataOutputStream, byte[])}.
+     *
+     * @param in поток снимка.
+     * @return байты.
+     * @throws InvalidSnapshotException некорректная длина массива.
+     * @throws IOException              при чтении.
+     */
+    public static byte[] readBytes(DataInputStream in) throws InvalidSnapshotException, IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new InvalidSnapshotException();
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Записать параметры и состояние оптимизатора нейронной сети (формат {@link ModelSerializer}).
+     *
+     * @param out поток снимка.
+     * @param net нейронная сеть.
+     * @throws IOException при записи.
+     */
+    public static void writeNetwork(DataOutputStream out, MultiLayerNetwork net) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ModelSerializer.writeModel(net, bytes, true);
+        writeBytes(out, bytes.toByteArray());
+    }
+
+    /**
+     * Прочитать нейронную сеть, записанную {@link #writeNetwork(DataOutputStream, MultiLayerNetwork)}.
+     *
+     * @param in     поток снимка.
+     * @param inputs ожидаемое количество входов сети.
+     * @return нейронная сеть.
+     * @throws InvalidSnapshotException конфигурация сети повреждена или количество входов сети не совпадает с ожидаемым.
+     * @throws IOException              при чтении.
+     */
+    public static MultiLayerNetwork readNetwork(DataInputStream in, int inputs) throws InvalidSnapshotException, IOException {
+        byte[] bytes = readBytes(in);
+        MultiLayerNetwork net;
+        try {
+            net = ModelSerializer.restoreMultiLayerNetwork(new ByteArrayInputStream(bytes), true);
+        } catch (RuntimeException e) {
+            // DL4J сообщает о поврежденной конфигурации непроверяемыми исключениями
+            throw new InvalidSnapshotException();
+        }
+        Layer input = net.getLayerWiseConfigurations().getConf(0).getLayer();
+        if (!(input instanceof FeedForwardLayer) || ((FeedForwardLayer) input).getNIn() != inputs) {
+            throw new InvalidSnapshotException();
+        }
+        return net;
+    }
+
+    private static void writeModel(Model model, DataOutputStream out) throws ForecastNotFitedModelException, IOException {
+        out.writeByte(getType(model));
+        out.writeInt(model.getOrder());
+        out.writeInt(model.getForecastCount());
+        out.writeInt(model.getTrainPercent());
+        out.writeInt(model.getTestPercent());
+        if (model instanceof Ensemble) {
+            Ensemble ensemble = (Ensemble) model;
+            out.writeInt(ensemble.getModels().size());
+            for (Model member : ensemble.getModels()) {
+                writeModel(member, out);
+            }
+        }
+        model.writeSnapshot(out);
+    }
+
+    private static Model readModel(DataInputStream in, TimeSeries timeSeries) throws InvalidSnapshotException, IOException {
+        byte type = in.readByte();
+        int order = in.readInt();
+        int forecastCount = in.readInt();
+        int trainPercent = in.readInt();
+        int testPercent = in.readInt();
+        Model model;
+        try {
+            switch (type) {
+                case ARIMA:
+                    model = new Arima(timeSeries, order, forecastCount, trainPercent, testPercent);
+                    break;
+                case NEURAL:
+                    model = new Neural(timeSeries, order, forecastCount, trainPercent, testPercent, Neural.Engine.DL4J);
+                    break;
+                case JAVA_NEURAL:
+                    model = new Neural(timeSeries, order, forecastCount, trainPercent, testPercent, Neural.Engine.JAVA);
+                    break;
+                case FUZZY:
+                    model = new Fuzzy(timeSeries, order, forecastCount, trainPercent, testPercent);
+                    break;
+                case WEIGHTED_AVERAGE_ENSEMBLE:
+                    model = readMembers(in, new WeightedAverageEnsemble(timeSeries, forecastCount, trainPercent, testPercent));
+                    break;
+                case NEURAL_ENSEMBLE:
+                    model = readMembers(in, new NeuralEnsemble(timeSeries, forecastCount, trainPercent, testPercent));
+                    break;
+                case STACKING_ENSEMBLE:
+                    model = readMembers(in, new StackingEnsemble(timeSeries, forecastCount, trainPercent, testPercent));
+                    break;
+                default:
+                    throw new InvalidSnapshotException();
+            }
+        } catch (InvalidOrderException | NoEqualsTimeSeriesException e) {
+            throw new InvalidSnapshotException();
+        }
+        if (model.getOrder() != order) {
+            throw new InvalidSnapshotException();
+        }
+        model.readSnapshot(in);
+        return model;
+    }
+
+    private static Ensemble readMembers(DataInputStream in, Ensemble ensemble) throws InvalidSnapshotException, IOException, NoEqualsTimeSeriesException {
+        int count = in.readInt();
+        if (count < 1) {
+            throw new InvalidSnapshotException();
+        }
+        for (int i = 0; i < count; ++i) {
+            ensemble.addModel(readModel(in, ensemble.getTimeSeries()));
+        }
+        return ensemble;
+    }
+
+    private static byte getType(Model model) {
+        if (model instanceof Arima) {
+            return ARIMA;
+        } else if (model instanceof Neural) {
+            return (((Neural) model).getEngine() == Neural.Engine.JAVA) ? JAVA_NEURAL : NEURAL;
+        } else if (model instanceof Fuzzy) {
+            return FUZZY;
+        } else if (model instanceof WeightedAverageEnsemble) {
+            return WEIGHTED_AVERAGE_ENSEMBLE;
+        } else if (model instanceof NeuralEnsemble) {
+            return NEURAL_ENSEMBLE;
+        } else if (model instanceof StackingEnsemble) {
+            return STACKING_ENSEMBLE;
+        }
+        throw new IllegalArgumentException("Снимок не поддерживается для модели " + model.getClass().getName());
+    }
+}
@@ -5,7 +5,6 @@ import domain.exceptions.TimeSeriesSizeException;
 import org.jetbrains.annotations.Contract;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.util.Map;
 
 @ParametersAreNonnullByDefault
 public class Quality {
@@ -23,12 +22,116 @@ public class Quality {
         }
 
         double sum = 0;
-        for (Map.Entry<Integer, Double> value : timeSeriesCalc.getTimeSeries().entrySet()) {
-            sum += percentError(timeSeriesFact.getTimeValue(value.getKey()), value.getValue());
+        for (int t = timeSeriesCalc.getStartTime(); t <= timeSeriesCalc.getEndTime(); ++t) {
+            sum += percentError(timeSeriesFact.getTimeValue(t), timeSeriesCalc.getTimeValue(t));
         }
         return sum / size;
     }
 
+    /**
+     * Рассчитать среднюю ошибку аппроксимации для диапазонов массивов.
+     * @param fact     фактические значения.
+     * @param factFrom индекс первого фактического значения.
+     * @param calc     расчетные значения.
+     * @param calcFrom индекс первого расчетного значения.
+     * @param length   количество пар.
+     * @return средняя ошибка аппроксимации.
+     */
+    public static double mape(double[] fact, int factFrom, double[] calc, int calcFrom, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; ++i) {
+            sum += Math.abs(fact[factFrom + i] - calc[calcFrom + i]) / fact[factFrom + i];
+        }
+        return sum / length;
+    }
+
+    /**
+     * Рассчитать симметричную среднюю ошибку аппроксимации для диапазонов массивов.
+     * @param fact     фактические значения.
+     * @param factFrom индекс первого фактического значения.
+     * @param calc     расчетные значения.
+     * @param calcFrom индекс первого расчетного значения.
+     * @param length   количество пар.
+     * @return sMAPE.
+     */
+    public static double symmetricMape(double[] fact, int factFrom, double[] calc, int calcFrom, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; ++i) {
+            sum += symmetricPercentError(fact[factFrom + i], calc[calcFrom + i]);
+        }
+        return sum / length;
+    }
+
+    /**
+     * Рассчитать среднюю абсолютную ошибку для диапазонов массивов.
+     * @param fact     фактические значения.
+     * @param factFrom индекс первого фактического значения.
+     * @param calc     расчетные значения.
+     * @param calcFrom индекс первого расчетного значения.
+     * @param length   количество пар.
+     * @return MAE.
+     */
+    public static double mae(double[] fact, int factFrom, double[] calc, int calcFrom, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; ++i) {
+            sum += Math.abs(fact[factFrom + i] - calc[calcFrom + i]);
+        }
+        return sum / length;
+    }
+
+    /**
+     * Рассчитать корень из средней квадратичной ошибки для диапазонов массивов.
+     * @param fact     фактические значения.
+     * @param factFrom индекс первого фактического значения.
+     * @param calc     расчетные значения.
+     * @param calcFrom индекс первого расчетного значения.
+     * @param length   количество пар.
+     * @return RMSE.
+     */
+    public static double rmse(double[] fact, int factFrom, double[] calc, int calcFrom, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; ++i) {
+            double error = fact[factFrom + i] - calc[calcFrom + i];
+            sum += error * error;
+        }
+        return Math.sqrt(sum / length);
+    }
+
+    /**
+     * Рассчитать среднюю абсолютную масштабированную ошибку для диапазонов массивов.
+     * Масштаб - средняя ошибка наивного прогноза (предыдущее фактическое значение) на тех же фактических значениях.
+     * @param fact     фактические значения.
+     * @param factFrom индекс первого фактического значения.
+     * @param calc     расчетные значения.
+     * @param calcFrom индекс первого расчетного значения.
+     * @param length   количество пар.
+     * @return MASE.
+     */
+    public static double mase(double[] fact, int factFrom, double[] calc, int calcFrom, int length) {
+        double naive = 0;
+        for (int i = 1; i < length; ++i) {
+            naive += Math.abs(fact[factFrom + i] - fact[factFrom + i - 1]);
+        }
+        return mae(fact, factFrom, calc, calcFrom, length) / (naive / (length - 1));
+    }
+
+    /**
+     * Рассчитать все показатели качества за один проход.
+     * @param fact     фактические значения.
+     * @param factFrom индекс первого фактического значения.
+     * @param calc     расчетные значения.
+     * @param calcFrom индекс первого расчетного значения.
+     * @param length   количество пар.
+     * @return показатели качества.
+     */
+    public static QualityMetrics metrics(double[] fact, int factFrom, double[] calc, int calcFrom, int length) {
+        QualityMetrics metrics = new QualityMetrics();
+        for (int i = 0; i < length; ++i) {
+            metrics.add(fact[factFrom + i], calc[calcFrom + i]);
+        }
+        return metrics;
+    }
+
     /**
      * Рассчитать SMape для ошибок аппроксимации.
      * @param mapeTrain mape обучающей выборки.
@@ -50,4 +153,16 @@ public class Quality {
     public static double percentError(double valueFact, double valueCalc) {
         return Math.abs(valueFact - valueCalc) / valueFact;
     }
+
+    /**
+     * Рассчитать симметричную абсолютную процентную ошибку.
+     * @param valueFact фактическое значение.
+     * @param valueCalc расчетное значение.
+     * @return симметричная абсолютная процентная ошибка (0, если оба значения нулевые).
+     */
+    @Contract(pure = true)
+    public static double symmetricPercentError(double valueFact, double valueCalc) {
+        double scale = Math.abs(valueFact) + Math.abs(valueCalc);
+        return scale == 0 ? 0 : 2 * Math.abs(valueFact - valueCalc) / scale;
+    }
 }
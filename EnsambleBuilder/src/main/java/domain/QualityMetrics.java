@@ -0,0 +1,92 @@
+package domain;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Накопитель показателей качества прогноза: MAPE, sMAPE, RMSE, MAE и MASE.
+ * Пары "факт - прогноз" добавляются по одной, показатели рассчитываются по накопленным суммам.
+ * MASE нормирует MAE на среднюю ошибку наивного прогноза (предыдущее фактическое значение) по тем же точкам.
+ */
+@ParametersAreNonnullByDefault
+public class QualityMetrics {
+    private int count;
+    private double percentErrorSum;
+    private double symmetricErrorSum;
+    private double absoluteErrorSum;
+    private double squaredErrorSum;
+    private double naiveErrorSum;
+    private double previousFact = Double.NaN;
+
+    /**
+     * Добавить пару значений.
+     *
+     * @param valueFact фактическое значение.
+     * @param valueCalc расчетное значение.
+     */
+    public void add(double valueFact, double valueCalc) {
+        double error = Math.abs(valueFact - valueCalc);
+        percentErrorSum += Quality.percentError(valueFact, valueCalc);
+        symmetricErrorSum += Quality.symmetricPercentError(valueFact, valueCalc);
+        absoluteErrorSum += error;
+        squaredErrorSum += error * error;
+        if (count > 0) {
+            naiveErrorSum += Math.abs(valueFact - previousFact);
+        }
+        previousFact = valueFact;
+        ++count;
+    }
+
+    /**
+     * Получить количество учтенных пар.
+     *
+     * @return количество пар.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Получить среднюю абсолютную процентную ошибку.
+     *
+     * @return MAPE.
+     */
+    public double getMape() {
+        return percentErrorSum / count;
+    }
+
+    /**
+     * Получить симметричную среднюю абсолютную процентную ошибку.
+     *
+     * @return sMAPE.
+     */
+    public double getSymmetricMape() {
+        return symmetricErrorSum / count;
+    }
+
+    /**
+     * Получить среднюю абсолютную ошибку.
+     *
+     * @return MAE.
+     */
+    public double getMae() {
+        return absoluteErrorSum / count;
+    }
+
+    /**
+     * Получить корень из средней квадратичной ошибки.
+     *
+     * @return RMSE.
+     */
+    public double getRmse() {
+        return Math.sqrt(squaredErrorSum / count);
+    }
+
+    /**
+     * Получить среднюю абсолютную масштабированную ошибку.
+     *
+     * @return MASE (бесконечность или NaN, если наивный прогноз не ошибается).
+     */
+    public double getMase() {
+        return getMae() / (naiveErrorSum / (count - 1));
+    }
+}
@@ -0,0 +1,44 @@
+package domain;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Показатели качества модели на обучающей и тестовой выборках.
+ */
+@ParametersAreNonnullByDefault
+public class QualityReport {
+    private final QualityMetrics train;
+    private final QualityMetrics test;
+
+    public QualityReport(QualityMetrics train, QualityMetrics test) {
+        this.train = train;
+        this.test = test;
+    }
+
+    /**
+     * Получить показатели качества на обучающей выборке.
+     *
+     * @return показатели качества.
+     */
+    public QualityMetrics getTrain() {
+        return train;
+    }
+
+    /**
+     * Получить показатели качества на тестовой выборке.
+     *
+     * @return показатели качества.
+     */
+    public QualityMetrics getTest() {
+        return test;
+    }
+
+    /**
+     * Получить SMape для MAPE обучающей и тестовой выборок (мера переобученности).
+     *
+     * @return SMape.
+     */
+    public double getOverFit() {
+        return Quality.sMape(train.getMape(), test.getMape());
+    }
+}
@@ -3,17 +3,76 @@ package domain;
 import org.apache.commons.math3.util.Precision;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 @ParametersAreNonnullByDefault
 public class TimeSeries {
-    private final Map<Integer, Double> timeSeries;
+    /**
+     * Начальная емкость хранилища.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Ряд, которому принадлежит хранилище значений (для самостоятельного ряда - он сам).
+     */
+    private final TimeSeries source;
+
+    /**
+     * Значения временного ряда, хранятся непрерывно начиная с позиции offset.
+     */
+    private double[] values;
+
+    /**
+     * Позиция первого значения ряда в хранилище.
+     */
+    private int offset;
+
+    /**
+     * Метка времени первого значения.
+     */
+    private int start = 1;
+
+    /**
+     * Длина временного ряда.
+     */
+    private int size;
 
     private double maxValue = 0;
 
+    /**
+     * Последнее разбиение ряда на обучающую и тестовую выборки.
+     */
+    private volatile Split split;
+
     public TimeSeries() {
-        timeSeries = new HashMap<Integer, Double>();
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity ожидаемая длина временного ряда.
+     */
+    public TimeSeries(int capacity) {
+        source = this;
+        values = new double[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Представление части другого ряда без копирования значений.
+     *
+     * @param source хранилище значений.
+     * @param offset позиция первого значения в хранилище.
+     * @param size   длина представления.
+     */
+    private TimeSeries(TimeSeries source, int offset, int size) {
+        this.source = source;
+        this.offset = offset;
+        this.size = size;
     }
 
     /**
@@ -22,28 +81,44 @@ public class TimeSeries {
      * @param value значение.
      */
     public void addTimeValue(double value) {
+        checkWritable();
         maxValue = (value > maxValue) ? value : maxValue;
-        timeSeries.put(timeSeries.size() + 1, value);
+        ensureCapacity(size + 1);
+        values[offset + size] = value;
+        ++size;
     }
 
     /**
      * Добавить значение временного ряда.
+     * Метка времени должна продолжать ряд или указывать на уже существующее значение.
      *
      * @param t     временная метка.
      * @param value значение.
      */
     public void add(int t, double value) {
+        checkWritable();
+        if (size == 0) {
+            start = t;
+        }
+        if (t == start + size) {
+            addTimeValue(value);
+            return;
+        }
+        if (t < start || t > start + size) {
+            throw new IllegalArgumentException("Метка времени " + t + " нарушает непрерывность ряда");
+        }
         maxValue = (value > maxValue) ? value : maxValue;
-        timeSeries.put(t, value);
+        values[offset + t - start] = value;
     }
 
     /**
      * Получить временной ряд.
+     * Возвращается представление хранилища в виде словаря, изменения через него отражаются на ряде.
      *
      * @return временной ряд.
      */
     public Map<Integer, Double> getTimeSeries() {
-        return timeSeries;
+        return new MapView();
     }
 
     /**
@@ -52,16 +127,36 @@ public class TimeSeries {
      * @return максимальное значение временного ряда.
      */
     public double getMaxValue() {
-        return maxValue;
+        if (source == this) {
+            return maxValue;
+        }
+        double max = 0;
+        for (int i = offset; i < offset + size; ++i) {
+            max = (source.values[i] > max) ? source.values[i] : max;
+        }
+        return max;
     }
 
     /**
      * Удалить значение временного ряда.
+     * Удалять можно только крайние значения, иначе нарушится непрерывность ряда.
      *
      * @param t метка времени удаляемого значения.
      */
     public void removeTimeValue(int t) {
-        timeSeries.remove(t);
+        checkWritable();
+        if (size == 0) {
+            return;
+        }
+        if (t == start + size - 1) {
+            --size;
+        } else if (t == start) {
+            ++offset;
+            ++start;
+            --size;
+        } else if (t > start && t < start + size) {
+            throw new IllegalArgumentException("Метка времени " + t + " находится внутри ряда");
+        }
     }
 
     /**
@@ -71,15 +166,102 @@ public class TimeSeries {
      * @return значение временного ряда.
      */
     public double getTimeValue(int t) {
-        return timeSeries.get(t);
+        int i = t - start;
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Метка времени " + t + " вне ряда [" + start + ", " + getEndTime() + "]");
+        }
+        return source.values[offset + i];
+    }
+
+    /**
+     * Получить метку времени первого значения.
+     *
+     * @return метка времени первого значения.
+     */
+    public int getStartTime() {
+        return start;
+    }
+
+    /**
+     * Получить метку времени последнего значения.
+     *
+     * @return метка времени последнего значения.
+     */
+    public int getEndTime() {
+        return start + size - 1;
+    }
+
+    /**
+     * Получить значения временного ряда в диапазоне меток времени.
+     *
+     * @param from метка времени первого значения (включительно).
+     * @param to   метка времени последнего значения (включительно).
+     * @return копия значений.
+     */
+    public double[] toArray(int from, int to) {
+        checkRange(from, to);
+        double[] result = new double[to - from + 1];
+        System.arraycopy(source.values, offset + from - start, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Получить все значения временного ряда.
+     *
+     * @return копия значений.
+     */
+    public double[] toArray() {
+        return Arrays.copyOfRange(source.values, offset, offset + size);
+    }
+
+    /**
+     * Получить часть временного ряда без копирования значений.
+     * Метки времени представления начинаются с 1, изменять представление нельзя.
+     *
+     * @param from метка времени первого значения (включительно).
+     * @param to   метка времени последнего значения (включительно).
+     * @return представление части ряда.
+     */
+    public TimeSeries subSeries(int from, int to) {
+        if (to == from - 1) {
+            return new TimeSeries(source, offset, 0);
+        }
+        checkRange(from, to);
+        return new TimeSeries(source, offset + from - start, to - from + 1);
+    }
+
+    /**
+     * Разбить ряд на обучающую и тестовую выборки: тестовая - последние testPercent процентов ряда,
+     * обучающая - trainPercent процентов ряда перед ней (значения в начале ряда, не вошедшие в выборки, отбрасываются).
+     * Выборки - представления хранилища ряда без копирования значений. Разбиение запоминается и возвращается повторно,
+     * пока положение и длина ряда в хранилище не изменятся, так что модели одного ряда используют общие выборки.
+     * Изменение значений ряда на месте (например, нормализация) отражается на выборках.
+     *
+     * @param trainPercent процент обучающей выборки.
+     * @param testPercent  процент тестовой выборки.
+     * @return разбиение ряда.
+     */
+    public Split split(int trainPercent, int testPercent) {
+        Split current = split;
+        if (current != null && current.matches(offset, start, size, trainPercent, testPercent)) {
+            return current;
+        }
+        int trainSize = partSize(trainPercent);
+        int testSize = partSize(testPercent);
+        int first = start + size - (trainSize + testSize);
+        current = new Split(offset, start, size, trainPercent, testPercent,
+                subSeries(first, first + trainSize - 1), subSeries(first + trainSize, getEndTime()));
+        split = current;
+        return current;
     }
 
     /**
      * Нормализация временного ряда для дальнейшего использования.
      */
     public void normalize() {
-        for (Map.Entry<Integer, Double> entry : timeSeries.entrySet()) {
-            entry.setValue(entry.getValue() / maxValue);
+        checkWritable();
+        for (int i = offset; i < offset + size; ++i) {
+            values[i] /= maxValue;
         }
     }
 
@@ -87,9 +269,7 @@ public class TimeSeries {
      * Денормализация временного ряда.
      */
     public void denormalize() {
-        for (Map.Entry<Integer, Double> entry : timeSeries.entrySet()) {
-            entry.setValue(entry.getValue() * maxValue);
-        }
+        denormalize(maxValue);
     }
 
     /**
@@ -98,8 +278,9 @@ public class TimeSeries {
      * @param maxValue максимум.
      */
     public void denormalize(double maxValue) {
-        for (Map.Entry<Integer, Double> entry : timeSeries.entrySet()) {
-            entry.setValue(entry.getValue() * maxValue);
+        checkWritable();
+        for (int i = offset; i < offset + size; ++i) {
+            values[i] *= maxValue;
         }
     }
 
@@ -109,19 +290,19 @@ public class TimeSeries {
      * @return длина временного ряда.
      */
     public int getSize() {
-        return timeSeries.size();
+        return size;
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null) return false;
+        if (!(o instanceof TimeSeries)) return false;
 
         TimeSeries that = (TimeSeries) o;
-        if (that == null || that.getSize() != getSize()) return false;
+        if (that.getSize() != getSize() || that.start != start) return false;
 
-        for (Map.Entry<Integer, Double> value : timeSeries.entrySet()) {
-            if (!Precision.equals(value.getValue(), that.getTimeValue(value.getKey()))) {
+        for (int i = 0; i < size; ++i) {
+            if (!Precision.equals(source.values[offset + i], that.source.values[that.offset + i])) {
                 return false;
             }
         }
@@ -130,8 +311,188 @@ public class TimeSeries {
 
     @Override
     public int hashCode() {
-        return timeSeries != null ? timeSeries.hashCode() : 0;
+        return 31 * start + size;
+    }
+
+    /**
+     * Расширить хранилище, если в нем не хватает места.
+     *
+     * @param length требуемая длина ряда.
+     */
+    private void ensureCapacity(int length) {
+        if (offset + length > values.length) {
+            values = Arrays.copyOf(values, Math.max(offset + length, values.length * 2));
+        }
+    }
+
+    /**
+     * Расчитать длину части ряда.
+     *
+     * @param percent процент ряда.
+     * @return длина части ряда.
+     */
+    private int partSize(int percent) {
+        return (int) (size * ((double) percent / 100));
+    }
+
+    /**
+     * Проверка, что диапазон меток времени лежит внутри ряда.
+     */
+    private void checkRange(int from, int to) {
+        if (from < start || to > getEndTime() || from > to) {
+            throw new IndexOutOfBoundsException("Диапазон [" + from + ", " + to + "] вне ряда [" + start + ", " + getEndTime() + "]");
+        }
+    }
+
+    /**
+     * Проверка, что ряд можно изменять (представления только для чтения).
+     */
+    private void checkWritable() {
+        if (source != this) {
+            throw new UnsupportedOperationException("Представление временного ряда нельзя изменять");
+        }
+    }
+
+    /**
+     * Разбиение ряда на обучающую и тестовую выборки, см. {@link #split(int, int)}.
+     */
+    public static final class Split {
+        private final int offset;
+        private final int start;
+        private final int size;
+        private final int trainPercent;
+        private final int testPercent;
+        private final TimeSeries train;
+        private final TimeSeries test;
+
+        private Split(int offset, int start, int size, int trainPercent, int testPercent, TimeSeries train, TimeSeries test) {
+            this.offset = offset;
+            this.start = start;
+            this.size = size;
+            this.trainPercent = trainPercent;
+            this.testPercent = testPercent;
+            this.train = train;
+            this.test = test;
+        }
+
+        /**
+         * Получить обучающую выборку.
+         *
+         * @return обучающая выборка (метки времени с 1).
+         */
+        public TimeSeries getTrain() {
+            return train;
+        }
+
+        /**
+         * Получить тестовую выборку.
+         *
+         * @return тестовая выборка (метки времени с 1).
+         */
+        public TimeSeries getTest() {
+            return test;
+        }
+
+        private boolean matches(int offset, int start, int size, int trainPercent, int testPercent) {
+            return this.offset == offset && this.start == start && this.size == size
+                    && this.trainPercent == trainPercent && this.testPercent == testPercent;
+        }
     }
 
+    /**
+     * Представление ряда в виде словаря "метка времени - значение".
+     */
+    private class MapView extends AbstractMap<Integer, Double> {
+        @Override
+        public Set<Entry<Integer, Double>> entrySet() {
+            return new AbstractSet<Entry<Integer, Double>>() {
+                @Override
+                public Iterator<Entry<Integer, Double>> iterator() {
+                    return new Iterator<Entry<Integer, Double>>() {
+                        private int t = start;
+
+                        @Override
+                        public boolean hasNext() {
+                            return t <= getEndTime();
+                        }
+
+                        @Override
+                        public Entry<Integer, Double> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            return new MapEntry(t++);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
 
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && (Integer) key >= start && (Integer) key <= getEndTime();
+        }
+
+        @Override
+        public Double get(Object key) {
+            return containsKey(key) ? getTimeValue((Integer) key) : null;
+        }
+
+        @Override
+        public Double put(Integer key, Double value) {
+            Double previous = get(key);
+            add(key, value);
+            return previous;
+        }
+    }
+
+    /**
+     * Элемент словарного представления ряда.
+     */
+    private class MapEntry implements Map.Entry<Integer, Double> {
+        private final int t;
+
+        MapEntry(int t) {
+            this.t = t;
+        }
+
+        @Override
+        public Integer getKey() {
+            return t;
+        }
+
+        @Override
+        public Double getValue() {
+            return getTimeValue(t);
+        }
+
+        @Override
+        public Double setValue(Double value) {
+            Double previous = getTimeValue(t);
+            add(t, value);
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+            return getKey().equals(that.getKey()) && getValue().equals(that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ getValue().hashCode();
+        }
+    }
 }
@@ -0,0 +1,313 @@
+package domain;
+
+import domain.models.single.DenseNetwork;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Бюджет обучения нейронной сети: количество эпох и итераций, ранняя остановка и ограничение по времени.
+ * <ul>
+ * <li>ранняя остановка: если ошибка на контрольной выборке не уменьшается на minDelta (относительно)
+ * patience эпох подряд, обучение прекращается и восстанавливаются параметры лучшей эпохи;</li>
+ * <li>плато: если ошибка на обучающей выборке за patience эпох изменилась меньше чем на minDelta (относительно),
+ * обучение прекращается;</li>
+ * <li>ограничение по времени проверяется после каждой эпохи.</li>
+ * </ul>
+ * При patience = 0 ранняя остановка и плато отключены, сеть обучается ровно maxEpochs эпох.
+ */
+@ParametersAreNonnullByDefault
+public class TrainingBudget {
+    private final int maxEpochs;
+    private final int iterations;
+    private final int patience;
+    private final double minDelta;
+    private final long maxMillis;
+    private final int scoreLogInterval;
+
+    /**
+     * @param maxEpochs        максимальное количество эпох.
+     * @param iterations       количество итераций оптимизатора на пакет.
+     * @param patience         количество эпох без улучшения до остановки (0 - без ранней остановки).
+     * @param minDelta         минимальное относительное улучшение ошибки.
+     * @param maxMillis        максимальное время обучения одной сети в миллисекундах.
+     * @param scoreLogInterval интервал записи ошибки в журнал в итерациях (0 - не записывать).
+     */
+    public TrainingBudget(int maxEpochs, int iterations, int patience, double minDelta, long maxMillis, int scoreLogInterval) {
+        if (maxEpochs < 1 || iterations < 1 || patience < 0 || minDelta < 0 || maxMillis < 0 || scoreLogInterval < 0) {
+            throw new IllegalArgumentException("Некорректный бюджет обучения");
+        }
+        this.maxEpochs = maxEpochs;
+        this.iterations = iterations;
+        this.patience = patience;
+        this.minDelta = minDelta;
+        this.maxMillis = maxMillis;
+        this.scoreLogInterval = scoreLogInterval;
+    }
+
+    /**
+     * Бюджет с фиксированным количеством эпох без ранней остановки и журнала.
+     *
+     * @param epochs     количество эпох.
+     * @param iterations количество итераций оптимизатора на пакет.
+     * @return бюджет.
+     */
+    public static TrainingBudget fixed(int epochs, int iterations) {
+        return new TrainingBudget(epochs, iterations, 0, 0, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Разобрать бюджет из строки "эпохи,терпение,миллисекунды[,улучшение]", например "200,5,30000" или "200,5,30000,0.001".
+     * Улучшение по умолчанию 0, журнал ошибки отключен.
+     *
+     * @param value      строка бюджета.
+     * @param iterations количество итераций оптимизатора на пакет.
+     * @return бюджет.
+     * @throws IllegalArgumentException строка некорректна.
+     */
+    public static TrainingBudget parse(String value, int iterations) {
+        String[] parts = value.split(",");
+        if (parts.length != 3 && parts.length != 4) {
+            throw new IllegalArgumentException("Ожидается бюджет обучения \"эпохи,терпение,миллисекунды[,улучшение]\": " + value);
+        }
+        try {
+            int maxEpochs = Integer.parseInt(parts[0].trim());
+            int patience = Integer.parseInt(parts[1].trim());
+            long maxMillis = Long.parseLong(parts[2].trim());
+            double minDelta = (parts.length == 4) ? Double.parseDouble(parts[3].trim()) : 0;
+            return new TrainingBudget(maxEpochs, iterations, patience, minDelta, maxMillis, 0);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный бюджет обучения: " + value, e);
+        }
+    }
+
+    /**
+     * Обучить сеть в пределах бюджета.
+     *
+     * @param net        нейронная сеть.
+     * @param iterator   обучающая выборка.
+     * @param validation контрольная выборка (если не задана, ранняя остановка только по плато).
+     * @return количество выполненных эпох.
+     */
+    public int train(MultiLayerNetwork net, DataSetIterator iterator, @Nullable DataSet validation) {
+        return train(new Trainee<INDArray>() {
+            @Override
+            public void fitEpoch() {
+                iterator.reset();
+                net.fit(iterator);
+            }
+
+            @Override
+            public double score() {
+                return net.score();
+            }
+
+            @Override
+            public boolean hasValidation() {
+                return validation != null;
+            }
+
+            @Override
+            public double validationScore() {
+                return net.score(validation);
+            }
+
+            @Override
+            public INDArray saveParams() {
+                return net.params().dup();
+            }
+
+            @Override
+            public void restoreParams(INDArray params) {
+                net.setParams(params);
+            }
+        });
+    }
+
+    /**
+     * Обучить сеть на Java в пределах бюджета: на каждый пакет выполняется {@link #getIterations()} шагов.
+     *
+     * @param net        нейронная сеть.
+     * @param values     значения обучающей выборки (окна ряда, см. {@link DenseNetwork}).
+     * @param validation значения контрольной выборки (если не заданы, ранняя остановка только по плато).
+     * @param batchSize  размер пакета.
+     * @return количество выполненных эпох.
+     */
+    public int train(DenseNetwork net, double[] values, @Nullable double[] validation, int batchSize) {
+        return train(new Trainee<double[]>() {
+            @Override
+            public void fitEpoch() {
+                net.fit(values, batchSize, iterations);
+            }
+
+            @Override
+            public double score() {
+                return net.score();
+            }
+
+            @Override
+            public boolean hasValidation() {
+                return validation != null;
+            }
+
+            @Override
+            public double validationScore() {
+                return net.score(validation);
+            }
+
+            @Override
+            public double[] saveParams() {
+                return net.getParams();
+            }
+
+            @Override
+            public void restoreParams(double[] params) {
+                net.setParams(params);
+            }
+        });
+    }
+
+    /**
+     * Обучить сеть по эпохам. Эпоха, на которой истекло время, тоже оценивается по контрольной выборке,
+     * после остановки восстанавливаются лучшие параметры, если они получены не на последней эпохе.
+     *
+     * @param trainee обучаемая сеть.
+     * @return количество выполненных эпох.
+     */
+    <P> int train(Trainee<P> trainee) {
+        long now = System.currentTimeMillis();
+        long deadline = (maxMillis > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + maxMillis;
+        boolean monitor = patience > 0;
+        double[] trainScores = monitor ? new double[patience + 1] : null;
+        double bestLoss = Double.POSITIVE_INFINITY;
+        P bestParams = null;
+        int bestEpoch = 0;
+
+        int epoch = 0;
+        while (epoch < maxEpochs) {
+            trainee.fitEpoch();
+            ++epoch;
+            if (monitor) {
+                if (trainee.hasValidation()) {
+                    double loss = trainee.validationScore();
+                    if (loss < bestLoss - minDelta * Math.abs(bestLoss) || bestParams == null) {
+                        bestLoss = loss;
+                        bestParams = trainee.saveParams();
+                        bestEpoch = epoch;
+                    } else if (epoch - bestEpoch >= patience) {
+                        break;
+                    }
+                }
+
+                double score = trainee.score();
+                trainScores[epoch % trainScores.length] = score;
+                if (epoch > patience) {
+                    double previous = trainScores[(epoch - patience) % trainScores.length];
+                    if (Math.abs(previous - score) <= minDelta * Math.abs(previous)) {
+                        break;
+                    }
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+        }
+        if (bestParams != null && bestEpoch != epoch) {
+            trainee.restoreParams(bestParams);
+        }
+        return epoch;
+    }
+
+    /**
+     * Получить слушателей обучения для журнала ошибки.
+     *
+     * @return слушатели (пусто, если журнал отключен).
+     */
+    public Collection<IterationListener> getListeners() {
+        if (scoreLogInterval == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new ScoreIterationListener(scoreLogInterval));
+    }
+
+    /**
+     * Получить максимальное количество эпох.
+     *
+     * @return количество эпох.
+     */
+    public int getMaxEpochs() {
+        return maxEpochs;
+    }
+
+    /**
+     * Получить количество итераций оптимизатора на пакет.
+     *
+     * @return количество итераций.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Получить количество эпох без улучшения до остановки.
+     *
+     * @return количество эпох.
+     */
+    public int getPatience() {
+        return patience;
+    }
+
+    /**
+     * Получить минимальное относительное улучшение ошибки.
+     *
+     * @return улучшение.
+     */
+    public double getMinDelta() {
+        return minDelta;
+    }
+
+    /**
+     * Получить максимальное время обучения одной сети.
+     *
+     * @return время в миллисекундах.
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * Получить интервал записи ошибки в журнал.
+     *
+     * @return интервал в итерациях (0 - журнал отключен).
+     */
+    public int getScoreLogInterval() {
+        return scoreLogInterval;
+    }
+
+    /**
+     * Обучаемая сеть: эпоха обучения, ошибки и сохранение параметров для ранней остановки.
+     *
+     * @param <P> сохраненные параметры.
+     */
+    interface Trainee<P> {
+        void fitEpoch();
+
+        double score();
+
+        boolean hasValidation();
+
+        double validationScore();
+
+        P saveParams();
+
+        void restoreParams(P params);
+    }
+}
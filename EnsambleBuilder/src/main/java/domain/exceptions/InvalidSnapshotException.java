@@ -0,0 +1,4 @@
+package domain.exceptions;
+
+public class InvalidSnapshotException extends Exception {
+}
@@ -0,0 +1,106 @@
+package domain.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с границами корзин - степенями двойки наносекунд.
+ * Корзина k содержит значения длиной k бит, т.е. не превышающие 2^k нс; последняя корзина не ограничена.
+ * Запись без блокировок, может выполняться из нескольких потоков.
+ */
+public class LatencyHistogram {
+    /**
+     * Количество корзин (последняя ограниченная корзина - 2^46 нс, около 20 часов).
+     */
+    static final int BUCKETS = 48;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Учесть задержку.
+     *
+     * @param nanos задержка в наносекундах.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Получить количество учтенных задержек.
+     *
+     * @return количество.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Получить сумму задержек.
+     *
+     * @return сумма в наносекундах.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Получить наибольшую задержку.
+     *
+     * @return задержка в наносекундах.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Получить количество задержек в корзине.
+     *
+     * @param bucket номер корзины.
+     * @return количество.
+     */
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Оценить квантиль задержки сверху (граница корзины, но не больше наибольшей задержки).
+     *
+     * @param quantile квантиль от 0 до 1.
+     * @return задержка в наносекундах (0, если задержек нет).
+     */
+    public long getQuantile(double quantile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Получить верхнюю границу корзины.
+     *
+     * @param bucket номер корзины (кроме последней).
+     * @return граница в наносекундах.
+     */
+    static long getUpperBound(int bucket) {
+        return 1L << bucket;
+    }
+}
@@ -0,0 +1,206 @@
+package domain.metrics;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Locale;
+
+/**
+ * Замеры времени этапов расчета и счетчики событий.
+ * Режим задается системным свойством {@link #PROPERTY}:
+ * <ul>
+ * <li>не задано или off - замеры выключены, каждая точка замера сводится к проверке константы;</li>
+ * <li>on - замеры записываются в общий {@link MetricsRegistry};</li>
+ * <li>jfr - дополнительно к реестру каждый замер записывается событием JFR {@link StageEvent}
+ * (если JFR недоступен, используется режим on).</li>
+ * </ul>
+ * Точка замера:
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.stop(Metrics.Stage.MODEL_FIT, model, start);
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+public final class Metrics {
+    /**
+     * Системное свойство режима замеров.
+     */
+    public static final String PROPERTY = "metrics";
+
+    /**
+     * Этап расчета и название метки его гистограмм.
+     */
+    public enum Stage {
+        MODEL_FIT("model_fit", "model"),
+        MODEL_FORECAST("model_forecast", "model"),
+        QUALITY("quality", "model"),
+        ENSEMBLE_FIT("ensemble_fit", "ensemble"),
+        SUBSET_EVALUATION("subset_evaluation", "size"),
+        WRITER("writer", "file");
+
+        private final String metricName;
+        private final String labelName;
+
+        Stage(String metricName, String labelName) {
+            this.metricName = metricName;
+            this.labelName = labelName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public String getLabelName() {
+            return labelName;
+        }
+    }
+
+    /**
+     * Счетчик событий.
+     */
+    public enum Counter {
+        MODEL_FIT_FAILURES("model_fit_failures"),
+        MODELS_REJECTED("models_rejected"),
+        MODELS_SCREENED_OUT("models_screened_out"),
+        MODEL_REFIT_FAILURES("model_refit_failures"),
+        PROBE_FIT_FAILURES("probe_fit_failures");
+
+        private final String metricName;
+
+        Counter(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private static final boolean ENABLED;
+    private static final boolean JFR;
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    /**
+     * Кэш коротких имен классов моделей (getSimpleName не кэшируется JDK).
+     */
+    private static final ClassValue<String> LABELS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return type.getSimpleName();
+        }
+    };
+
+    static {
+        String mode = System.getProperty(PROPERTY, "off").trim().toLowerCase(Locale.ROOT);
+        ENABLED = mode.equals("on") || mode.equals("true") || mode.equals("jfr");
+        JFR = mode.equals("jfr") && isJfrAvailable();
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Включены ли замеры.
+     *
+     * @return включены ли замеры.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Получить общий реестр замеров.
+     *
+     * @return реестр (пустой, если замеры выключены).
+     */
+    public static MetricsRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Начать замер.
+     *
+     * @return время начала замера (0, если замеры выключены).
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Закончить замер этапа для модели, меткой служит короткое имя класса модели.
+     *
+     * @param stage этап.
+     * @param model модель.
+     * @param start время начала замера.
+     */
+    public static void stop(Stage stage, Object model, long start) {
+        if (ENABLED) {
+            record(stage, LABELS.get(model.getClass()), start);
+        }
+    }
+
+    /**
+     * Закончить замер этапа.
+     *
+     * @param stage этап.
+     * @param label метка.
+     * @param start время начала замера.
+     */
+    public static void stop(Stage stage, String label, long start) {
+        if (ENABLED) {
+            record(stage, label, start);
+        }
+    }
+
+    /**
+     * Закончить замер этапа с числовой меткой.
+     *
+     * @param stage этап.
+     * @param label метка.
+     * @param start время начала замера.
+     */
+    public static void stop(Stage stage, int label, long start) {
+        if (ENABLED) {
+            record(stage, Integer.toString(label), start);
+        }
+    }
+
+    /**
+     * Увеличить счетчик на 1.
+     *
+     * @param counter счетчик.
+     */
+    public static void increment(Counter counter) {
+        if (ENABLED) {
+            REGISTRY.increment(counter, 1);
+        }
+    }
+
+    /**
+     * Увеличить счетчик.
+     *
+     * @param counter счетчик.
+     * @param delta   приращение.
+     */
+    public static void increment(Counter counter, long delta) {
+        if (ENABLED) {
+            REGISTRY.increment(counter, delta);
+        }
+    }
+
+    private static void record(Stage stage, String label, long start) {
+        long nanos = System.nanoTime() - start;
+        REGISTRY.record(stage, label, nanos);
+        if (JFR) {
+            StageEvent.emit(stage, label, nanos);
+        }
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
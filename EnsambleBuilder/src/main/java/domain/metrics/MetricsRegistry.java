@@ -0,0 +1,186 @@
+package domain.metrics;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Реестр замеров: гистограммы задержек по этапу и метке и счетчики событий.
+ * Выгружается в JSON или в текстовом формате Prometheus.
+ */
+@ParametersAreNonnullByDefault
+public class MetricsRegistry {
+    /**
+     * Префикс имен метрик в формате Prometheus.
+     */
+    private static final String PREFIX = "ensemble_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Map<Metrics.Stage, ConcurrentMap<String, LatencyHistogram>> timers = new EnumMap<>(Metrics.Stage.class);
+    private final LongAdder[] counters = new LongAdder[Metrics.Counter.values().length];
+
+    public MetricsRegistry() {
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            timers.put(stage, new ConcurrentHashMap<>());
+        }
+        for (int i = 0; i < counters.length; ++i) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Учесть задержку этапа.
+     *
+     * @param stage этап.
+     * @param label метка.
+     * @param nanos задержка в наносекундах.
+     */
+    public void record(Metrics.Stage stage, String label, long nanos) {
+        ConcurrentMap<String, LatencyHistogram> histograms = timers.get(stage);
+        LatencyHistogram histogram = histograms.get(label);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(label, key -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Увеличить счетчик.
+     *
+     * @param counter счетчик.
+     * @param delta   приращение.
+     */
+    public void increment(Metrics.Counter counter, long delta) {
+        counters[counter.ordinal()].add(delta);
+    }
+
+    /**
+     * Получить значение счетчика.
+     *
+     * @param counter счетчик.
+     * @return значение.
+     */
+    public long getCount(Metrics.Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Получить гистограмму задержек этапа.
+     *
+     * @param stage этап.
+     * @param label метка.
+     * @return гистограмма или null, если замеров не было.
+     */
+    @Nullable
+    public LatencyHistogram getHistogram(Metrics.Stage stage, String label) {
+        return timers.get(stage).get(label);
+    }
+
+    /**
+     * Выгрузить замеры в JSON: для каждого этапа и метки количество, суммарное, среднее, наибольшее время
+     * и квантили 0.5, 0.9, 0.99 в миллисекундах; значения счетчиков.
+     *
+     * @param out вывод.
+     * @throws IOException при записи.
+     */
+    public void writeJson(Appendable out) throws IOException {
+        out.append("{\n  \"timers\": {");
+        String stageSeparator = "\n";
+        for (Map.Entry<Metrics.Stage, ConcurrentMap<String, LatencyHistogram>> stage : timers.entrySet()) {
+            if (stage.getValue().isEmpty()) {
+                continue;
+            }
+            out.append(stageSeparator).append("    ").append(quote(stage.getKey().getMetricName())).append(": {");
+            stageSeparator = ",\n";
+            String labelSeparator = "\n";
+            for (Map.Entry<String, LatencyHistogram> entry : sorted(stage.getValue()).entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                long count = histogram.getCount();
+                out.append(labelSeparator).append("      ").append(quote(entry.getKey())).append(": {")
+                        .append("\"count\": ").append(String.valueOf(count))
+                        .append(", \"total_ms\": ").append(millis(histogram.getSum()))
+                        .append(", \"mean_ms\": ").append(millis((count > 0) ? histogram.getSum() / count : 0))
+                        .append(", \"max_ms\": ").append(millis(histogram.getMax()));
+                for (double quantile : QUANTILES) {
+                    out.append(", \"p").append(String.valueOf(Math.round(quantile * 100))).append("_ms\": ")
+                            .append(millis(histogram.getQuantile(quantile)));
+                }
+                out.append("}");
+                labelSeparator = ",\n";
+            }
+            out.append("\n    }");
+        }
+        out.append("\n  },\n  \"counters\": {");
+        String separator = "\n";
+        for (Metrics.Counter counter : Metrics.Counter.values()) {
+            out.append(separator).append("    ").append(quote(counter.getMetricName())).append(": ")
+                    .append(String.valueOf(getCount(counter)));
+            separator = ",\n";
+        }
+        out.append("\n  }\n}\n");
+    }
+
+    /**
+     * Выгрузить замеры в текстовом формате Prometheus: гистограммы ensemble_{этап}_seconds
+     * и счетчики ensemble_{счетчик}_total.
+     *
+     * @param out вывод.
+     * @throws IOException при записи.
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<Metrics.Stage, ConcurrentMap<String, LatencyHistogram>> stage : timers.entrySet()) {
+            if (stage.getValue().isEmpty()) {
+                continue;
+            }
+            String name = PREFIX + stage.getKey().getMetricName() + "_seconds";
+            String labelName = stage.getKey().getLabelName();
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            for (Map.Entry<String, LatencyHistogram> entry : sorted(stage.getValue()).entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                String label = labelName + "=\"" + escape(entry.getKey()) + "\"";
+                int last = LatencyHistogram.BUCKETS - 2;
+                while (last > 0 && histogram.getBucketCount(last) == 0) {
+                    --last;
+                }
+                long cumulative = 0;
+                for (int i = 0; i <= last; ++i) {
+                    cumulative += histogram.getBucketCount(i);
+                    out.append(name).append("_bucket{").append(label).append(",le=\"")
+                            .append(String.valueOf(LatencyHistogram.getUpperBound(i) / 1e9)).append("\"} ")
+                            .append(String.valueOf(cumulative)).append('\n');
+                }
+                long count = histogram.getCount();
+                out.append(name).append("_bucket{").append(label).append(",le=\"+Inf\"} ").append(String.valueOf(count)).append('\n');
+                out.append(name).append("_sum{").append(label).append("} ").append(String.valueOf(histogram.getSum() / 1e9)).append('\n');
+                out.append(name).append("_count{").append(label).append("} ").append(String.valueOf(count)).append('\n');
+            }
+        }
+        for (Metrics.Counter counter : Metrics.Counter.values()) {
+            String name = PREFIX + counter.getMetricName() + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(String.valueOf(getCount(counter))).append('\n');
+        }
+    }
+
+    private static Map<String, LatencyHistogram> sorted(Map<String, LatencyHistogram> histograms) {
+        return new TreeMap<>(histograms);
+    }
+
+    private static String millis(long nanos) {
+        return String.valueOf(nanos / 1e6);
+    }
+
+    private static String quote(String value) {
+        return "\"" + escape(value) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,47 @@
+package domain.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Событие JFR замера этапа расчета (режим metrics=jfr, см. {@link Metrics}).
+ * Класс загружается только в этом режиме, поэтому без JFR остальные замеры работают.
+ */
+@Name("domain.metrics.Stage")
+@Label("Ensemble Stage")
+@Category("Ensemble")
+@Description("Замер этапа расчета моделей и ансамблей")
+@StackTrace(false)
+class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Label")
+    String label;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    /**
+     * Записать событие, если оно включено в текущей записи JFR.
+     *
+     * @param stage этап.
+     * @param label метка.
+     * @param nanos задержка в наносекундах.
+     */
+    static void emit(Metrics.Stage stage, String label, long nanos) {
+        StageEvent event = new StageEvent();
+        if (event.isEnabled()) {
+            event.stage = stage.getMetricName();
+            event.label = label;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+}
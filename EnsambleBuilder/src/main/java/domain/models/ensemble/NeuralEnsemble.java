@@ -2,9 +2,12 @@ package domain.models.ensemble;
 
 import domain.Ensemble;
 import domain.Model;
+import domain.ModelSnapshot;
 import domain.TimeSeries;
+import domain.TrainingBudget;
 import domain.exceptions.ForecastNotFitedModelException;
 import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
 import domain.exceptions.InvalidTemporaryValueException;
 import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
@@ -16,7 +19,6 @@ import org.deeplearning4j.nn.conf.layers.GravesLSTM;
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
-import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
 import org.jetbrains.annotations.NotNull;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -26,37 +28,48 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.learning.config.Nesterovs;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
-import java.util.Arrays;
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 public class NeuralEnsemble extends Ensemble {
     private static final int SEED = 12345;
-    private static final int ITERATIONS = 5;
+    /**
+     * Количество итераций оптимизатора метасети на пакет по умолчанию.
+     */
+    public static final int ITERATIONS = 5;
     private static final int N_EPOCHS = 1;
+    private static final int N_UPDATE_EPOCHS = 1;
     private static final int BATCH_SIZE = 100;
     private static final double LEARNING_RATE = 0.01;
     private static final int NUM_OUTPUTS = 1;
 
+    private final TrainingBudget budget;
     private MultiLayerNetwork net;
 
     public NeuralEnsemble(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
+        this(timeSeries, forecastCount, trainPercent, testPercent, TrainingBudget.fixed(N_EPOCHS, ITERATIONS));
+    }
+
+    /**
+     * @param budget бюджет обучения метасети.
+     */
+    public NeuralEnsemble(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent, TrainingBudget budget) throws InvalidOrderException {
         super(timeSeries, forecastCount, trainPercent, testPercent);
+        this.budget = budget;
     }
 
     protected void fitMetaAlgorithm() throws InvalidTemporaryValueException, ForecastNotFitedModelException {
         final MultiLayerConfiguration conf = getDeepDenseLayerNetworkConfiguration();
         net = new MultiLayerNetwork(conf);
         net.init();
-        net.setListeners(new ScoreIterationListener(1));
+        net.setListeners(budget.getListeners());
 
-        final DataSetIterator iterator = getTrainingData();
-        for (int i = 0; i < N_EPOCHS; i++) {
-            iterator.reset();
-            net.fit(iterator);
-        }
+        budget.train(net, getTrainingData(), (budget.getPatience() > 0) ? getValidationData() : null);
         predict();
-        setFit();
     }
 
     public double forecast(int t) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
@@ -64,12 +77,59 @@ public class NeuralEnsemble extends Ensemble {
         INDArray x = Nd4j.create(1, models.size());
         for (int i = 0; i < models.size(); i++) {
             Model model = models.get(i);
-            x.putScalar(new int[]{0, i}, model.forecast(t));
+            x.putScalar(new int[]{0, i}, model.getFittedValue(t));
         }
         INDArray res = net.output(x, false);
         return res.getDouble(0);
     }
 
+    /**
+     * Предсказать значения для диапазона меток времени одним вызовом сети.
+     * Столбцы входной матрицы - прогнозы моделей ансамбля на тот же диапазон.
+     */
+    @Override
+    protected double[] predictRange(int from, int to) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
+        int count = to - from + 1;
+        INDArray x = Nd4j.create(count, models.size());
+        for (int i = 0; i < models.size(); i++) {
+            double[] fitted = models.get(i).forecastRange(from, to);
+            for (int row = 0; row < count; ++row) {
+                x.putScalar(row, i, fitted[row]);
+            }
+        }
+        INDArray res = net.output(x, false);
+        double[] result = new double[count];
+        for (int row = 0; row < count; ++row) {
+            result[row] = res.getDouble(row);
+        }
+        return result;
+    }
+
+    /**
+     * Дообучить метаалгоритм на новом значении ряда.
+     *
+     * @param t метка времени нового значения.
+     */
+    protected void updateState(int t) {
+        INDArray x = Nd4j.create(1, models.size());
+        for (int i = 0; i < models.size(); i++) {
+            x.putScalar(new int[]{0, i}, forecastMatrix.get(i, t));
+        }
+        INDArray y = Nd4j.create(1, NUM_OUTPUTS);
+        y.putScalar(0, timeSeries.getTimeValue(t));
+        DataSet dataSet = new DataSet(x, y);
+        for (int i = 0; i < N_UPDATE_EPOCHS; i++) {
+            net.fit(dataSet);
+        }
+    }
+
+    /**
+     * Пересчитать прогноз заданной длины по прогнозам моделей.
+     */
+    protected void rollForecast() {
+        predict();
+    }
+
     /**
      * Расчет прогноза заданной длины.
      */
@@ -80,12 +140,24 @@ public class NeuralEnsemble extends Ensemble {
             for (int j = 0; j < models.size(); ++j) {
                 Model model = models.get(j);
                 x.putScalar(new int[]{0, j}, model.getForecast()[i]);
-                System.out.println("Neural");
-                System.out.println(model.getForecast()[i]);
             }
             forecast[i] = net.output(x, false).getDouble(0);
         }
-        System.out.println(Arrays.toString(forecast));
+    }
+
+    /**
+     * Записать параметры сети и состояние оптимизатора.
+     */
+    protected void writeState(DataOutputStream out) throws IOException {
+        ModelSnapshot.writeNetwork(out, net);
+    }
+
+    /**
+     * Прочитать параметры сети и состояние оптимизатора.
+     */
+    protected void readState(DataInputStream in) throws InvalidSnapshotException, IOException {
+        net = ModelSnapshot.readNetwork(in, models.size());
+        net.setListeners(budget.getListeners());
     }
 
     /**
@@ -98,7 +170,7 @@ public class NeuralEnsemble extends Ensemble {
         final int numHiddenNodes2 = 5;
         return new NeuralNetConfiguration.Builder()
                 .seed(SEED)
-                .iterations(ITERATIONS)
+                .iterations(budget.getIterations())
                 .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
                 .learningRate(LEARNING_RATE)
                 .weightInit(WeightInit.XAVIER)
@@ -125,12 +197,36 @@ public class NeuralEnsemble extends Ensemble {
         int j = 0;
         for (int t = order + 1; t <= timeSeriesTrain.getSize(); ++t) {
             for (int i = 0; i < models.size(); i++) {
-                Model model = models.get(i);
-                x.putScalar(new int[]{j, i}, model.forecast(t));
+                x.putScalar(new int[]{j, i}, forecastMatrix.get(i, t));
             }
             y.putScalar(j, timeSeriesTrain.getTimeValue(t));
             ++j;
         }
         return new ListDataSetIterator(new DataSet(x, y).asList(), BATCH_SIZE);
     }
+
+    /**
+     * Создание контрольной выборки для ранней остановки: прогнозы моделей на тестовой части ряда.
+     *
+     * @return контрольная выборка или null, если у моделей нет прогнозов на тестовой части ряда.
+     */
+    @Nullable
+    private DataSet getValidationData() {
+        int end = timeSeries.getSize();
+        int from = Math.max(end - timeSeriesTest.getSize() + 1, order + 1);
+        if (from > end) {
+            return null;
+        }
+        int size = end - from + 1;
+        INDArray x = Nd4j.create(size, models.size());
+        INDArray y = Nd4j.create(size, NUM_OUTPUTS);
+        for (int j = 0; j < size; ++j) {
+            int t = from + j;
+            for (int i = 0; i < models.size(); i++) {
+                x.putScalar(new int[]{j, i}, forecastMatrix.get(i, t));
+            }
+            y.putScalar(j, timeSeries.getTimeValue(t));
+        }
+        return new DataSet(x, y);
+    }
 }
@@ -0,0 +1,337 @@
+package domain.models.ensemble;
+
+import domain.Ensemble;
+import domain.ModelSnapshot;
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
+import domain.exceptions.InvalidTemporaryValueException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Ансамбль со стекингом: веса моделей - решение задачи наименьших квадратов по прогнозам моделей
+ * на обучающей выборке, найденное в замкнутой форме по матрице Грама X^T X.
+ * <ul>
+ * <li>{@link Method#RIDGE} - гребневая регрессия;</li>
+ * <li>{@link Method#NNLS} - неотрицательные наименьшие квадраты (алгоритм Лоусона-Хенсона) с той же регуляризацией.</li>
+ * </ul>
+ * Регуляризация задается относительно среднего диагонального элемента матрицы Грама.
+ * Матрица Грама может браться из общего {@link StackingGram}, рассчитанного один раз для всех перебираемых ансамблей.
+ */
+@ParametersAreNonnullByDefault
+public class StackingEnsemble extends Ensemble {
+    /**
+     * Регуляризация по умолчанию.
+     */
+    public static final double DEFAULT_REGULARIZATION = 1e-3;
+
+    /**
+     * Метод расчета весов моделей.
+     */
+    public enum Method {
+        RIDGE,
+        NNLS
+    }
+
+    private Method method;
+    private double regularization;
+    @Nullable
+    private final StackingGram sharedGram;
+
+    /**
+     * Веса моделей (в порядке списка моделей).
+     */
+    private double[] weights;
+    /**
+     * Матрица Грама по учтенным значениям ряда.
+     */
+    private double[][] gram;
+    /**
+     * Вектор X^T y по учтенным значениям ряда.
+     */
+    private double[] moment;
+
+    public StackingEnsemble(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
+        this(timeSeries, forecastCount, trainPercent, testPercent, Method.RIDGE, DEFAULT_REGULARIZATION, null);
+    }
+
+    /**
+     * @param method         метод расчета весов.
+     * @param regularization относительная регуляризация (больше 0).
+     * @param sharedGram     общие блоки матрицы Грама (если не заданы, матрица рассчитывается ансамблем).
+     */
+    public StackingEnsemble(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent,
+                            Method method, double regularization, @Nullable StackingGram sharedGram) throws InvalidOrderException {
+        super(timeSeries, forecastCount, trainPercent, testPercent);
+        if (!(regularization > 0)) {
+            throw new IllegalArgumentException("Регуляризация должна быть больше 0: " + regularization);
+        }
+        this.method = method;
+        this.regularization = regularization;
+        this.sharedGram = sharedGram;
+        weights = new double[0];
+    }
+
+    /**
+     * Получить метод расчета весов.
+     *
+     * @return метод.
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Обучить метаалгоритм ансамблевой модели.
+     */
+    protected void fitMetaAlgorithm() {
+        int size = models.size();
+        gram = new double[size][size];
+        moment = new double[size];
+        int trainSize = timeSeriesTrain.getSize();
+        if (sharedGram != null && sharedGram.covers(models, order, trainSize)) {
+            sharedGram.fill(models, order, gram, moment);
+        } else {
+            for (int t = order + 1; t <= trainSize; ++t) {
+                addRow(t, timeSeriesTrain.getTimeValue(t));
+            }
+        }
+        weights = solve();
+        predict();
+    }
+
+    /**
+     * Учесть новое значение ряда в матрице Грама и пересчитать веса.
+     *
+     * @param t метка времени нового значения.
+     */
+    protected void updateState(int t) {
+        addRow(t, timeSeries.getTimeValue(t));
+        weights = solve();
+    }
+
+    /**
+     * Пересчитать прогноз заданной длины по прогнозам моделей.
+     */
+    protected void rollForecast() {
+        predict();
+    }
+
+    /**
+     * Записать метод, веса моделей и матрицу Грама.
+     */
+    protected void writeState(DataOutputStream out) throws IOException {
+        out.writeByte(method.ordinal());
+        out.writeDouble(regularization);
+        ModelSnapshot.writeDoubles(out, weights);
+        ModelSnapshot.writeDoubles(out, moment);
+        for (double[] row : gram) {
+            ModelSnapshot.writeDoubles(out, row);
+        }
+    }
+
+    /**
+     * Прочитать метод, веса моделей и матрицу Грама.
+     */
+    protected void readState(DataInputStream in) throws InvalidSnapshotException, IOException {
+        int methodIndex = in.readByte();
+        double regularization = in.readDouble();
+        if (methodIndex < 0 || methodIndex >= Method.values().length || !(regularization > 0)) {
+            throw new InvalidSnapshotException();
+        }
+        int size = models.size();
+        double[] weights = ModelSnapshot.readDoubles(in);
+        double[] moment = ModelSnapshot.readDoubles(in);
+        if (weights.length != size || moment.length != size) {
+            throw new InvalidSnapshotException();
+        }
+        double[][] gram = new double[size][];
+        for (int i = 0; i < size; ++i) {
+            gram[i] = ModelSnapshot.readDoubles(in);
+            if (gram[i].length != size) {
+                throw new InvalidSnapshotException();
+            }
+        }
+        this.method = Method.values()[methodIndex];
+        this.regularization = regularization;
+        this.weights = weights;
+        this.moment = moment;
+        this.gram = gram;
+    }
+
+    /**
+     * Предсказать по обученной ансамблевой модели.
+     *
+     * @param t метка времени предсказываемого значения.
+     * @return прогноз.
+     */
+    public double forecast(int t) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
+        EnableForForecasting(t);
+        double value = 0;
+        for (int i = 0; i < weights.length; ++i) {
+            value += models.get(i).getFittedValue(t) * weights[i];
+        }
+        return value;
+    }
+
+    /**
+     * Расчет прогноза заданной длины.
+     */
+    private void predict() {
+        forecast = new double[forecastCount];
+        for (int i = 0; i < forecastCount; ++i) {
+            double value = 0;
+            for (int j = 0; j < weights.length; ++j) {
+                value += models.get(j).getForecast()[i] * weights[j];
+            }
+            forecast[i] = value;
+        }
+    }
+
+    /**
+     * Добавить строку прогнозов моделей в матрицу Грама.
+     *
+     * @param t     метка времени.
+     * @param value значение ряда.
+     */
+    private void addRow(int t, double value) {
+        int size = models.size();
+        for (int i = 0; i < size; ++i) {
+            double x = forecastMatrix.get(i, t);
+            moment[i] += x * value;
+            for (int j = i; j < size; ++j) {
+                gram[i][j] += x * forecastMatrix.get(j, t);
+                gram[j][i] = gram[i][j];
+            }
+        }
+    }
+
+    private double[] solve() {
+        double[][] regularized = new double[gram.length][];
+        double trace = 0;
+        for (int i = 0; i < gram.length; ++i) {
+            regularized[i] = gram[i].clone();
+            trace += gram[i][i];
+        }
+        double ridge = regularization * ((trace > 0) ? trace / gram.length : 1);
+        for (int i = 0; i < gram.length; ++i) {
+            regularized[i][i] += ridge;
+        }
+        return (method == Method.NNLS) ? nnls(regularized, moment) : ridge(regularized, moment);
+    }
+
+    /**
+     * Решить систему G w = b с положительно определенной матрицей.
+     *
+     * @param g матрица Грама с регуляризацией.
+     * @param b вектор X^T y.
+     * @return веса.
+     */
+    static double[] ridge(double[][] g, double[] b) {
+        return new LUDecomposition(new Array2DRowRealMatrix(g, false)).getSolver().solve(new ArrayRealVector(b, false)).toArray();
+    }
+
+    /**
+     * Неотрицательные наименьшие квадраты по матрице Грама (алгоритм Лоусона-Хенсона):
+     * min w^T G w / 2 - b^T w при w >= 0.
+     *
+     * @param g матрица Грама с регуляризацией.
+     * @param b вектор X^T y.
+     * @return неотрицательные веса.
+     */
+    static double[] nnls(double[][] g, double[] b) {
+        int n = b.length;
+        double[] x = new double[n];
+        boolean[] passive = new boolean[n];
+        double scale = 0;
+        for (double value : b) {
+            scale = Math.max(scale, Math.abs(value));
+        }
+        double tolerance = 1e-12 * Math.max(scale, 1);
+
+        for (int iteration = 0; iteration < 3 * n; ++iteration) {
+            double[] gradient = gradient(g, b, x);
+            int next = -1;
+            for (int i = 0; i < n; ++i) {
+                if (!passive[i] && gradient[i] > tolerance && (next < 0 || gradient[i] > gradient[next])) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            passive[next] = true;
+            while (true) {
+                double[] z = solvePassive(g, b, passive);
+                double step = 1;
+                for (int i = 0; i < n; ++i) {
+                    if (passive[i] && z[i] <= 0) {
+                        double denominator = x[i] - z[i];
+                        step = Math.min(step, (denominator > 0) ? x[i] / denominator : 0);
+                    }
+                }
+                if (step >= 1) {
+                    x = z;
+                    break;
+                }
+                for (int i = 0; i < n; ++i) {
+                    x[i] += step * (z[i] - x[i]);
+                    if (passive[i] && x[i] <= tolerance) {
+                        passive[i] = false;
+                        x[i] = 0;
+                    }
+                }
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Антиградиент b - G x.
+     */
+    private static double[] gradient(double[][] g, double[] b, double[] x) {
+        double[] gradient = b.clone();
+        for (int i = 0; i < b.length; ++i) {
+            for (int j = 0; j < b.length; ++j) {
+                gradient[i] -= g[i][j] * x[j];
+            }
+        }
+        return gradient;
+    }
+
+    /**
+     * Решение системы, ограниченной пассивным множеством (остальные веса равны 0).
+     */
+    private static double[] solvePassive(double[][] g, double[] b, boolean[] passive) {
+        int count = 0;
+        int[] columns = new int[b.length];
+        for (int i = 0; i < b.length; ++i) {
+            if (passive[i]) {
+                columns[count++] = i;
+            }
+        }
+        double[][] sub = new double[count][count];
+        double[] right = new double[count];
+        for (int i = 0; i < count; ++i) {
+            right[i] = b[columns[i]];
+            for (int j = 0; j < count; ++j) {
+                sub[i][j] = g[columns[i]][columns[j]];
+            }
+        }
+        double[] solution = ridge(sub, right);
+        double[] z = new double[b.length];
+        for (int i = 0; i < count; ++i) {
+            z[columns[i]] = solution[i];
+        }
+        return z;
+    }
+}
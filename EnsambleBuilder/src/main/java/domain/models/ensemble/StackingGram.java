@@ -0,0 +1,123 @@
+package domain.models.ensemble;
+
+import domain.Model;
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Общие блоки матрицы Грама X^T X и вектора X^T y для набора обученных моделей,
+ * где X - прогнозы моделей на обучающей выборке, y - значения обучающей выборки.
+ * <p>
+ * Строки X ансамбля начинаются с метки (порядок ансамбля + 1), поэтому суммы рассчитываются
+ * за один проход от конца обучающей выборки и сохраняются для каждого возможного порядка ансамбля.
+ * Матрица Грама любого подмножества моделей после этого - выборка элементов без прохода по ряду.
+ * После создания объект не изменяется и может использоваться из нескольких потоков.
+ */
+@ParametersAreNonnullByDefault
+public class StackingGram {
+    private final Map<Model, Integer> index = new IdentityHashMap<>();
+    private final int modelCount;
+    private final int trainSize;
+    private final int maxOrder;
+    /**
+     * Матрицы Грама по порядку ансамбля (индекс - порядок, матрица развернута по строкам).
+     */
+    private final double[][] gram;
+    /**
+     * Векторы X^T y по порядку ансамбля.
+     */
+    private final double[][] moment;
+
+    /**
+     * @param models обученные модели с одинаковым разбиением ряда на обучающую и тестовую выборки.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     */
+    public StackingGram(List<Model> models) throws ForecastNotFitedModelException {
+        modelCount = models.size();
+        double[][] rows = new double[modelCount][];
+        int order = 0;
+        for (int i = 0; i < modelCount; ++i) {
+            Model model = models.get(i);
+            index.put(model, i);
+            rows[i] = model.getFittedValues();
+            order = Math.max(order, model.getOrder());
+        }
+        TimeSeries train = models.isEmpty() ? new TimeSeries() : models.get(0).getTimeSeriesTrain();
+        trainSize = train.getSize();
+        maxOrder = Math.min(order, Math.max(trainSize - 1, 0));
+
+        gram = new double[maxOrder + 1][];
+        moment = new double[maxOrder + 1][];
+        double[] gramSum = new double[modelCount * modelCount];
+        double[] momentSum = new double[modelCount];
+        double[] x = new double[modelCount];
+        for (int t = trainSize; t >= 1; --t) {
+            double y = train.getTimeValue(t);
+            for (int i = 0; i < modelCount; ++i) {
+                x[i] = rows[i][t - 1];
+            }
+            for (int i = 0; i < modelCount; ++i) {
+                momentSum[i] += x[i] * y;
+                int offset = i * modelCount;
+                for (int j = i; j < modelCount; ++j) {
+                    gramSum[offset + j] += x[i] * x[j];
+                }
+            }
+            if (t - 1 <= maxOrder) {
+                gram[t - 1] = gramSum.clone();
+                moment[t - 1] = momentSum.clone();
+            }
+        }
+    }
+
+    /**
+     * Можно ли получить блоки для ансамбля из этих моделей.
+     *
+     * @param models    модели ансамбля.
+     * @param order     порядок ансамбля.
+     * @param trainSize длина обучающей выборки ансамбля.
+     * @return все ли модели учтены и совпадает ли обучающая выборка.
+     */
+    public boolean covers(List<Model> models, int order, int trainSize) {
+        if (trainSize != this.trainSize || order > maxOrder) {
+            return false;
+        }
+        for (Model model : models) {
+            if (!index.containsKey(model)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Заполнить матрицу Грама и вектор X^T y для подмножества моделей.
+     *
+     * @param models модели ансамбля (должны быть учтены, см. {@link #covers(List, int, int)}).
+     * @param order  порядок ансамбля.
+     * @param g      матрица Грама (размер - количество моделей ансамбля).
+     * @param b      вектор X^T y.
+     */
+    public void fill(List<Model> models, int order, double[][] g, double[] b) {
+        double[] gramSum = gram[order];
+        double[] momentSum = moment[order];
+        int size = models.size();
+        int[] columns = new int[size];
+        for (int i = 0; i < size; ++i) {
+            columns[i] = index.get(models.get(i));
+        }
+        for (int i = 0; i < size; ++i) {
+            b[i] = momentSum[columns[i]];
+            for (int j = 0; j < size; ++j) {
+                int row = Math.min(columns[i], columns[j]);
+                int column = Math.max(columns[i], columns[j]);
+                g[i][j] = gramSum[row * modelCount + column];
+            }
+        }
+    }
+}
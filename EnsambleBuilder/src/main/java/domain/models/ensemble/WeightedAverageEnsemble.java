@@ -1,41 +1,101 @@
 package domain.models.ensemble;
 
 import domain.Ensemble;
-import domain.Model;
+import domain.ModelSnapshot;
 import domain.TimeSeries;
 import domain.exceptions.ForecastNotFitedModelException;
 import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
 import domain.exceptions.InvalidTemporaryValueException;
 import domain.Quality;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 @ParametersAreNonnullByDefault
 public class WeightedAverageEnsemble extends Ensemble {
     /**
-     * Веса моделей для расчета прогнозного значения.
+     * Веса моделей для расчета прогнозного значения (в порядке списка моделей).
      */
-    Map<Model, Double> weightedModels;
+    double[] weights;
+
+    /**
+     * Суммы абсолютных процентных ошибок моделей.
+     */
+    private double[] errorSums;
+
+    /**
+     * Количество значений, по которым накоплены ошибки.
+     */
+    private int errorCount;
 
     public WeightedAverageEnsemble(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
         super(timeSeries, forecastCount, trainPercent, testPercent);
-        weightedModels = new HashMap<Model, Double>();
+        weights = new double[0];
     }
 
     /**
      * Обучить метаалгоритм ансамблевой модели.
      */
     protected void fitMetaAlgorithm() throws InvalidTemporaryValueException, ForecastNotFitedModelException {
-        Map<Model, Double> modelsMapes = new HashMap<Model, Double>();
+        double[] modelsMapes = new double[models.size()];
         double sumMapes = calculateMapeForModels(modelsMapes);
-        for (Map.Entry<Model, Double> modelMape : modelsMapes.entrySet()) {
-            double weight = calculateWeight(modelMape.getValue(), sumMapes);
-            weightedModels.put(modelMape.getKey(), weight);
+        weights = new double[models.size()];
+        for (int i = 0; i < weights.length; ++i) {
+            weights[i] = calculateWeight(modelsMapes[i], sumMapes);
+        }
+        predict();
+    }
+
+    /**
+     * Добавить ошибки моделей для нового значения ряда и пересчитать веса.
+     *
+     * @param t метка времени нового значения.
+     */
+    protected void updateState(int t) {
+        double value = timeSeries.getTimeValue(t);
+        ++errorCount;
+        double sumMapes = 0;
+        for (int i = 0; i < errorSums.length; ++i) {
+            errorSums[i] += Quality.percentError(value, forecastMatrix.get(i, t));
+            sumMapes += errorSums[i] / errorCount;
         }
+        for (int i = 0; i < weights.length; ++i) {
+            weights[i] = calculateWeight(errorSums[i] / errorCount, sumMapes);
+        }
+    }
+
+    /**
+     * Пересчитать прогноз заданной длины по прогнозам моделей.
+     */
+    protected void rollForecast() {
         predict();
-        setFit();
+    }
+
+    /**
+     * Записать веса моделей и накопленные ошибки.
+     */
+    protected void writeState(DataOutputStream out) throws IOException {
+        ModelSnapshot.writeDoubles(out, weights);
+        ModelSnapshot.writeDoubles(out, errorSums);
+        out.writeInt(errorCount);
+    }
+
+    /**
+     * Прочитать веса моделей и накопленные ошибки.
+     */
+    protected void readState(DataInputStream in) throws InvalidSnapshotException, IOException {
+        double[] weights = ModelSnapshot.readDoubles(in);
+        double[] errorSums = ModelSnapshot.readDoubles(in);
+        int errorCount = in.readInt();
+        if (weights.length != models.size() || errorSums.length != models.size() || errorCount < 0) {
+            throw new InvalidSnapshotException();
+        }
+        this.weights = weights;
+        this.errorSums = errorSums;
+        this.errorCount = errorCount;
     }
 
     /**
@@ -47,8 +107,8 @@ public class WeightedAverageEnsemble extends Ensemble {
     public double forecast(int t) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
         EnableForForecasting(t);
         double weightedAverage = 0;
-        for (Map.Entry<Model, Double> weightedModel : weightedModels.entrySet()) {
-            weightedAverage += weightedModel.getKey().forecast(t) * weightedModel.getValue();
+        for (int i = 0; i < weights.length; ++i) {
+            weightedAverage += models.get(i).getFittedValue(t) * weights[i];
         }
         return weightedAverage;
     }
@@ -60,8 +120,8 @@ public class WeightedAverageEnsemble extends Ensemble {
         forecast = new double[forecastCount];
         for (int i = 0; i < forecastCount; ++i) {
             double weightedAverage = 0;
-            for (Map.Entry<Model, Double> weightedModel : weightedModels.entrySet()) {
-                weightedAverage += weightedModel.getKey().getForecast()[i] * weightedModel.getValue();
+            for (int j = 0; j < weights.length; ++j) {
+                weightedAverage += models.get(j).getForecast()[i] * weights[j];
             }
             forecast[i] = weightedAverage;
         }
@@ -70,20 +130,24 @@ public class WeightedAverageEnsemble extends Ensemble {
     /**
      * Рассчитать MAPE для всех моделей.
      *
-     * @param modelsMapes MAPE для всех моделей.
+     * @param modelsMapes MAPE для всех моделей (в порядке списка моделей).
      * @return сумма MAPE всех моделей.
      */
-    private double calculateMapeForModels(Map<Model, Double> modelsMapes) throws InvalidTemporaryValueException, ForecastNotFitedModelException {
+    private double calculateMapeForModels(double[] modelsMapes) {
         double sumMapes = 0;
-        for (Model model : models) {
+        errorSums = new double[modelsMapes.length];
+        errorCount = timeSeriesTrain.getSize() - order;
+        for (int i = 0; i < modelsMapes.length; ++i) {
+            double[] fitted = forecastMatrix.getRow(i);
             double sum = 0;
             for (int t = order + 1; t <= timeSeriesTrain.getSize(); ++t) {
-                sum += Quality.percentError(timeSeriesTrain.getTimeValue(t), model.forecast(t));
+                sum += Quality.percentError(timeSeriesTrain.getTimeValue(t), fitted[t - 1]);
             }
 
-            double mape = sum / (timeSeriesTrain.getSize() - order);
+            errorSums[i] = sum;
+            double mape = sum / errorCount;
             sumMapes += mape;
-            modelsMapes.put(model, mape);
+            modelsMapes[i] = mape;
         }
 
         return sumMapes;
@@ -0,0 +1,316 @@
+package domain.models.ensemble;
+
+import domain.Model;
+import domain.Quality;
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Оценка средневзвешенных ансамблей ({@link WeightedAverageEnsemble}) по подмножествам моделей без построения ансамблей.
+ * <p>
+ * Прогноз средневзвешенного ансамбля из k моделей с MAPE m_i на обучающей выборке:
+ * sum((1 - m_i) x_i) / (k - sum(m_i)) = (sum(x_i) - sum(m_i x_i)) / (k - sum(m_i)).
+ * Поэтому для текущего подмножества хранятся суммы прогнозов моделей и суммы прогнозов, умноженных на MAPE;
+ * добавление или исключение модели меняет суммы за один проход по ряду, оценка подмножества - еще один проход.
+ * MAPE модели считается с метки (порядок ансамбля + 1), а порядок ансамбля - наибольший порядок его моделей,
+ * поэтому суммы ведутся отдельно для каждого порядка моделей.
+ * <p>
+ * Подмножество задается битовой маской, как в переборе ансамблей. Объект не потокобезопасен.
+ */
+@ParametersAreNonnullByDefault
+public class WeightedSubsetScorer {
+    /**
+     * Количество изменений подмножества, после которого суммы пересчитываются заново (накопление ошибок округления).
+     */
+    private static final int REBUILD_INTERVAL = 1 << 12;
+
+    /**
+     * Посетитель подмножеств при обходе {@link #forEachSubset(Visitor)}.
+     */
+    public interface Visitor {
+        /**
+         * @param subset    битовая маска подмножества.
+         * @param trainMape MAPE ансамбля на обучающей выборке.
+         * @param testMape  MAPE ансамбля на тестовой выборке.
+         */
+        void visit(long subset, double trainMape, double testMape);
+    }
+
+    private final int modelCount;
+    private final int trainSize;
+    private final int testSize;
+    private final int span;
+    private final double[] trainValues;
+    private final double[] testValues;
+    private final double[][] fitted;
+
+    /**
+     * Различные порядки моделей по возрастанию.
+     */
+    private final int[] levels;
+    /**
+     * Номер порядка модели в {@link #levels}.
+     */
+    private final int[] levelOf;
+    /**
+     * MAPE модели на обучающей выборке для ансамбля каждого порядка (не меньше порядка модели).
+     */
+    private final double[][] mapes;
+    /**
+     * Прогнозы модели конечны с метки (порядок модели + 1).
+     */
+    private final boolean[] finite;
+
+    /**
+     * Суммы прогнозов моделей подмножества с порядком не больше порядка уровня (индекс = метка времени - 1).
+     */
+    private final double[][] sums;
+    /**
+     * Суммы прогнозов, умноженных на MAPE моделей.
+     */
+    private final double[][] weightedSums;
+    /**
+     * Суммы MAPE моделей.
+     */
+    private final double[] mapeSums;
+    /**
+     * Количество моделей подмножества каждого порядка.
+     */
+    private final int[] levelCounts;
+
+    private long subset;
+    private int nonFiniteCount;
+    private int changes;
+    private boolean scored;
+    private double trainMape;
+    private double testMape;
+
+    /**
+     * @param models обученные модели с общим временным рядом и разбиением на обучающую и тестовую выборки.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     */
+    public WeightedSubsetScorer(List<Model> models) throws ForecastNotFitedModelException {
+        if (models.isEmpty() || models.size() >= Long.SIZE) {
+            throw new IllegalArgumentException("Некорректное количество моделей: " + models.size());
+        }
+        modelCount = models.size();
+        TimeSeries train = models.get(0).getTimeSeriesTrain();
+        TimeSeries test = models.get(0).getTimeSeriesTest();
+        trainSize = train.getSize();
+        testSize = test.getSize();
+        span = trainSize + testSize;
+        trainValues = new double[trainSize + 1];
+        for (int t = 1; t <= trainSize; ++t) {
+            trainValues[t] = train.getTimeValue(t);
+        }
+        testValues = new double[testSize + 1];
+        for (int t = 1; t <= testSize; ++t) {
+            testValues[t] = test.getTimeValue(t);
+        }
+
+        levels = models.stream().mapToInt(Model::getOrder).distinct().sorted().toArray();
+        levelOf = new int[modelCount];
+        fitted = new double[modelCount][];
+        finite = new boolean[modelCount];
+        mapes = new double[modelCount][levels.length];
+        for (int i = 0; i < modelCount; ++i) {
+            Model model = models.get(i);
+            fitted[i] = model.getFittedValues();
+            levelOf[i] = Arrays.binarySearch(levels, model.getOrder());
+            finite[i] = isFinite(fitted[i], Math.min(model.getOrder(), span), span);
+            for (int l = levelOf[i]; l < levels.length; ++l) {
+                mapes[i][l] = trainMape(fitted[i], levels[l]);
+            }
+        }
+
+        sums = new double[levels.length][span];
+        weightedSums = new double[levels.length][span];
+        mapeSums = new double[levels.length];
+        levelCounts = new int[levels.length];
+    }
+
+    /**
+     * Добавить модель в подмножество или исключить из него.
+     *
+     * @param model номер модели.
+     */
+    public void toggle(int model) {
+        long bit = 1L << model;
+        subset ^= bit;
+        add(model, ((subset & bit) != 0) ? 1 : -1);
+        scored = false;
+        if (++changes >= REBUILD_INTERVAL) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Перейти к подмножеству, изменив только отличающиеся модели.
+     *
+     * @param target битовая маска подмножества.
+     */
+    public void moveTo(long target) {
+        if ((target >>> modelCount) != 0) {
+            throw new IllegalArgumentException("Подмножество содержит несуществующие модели: " + Long.toBinaryString(target));
+        }
+        for (long diff = target ^ subset; diff != 0; diff &= diff - 1) {
+            toggle(Long.numberOfTrailingZeros(diff));
+        }
+    }
+
+    /**
+     * Обойти все непустые подмножества в порядке кода Грея: соседние подмножества отличаются одной моделью.
+     *
+     * @param visitor посетитель подмножеств.
+     */
+    public void forEachSubset(Visitor visitor) {
+        moveTo(0);
+        for (long row = 1; row < (1L << modelCount); ++row) {
+            toggle(Long.numberOfTrailingZeros(row));
+            score();
+            visitor.visit(subset, trainMape, testMape);
+        }
+    }
+
+    /**
+     * Получить текущее подмножество.
+     *
+     * @return битовая маска подмножества.
+     */
+    public long getSubset() {
+        return subset;
+    }
+
+    /**
+     * Получить MAPE ансамбля из текущего подмножества на обучающей выборке.
+     *
+     * @return MAPE (NaN, если ансамбль нельзя оценить: пустое подмножество, слишком короткие выборки
+     * или бесконечные прогнозы моделей).
+     */
+    public double getTrainMape() {
+        score();
+        return trainMape;
+    }
+
+    /**
+     * Получить MAPE ансамбля из текущего подмножества на тестовой выборке.
+     *
+     * @return MAPE (NaN, если ансамбль нельзя оценить).
+     */
+    public double getTestMape() {
+        score();
+        return testMape;
+    }
+
+    private void score() {
+        if (scored) {
+            return;
+        }
+        scored = true;
+        trainMape = Double.NaN;
+        testMape = Double.NaN;
+        int level = levels.length - 1;
+        while (level >= 0 && levelCounts[level] == 0) {
+            --level;
+        }
+        if (level < 0 || nonFiniteCount > 0 || !isValid(levels[level])) {
+            return;
+        }
+        int order = levels[level];
+        double[] sum = sums[level];
+        double[] weightedSum = weightedSums[level];
+        double denominator = Long.bitCount(subset) - mapeSums[level];
+
+        double error = 0;
+        for (int t = order + 1; t <= trainSize; ++t) {
+            error += Quality.percentError(trainValues[t], (sum[t - 1] - weightedSum[t - 1]) / denominator);
+        }
+        trainMape = error / (trainSize - order);
+
+        error = 0;
+        for (int t = order + 1; t <= testSize; ++t) {
+            int index = trainSize + t - 1;
+            error += Quality.percentError(testValues[t], (sum[index] - weightedSum[index]) / denominator);
+        }
+        testMape = error / (testSize - order);
+    }
+
+    /**
+     * Добавить вклад модели в суммы (sign = 1) или вычесть его (sign = -1).
+     */
+    private void add(int model, int sign) {
+        levelCounts[levelOf[model]] += sign;
+        if (!finite[model]) {
+            nonFiniteCount += sign;
+            return;
+        }
+        double[] values = fitted[model];
+        for (int l = levelOf[model]; l < levels.length; ++l) {
+            if (!isValid(levels[l])) {
+                continue;
+            }
+            double mape = sign * mapes[model][l];
+            double[] sum = sums[l];
+            double[] weightedSum = weightedSums[l];
+            for (int t = levels[l]; t < span; ++t) {
+                sum[t] += sign * values[t];
+                weightedSum[t] += mape * values[t];
+            }
+            mapeSums[l] += mape;
+        }
+    }
+
+    /**
+     * Пересчитать суммы текущего подмножества заново.
+     */
+    private void rebuild() {
+        changes = 0;
+        nonFiniteCount = 0;
+        Arrays.fill(levelCounts, 0);
+        Arrays.fill(mapeSums, 0);
+        for (int l = 0; l < levels.length; ++l) {
+            Arrays.fill(sums[l], 0);
+            Arrays.fill(weightedSums[l], 0);
+        }
+        for (long rest = subset; rest != 0; rest &= rest - 1) {
+            add(Long.numberOfTrailingZeros(rest), 1);
+        }
+    }
+
+    /**
+     * Можно ли оценить ансамбль заданного порядка (обе выборки длиннее порядка).
+     */
+    private boolean isValid(int order) {
+        return trainSize > order && testSize > order;
+    }
+
+    /**
+     * MAPE модели на обучающей выборке с метки (порядок + 1), как в {@link WeightedAverageEnsemble}.
+     */
+    private double trainMape(double[] values, int order) {
+        if (trainSize <= order) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int t = order + 1; t <= trainSize; ++t) {
+            sum += Quality.percentError(trainValues[t], values[t - 1]);
+        }
+        return sum / (trainSize - order);
+    }
+
+    private static boolean isFinite(double[] values, int from, int to) {
+        if (values.length < to) {
+            return false;
+        }
+        for (int i = from; i < to; ++i) {
+            if (!Double.isFinite(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
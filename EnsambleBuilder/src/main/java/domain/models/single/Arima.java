@@ -4,17 +4,26 @@ import com.workday.insights.timeseries.arima.ArimaSolver;
 import com.workday.insights.timeseries.arima.struct.ArimaModel;
 import com.workday.insights.timeseries.arima.struct.ArimaParams;
 import domain.Model;
+import domain.ModelSnapshot;
 import domain.TimeSeries;
 import domain.exceptions.ForecastNotFitedModelException;
 import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
 import domain.exceptions.InvalidTemporaryValueException;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 
 public class Arima extends Model {
     private ArimaModel fittedModel;
     private TimeSeries timeSeriesErrors;
+    /**
+     * Расчет прогнозов по коэффициентам обученной модели.
+     */
+    private ArimaScorer scorer;
     private final int d;
     private final int q;
     private static final int P = 0;
@@ -22,6 +31,10 @@ public class Arima extends Model {
     private static final int Q = 0;
     private static final int m = 0;
 
+    public Arima(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
+        this(timeSeries, order, forecastCount, trainPercent, testPercent, 0, 0);
+    }
+
     public Arima(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent, int d, int q) throws InvalidOrderException {
         super(timeSeries, order, forecastCount, trainPercent, testPercent);
         this.d = d;
@@ -36,53 +49,94 @@ public class Arima extends Model {
         double[] data = getTrainingData();
         ArimaParams paramsForecast = new ArimaParams(order, d, q, P, D, Q, m);
         fittedModel = ArimaSolver.estimateARIMA(paramsForecast, data, data.length, data.length + 1);
+        scorer = new ArimaScorer(fittedModel.getParams(), order);
         predict();
+
+        for (int i = order + 1; i <= timeSeries.getSize(); ++i) {
+            addError(i);
+        }
         setFit();
+    }
 
-        double[] errors = new double[q];
-        for (int i = 0; i < q; ++i) {
-            errors[i] = 0;
+    /**
+     * Обучить модель по готовым коэффициентам авторегрессии (см. {@link ArimaFamily}).
+     * Прогноз, как и при обучении библиотекой, строится от конца обучающей выборки по центрированным значениям.
+     *
+     * @param coefficients коэффициенты при лагах 1..порядок.
+     * @param mean         среднее обучающей выборки.
+     * @param centered     центрированная обучающая выборка.
+     */
+    void fit(double[] coefficients, double mean, double[] centered) {
+        scorer = new ArimaScorer(coefficients);
+        double[] extended = Arrays.copyOf(centered, centered.length + forecastCount);
+        forecast = new double[forecastCount];
+        for (int i = 0; i < forecastCount; ++i) {
+            int t = centered.length + i;
+            double value = 0;
+            for (int j = 1; j <= coefficients.length; ++j) {
+                value += extended[t - j] * coefficients[j - 1];
+            }
+            extended[t] = value;
+            forecast[i] = value + mean;
         }
+
         for (int i = order + 1; i <= timeSeries.getSize(); ++i) {
-            double forecast = fittedModel.getParams().forecastOnePointARMA(getDataForForecast(i), errors, order) * (-1);
-            double value = timeSeries.getTimeValue(i) - forecast;
-            timeSeriesErrors.addTimeValue(value);
+            addError(i);
         }
+        setFit();
     }
 
     public double forecast(int t) throws ForecastNotFitedModelException, InvalidTemporaryValueException {
         EnableForForecasting(t);
-        double[] values = getDataForForecast(t);
-        double[] errors = getErrorsForForecast(t);
-        return fittedModel.getParams().forecastOnePointARMA(values, errors, order) * (-1);
+        return scorer.score(timeSeries, timeSeriesErrors, t);
     }
 
     /**
-     * Сформировать данные для прогноза.
-     *
-     * @param t временная метка прогноза.
-     * @return данные для прогноза.
+     * Добавить остаток модели для нового значения ряда.
      */
-    private double[] getDataForForecast(int t) {
-        double[] values = new double[order];
-        for (int i = 0; i < order; i++) {
-            values[i] = timeSeries.getTimeValue(t + i - order);
+    protected void updateState(int t) {
+        addError(t);
+    }
+
+    /**
+     * Пересчитать прогноз заданной длины от конца ряда так же, как библиотека строит прогноз
+     * по коэффициентам обученной модели: по центрированному ряду, прогнозы подставляются вместо значений,
+     * будущие остатки считаются нулевыми.
+     */
+    protected void rollForecast() {
+        scorer.forecast(timeSeries, forecast);
+    }
+
+    /**
+     * Записать коэффициенты модели и остатки.
+     */
+    protected void writeState(DataOutputStream out) throws IOException {
+        scorer.write(out);
+        ModelSnapshot.writeDoubles(out, timeSeriesErrors.toArray());
+    }
+
+    /**
+     * Прочитать коэффициенты модели и остатки.
+     */
+    protected void readState(DataInputStream in) throws InvalidSnapshotException, IOException {
+        scorer = ArimaScorer.read(in, order);
+        double[] errors = ModelSnapshot.readDoubles(in);
+        if (errors.length < order) {
+            throw new InvalidSnapshotException();
+        }
+        timeSeriesErrors = new TimeSeries(errors.length);
+        for (double error : errors) {
+            timeSeriesErrors.addTimeValue(error);
         }
-        return values;
     }
 
     /**
-     * Сформировать данные об ошибках прогноза.
+     * Рассчитать остаток модели для метки времени и добавить его в ряд остатков.
      *
-     * @param t временная метка прогноза.
-     * @return ошибки прогноза.
+     * @param t метка времени.
      */
-    private double[] getErrorsForForecast(int t) {
-        double[] values = new double[order];
-        for (int i = 0; i < order; i++) {
-            values[i] = timeSeriesErrors.getTimeValue(t + i - order);
-        }
-        return values;
+    private void addError(int t) {
+        timeSeriesErrors.addTimeValue(timeSeries.getTimeValue(t) - scorer.score(timeSeries, t));
     }
 
     /**
@@ -90,7 +144,6 @@ public class Arima extends Model {
      */
     private void predict() {
         forecast = fittedModel.forecast(forecastCount).getForecast();
-        System.out.println(Arrays.toString(forecast));
     }
 
     /**
@@ -100,11 +153,6 @@ public class Arima extends Model {
      */
     @NotNull
     private double[] getTrainingData() {
-        int size = timeSeriesTrain.getSize();
-        double[] trainingData = new double[size];
-        for (int i = 0; i < size; ++i) {
-            trainingData[i] = timeSeriesTrain.getTimeValue(i + 1);
-        }
-        return trainingData;
+        return timeSeriesTrain.toArray();
     }
 }
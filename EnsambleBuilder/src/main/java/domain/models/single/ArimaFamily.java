@@ -0,0 +1,175 @@
+package domain.models.single;
+
+import domain.TimeSeries;
+import domain.exceptions.InvalidOrderException;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Семейство авторегрессионных моделей всех порядков от 1 до заданного, обученных за один проход.
+ * <p>
+ * Автоковариация центрированной обучающей выборки считается один раз (для длинных рядов - через БПФ),
+ * затем рекурсия Левинсона-Дарбина дает коэффициенты Юла-Уокера сразу для всех порядков.
+ * Обучение модели любого порядка после этого сводится к расчету ее остатков.
+ * <p>
+ * Коэффициенты - оценки Юла-Уокера, поэтому они немного отличаются от оценок Ханнана-Риссанена,
+ * которые дает {@link Arima#fit()}.
+ */
+@ParametersAreNonnullByDefault
+public class ArimaFamily {
+    /**
+     * Минимальная длина ряда для расчета автоковариации через БПФ.
+     */
+    private static final int FFT_MIN_LENGTH = 256;
+
+    private final TimeSeries timeSeries;
+    private final int maxOrder;
+    private final int forecastCount;
+    private final int trainPercent;
+    private final int testPercent;
+
+    /**
+     * Центрированная обучающая выборка.
+     */
+    private double[] centered;
+    private double mean;
+    /**
+     * Коэффициенты моделей (индекс - порядок модели).
+     */
+    private double[][] coefficients;
+
+    /**
+     * @param timeSeries    временной ряд.
+     * @param maxOrder      максимальный порядок модели.
+     * @param forecastCount горизонт прогноза.
+     * @param trainPercent  процент обучающей выборки.
+     * @param testPercent   процент тестовой выборки.
+     */
+    public ArimaFamily(TimeSeries timeSeries, int maxOrder, int forecastCount, int trainPercent, int testPercent) {
+        this.timeSeries = timeSeries;
+        this.maxOrder = maxOrder;
+        this.forecastCount = forecastCount;
+        this.trainPercent = trainPercent;
+        this.testPercent = testPercent;
+    }
+
+    /**
+     * Получить обученную модель заданного порядка.
+     * Коэффициенты всех порядков рассчитываются при первом обращении.
+     *
+     * @param order порядок модели (от 1 до максимального).
+     * @return обученная модель.
+     * @throws InvalidOrderException некорректный порядок модели.
+     */
+    public synchronized Arima fit(int order) throws InvalidOrderException {
+        if (order > maxOrder) {
+            throw new InvalidOrderException();
+        }
+        Arima arima = new Arima(timeSeries, order, forecastCount, trainPercent, testPercent);
+        if (coefficients == null) {
+            estimate(arima.getTimeSeriesTrain().toArray());
+        }
+        if (centered.length < 2 * (order + 1)) {
+            throw new IllegalArgumentException("Недостаточно значений для модели порядка " + order + ": " + centered.length);
+        }
+        arima.fit(coefficients[order], mean, centered);
+        return arima;
+    }
+
+    /**
+     * Рассчитать коэффициенты моделей всех порядков.
+     *
+     * @param train обучающая выборка.
+     */
+    private void estimate(double[] train) {
+        double sum = 0;
+        for (double value : train) {
+            sum += value;
+        }
+        mean = sum / train.length;
+        centered = new double[train.length];
+        for (int i = 0; i < train.length; ++i) {
+            centered[i] = train[i] - mean;
+        }
+        int lags = Math.min(maxOrder, Math.max(train.length - 1, 0));
+        coefficients = levinsonDurbin(autocovariance(centered, lags), maxOrder);
+    }
+
+    /**
+     * Рассчитать смещенную оценку автоковариации центрированного ряда.
+     *
+     * @param centered центрированный ряд.
+     * @param maxLag   максимальный лаг.
+     * @return автоковариация для лагов от 0 до максимального.
+     */
+    static double[] autocovariance(double[] centered, int maxLag) {
+        int n = centered.length;
+        double[] result = new double[maxLag + 1];
+        if (n == 0) {
+            return result;
+        }
+        int size = Integer.highestOneBit(Math.max(2 * n - 1, 1));
+        size = (size < 2 * n - 1) ? size * 2 : size;
+        int log = Integer.numberOfTrailingZeros(size);
+        if (n >= FFT_MIN_LENGTH && maxLag + 1 > 4 * log) {
+            double[] padded = new double[size];
+            System.arraycopy(centered, 0, padded, 0, n);
+            FastFourierTransformer transformer = new FastFourierTransformer(DftNormalization.STANDARD);
+            Complex[] spectrum = transformer.transform(padded, TransformType.FORWARD);
+            for (int i = 0; i < size; ++i) {
+                double re = spectrum[i].getReal();
+                double im = spectrum[i].getImaginary();
+                spectrum[i] = new Complex(re * re + im * im, 0);
+            }
+            Complex[] correlation = transformer.transform(spectrum, TransformType.INVERSE);
+            for (int k = 0; k <= maxLag; ++k) {
+                result[k] = correlation[k].getReal() / n;
+            }
+            return result;
+        }
+        for (int k = 0; k <= maxLag; ++k) {
+            double sum = 0;
+            for (int i = k; i < n; ++i) {
+                sum += centered[i] * centered[i - k];
+            }
+            result[k] = sum / n;
+        }
+        return result;
+    }
+
+    /**
+     * Рекурсия Левинсона-Дарбина: коэффициенты Юла-Уокера для всех порядков по автоковариации.
+     * Если ряд вырожден (нулевая дисперсия ошибки), коэффициенты старших порядков равны нулю.
+     *
+     * @param autocovariance автоковариация для лагов от 0.
+     * @param maxOrder       максимальный порядок.
+     * @return коэффициенты (индекс - порядок модели, в строке коэффициенты при лагах 1..порядок).
+     */
+    static double[][] levinsonDurbin(double[] autocovariance, int maxOrder) {
+        double[][] phi = new double[maxOrder + 1][];
+        phi[0] = new double[0];
+        double variance = autocovariance[0];
+        for (int k = 1; k <= maxOrder; ++k) {
+            phi[k] = new double[k];
+            if (k >= autocovariance.length || variance <= 0) {
+                System.arraycopy(phi[k - 1], 0, phi[k], 0, k - 1);
+                continue;
+            }
+            double numerator = autocovariance[k];
+            for (int j = 1; j < k; ++j) {
+                numerator -= phi[k - 1][j - 1] * autocovariance[k - j];
+            }
+            double reflection = numerator / variance;
+            for (int j = 1; j < k; ++j) {
+                phi[k][j - 1] = phi[k - 1][j - 1] - reflection * phi[k - 1][k - j - 1];
+            }
+            phi[k][k - 1] = reflection;
+            variance *= 1 - reflection * reflection;
+        }
+        return phi;
+    }
+}
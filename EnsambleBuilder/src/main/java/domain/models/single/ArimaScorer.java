@@ -0,0 +1,239 @@
+package domain.models.single;
+
+import com.workday.insights.timeseries.arima.struct.ArimaParams;
+import domain.TimeSeries;
+
+import domain.ModelSnapshot;
+import domain.exceptions.InvalidSnapshotException;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Расчет прогнозов ARMA по коэффициентам обученной модели без выделения памяти на каждую точку.
+ * Значения и остатки читаются прямо из временных рядов, для прогноза от конца ряда используется кольцевой буфер.
+ * Слагаемые суммируются в том же порядке, что и в ArimaParams.forecastOnePointARMA, поэтому результаты совпадают побитово.
+ */
+@ParametersAreNonnullByDefault
+final class ArimaScorer {
+    private final int[] offsetsAR;
+    private final double[] coeffsAR;
+    private final int[] offsetsMA;
+    private final double[] coeffsMA;
+
+    /**
+     * Кольцевой буфер значений (значение метки времени s хранится в позиции s mod window).
+     */
+    private final double[] values;
+    /**
+     * Кольцевой буфер остатков.
+     */
+    private final double[] errors;
+    private final int window;
+
+    /**
+     * @param params параметры обученной модели.
+     * @param order  порядок модели (минимальная длина окна).
+     */
+    ArimaScorer(ArimaParams params, int order) {
+        this(params.getOffsetsAR().clone(), coefficients(params.getOffsetsAR(), params.getCurrentARCoefficients()),
+                params.getOffsetsMA().clone(), coefficients(params.getOffsetsMA(), params.getCurrentMACoefficients()), order);
+    }
+
+    /**
+     * @param coefficients коэффициенты авторегрессии при лагах 1..порядок.
+     */
+    ArimaScorer(double[] coefficients) {
+        this(lags(coefficients.length), coefficients.clone(), new int[0], new double[0], coefficients.length);
+    }
+
+    private ArimaScorer(int[] offsetsAR, double[] coeffsAR, int[] offsetsMA, double[] coeffsMA, int order) {
+        this.offsetsAR = offsetsAR;
+        this.coeffsAR = coeffsAR;
+        this.offsetsMA = offsetsMA;
+        this.coeffsMA = coeffsMA;
+
+        int window = order;
+        for (int offset : offsetsAR) {
+            window = Math.max(window, offset);
+        }
+        for (int offset : offsetsMA) {
+            window = Math.max(window, offset);
+        }
+        this.window = Math.max(window, 1);
+        values = new double[this.window];
+        errors = new double[this.window];
+    }
+
+    /**
+     * Прогноз значения ряда.
+     *
+     * @param timeSeries       временной ряд.
+     * @param timeSeriesErrors остатки модели (метки времени совпадают с рядом).
+     * @param t                метка времени предсказываемого значения.
+     * @return прогноз.
+     */
+    double score(TimeSeries timeSeries, TimeSeries timeSeriesErrors, int t) {
+        double ar = 0;
+        for (int j = 0; j < offsetsAR.length; ++j) {
+            ar += timeSeries.getTimeValue(t - offsetsAR[j]) * coeffsAR[j];
+        }
+        double ma = 0;
+        for (int j = 0; j < offsetsMA.length; ++j) {
+            ma += timeSeriesErrors.getTimeValue(t - offsetsMA[j]) * coeffsMA[j];
+        }
+        return (ar + ma) * (-1);
+    }
+
+    /**
+     * Прогноз значения ряда при нулевых остатках (используется для расчета остатков модели).
+     *
+     * @param timeSeries временной ряд.
+     * @param t          метка времени предсказываемого значения.
+     * @return прогноз.
+     */
+    double score(TimeSeries timeSeries, int t) {
+        double ar = 0;
+        for (int j = 0; j < offsetsAR.length; ++j) {
+            ar += timeSeries.getTimeValue(t - offsetsAR[j]) * coeffsAR[j];
+        }
+        // остатки считаются нулевыми, поэтому слагаемое скользящего среднего равно нулю
+        return ar * (-1);
+    }
+
+    /**
+     * Прогноз от конца ряда по соглашению библиотеки (ArimaSolver.forecastARIMA с параметрами обученной модели):
+     * ряд центрируется по своему среднему, остатки пересчитываются по всему ряду с нулевыми начальными,
+     * прогнозы подставляются вместо значений, будущие остатки считаются нулевыми, к прогнозу добавляется среднее.
+     * В отличие от {@link #score(TimeSeries, TimeSeries, int)} знак прогноза не меняется.
+     *
+     * @param timeSeries временной ряд.
+     * @param forecast   массив для прогноза (длина = горизонт прогноза).
+     */
+    void forecast(TimeSeries timeSeries, double[] forecast) {
+        int start = timeSeries.getStartTime();
+        int end = timeSeries.getEndTime();
+        double sum = 0;
+        for (int s = start; s <= end; ++s) {
+            sum += timeSeries.getTimeValue(s);
+        }
+        double mean = sum / timeSeries.getSize();
+
+        int first = start + Math.max(maxOffset(offsetsAR), maxOffset(offsetsMA));
+        for (int s = start; s <= end; ++s) {
+            double value = timeSeries.getTimeValue(s) - mean;
+            double error = (s < first) ? 0 : value - centered(s);
+            values[Math.floorMod(s, window)] = value;
+            errors[Math.floorMod(s, window)] = error;
+        }
+        for (int i = 0; i < forecast.length; ++i) {
+            int t = end + 1 + i;
+            double value = centered(t);
+            values[Math.floorMod(t, window)] = value;
+            errors[Math.floorMod(t, window)] = 0;
+            forecast[i] = value + mean;
+        }
+    }
+
+    /**
+     * Прогноз центрированного значения по кольцевым буферам (слагаемые в порядке ArimaParams.forecastOnePointARMA).
+     */
+    private double centered(int t) {
+        double ar = 0;
+        for (int j = 0; j < offsetsAR.length; ++j) {
+            ar += values[Math.floorMod(t - offsetsAR[j], window)] * coeffsAR[j];
+        }
+        double ma = 0;
+        for (int j = 0; j < offsetsMA.length; ++j) {
+            ma += errors[Math.floorMod(t - offsetsMA[j], window)] * coeffsMA[j];
+        }
+        return ar + ma;
+    }
+
+    /**
+     * Записать смещения и коэффициенты в снимок модели.
+     *
+     * @param out поток снимка.
+     * @throws IOException при записи.
+     */
+    void write(DataOutputStream out) throws IOException {
+        writeOperator(out, offsetsAR, coeffsAR);
+        writeOperator(out, offsetsMA, coeffsMA);
+    }
+
+    /**
+     * Прочитать смещения и коэффициенты, записанные {@link #write(DataOutputStream)}.
+     *
+     * @param in    поток снимка.
+     * @param order порядок модели.
+     * @return расчет прогнозов.
+     * @throws InvalidSnapshotException некорректные смещения.
+     * @throws IOException              при чтении.
+     */
+    static ArimaScorer read(DataInputStream in, int order) throws InvalidSnapshotException, IOException {
+        int[] offsetsAR = readOffsets(in);
+        double[] coeffsAR = ModelSnapshot.readDoubles(in);
+        int[] offsetsMA = readOffsets(in);
+        double[] coeffsMA = ModelSnapshot.readDoubles(in);
+        if (coeffsAR.length != offsetsAR.length || coeffsMA.length != offsetsMA.length) {
+            throw new InvalidSnapshotException();
+        }
+        return new ArimaScorer(offsetsAR, coeffsAR, offsetsMA, coeffsMA, order);
+    }
+
+    private static void writeOperator(DataOutputStream out, int[] offsets, double[] coeffs) throws IOException {
+        out.writeInt(offsets.length);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        ModelSnapshot.writeDoubles(out, coeffs);
+    }
+
+    private static int[] readOffsets(DataInputStream in) throws InvalidSnapshotException, IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new InvalidSnapshotException();
+        }
+        int[] offsets = new int[length];
+        for (int i = 0; i < length; ++i) {
+            offsets[i] = in.readInt();
+            if (offsets[i] < 1) {
+                throw new InvalidSnapshotException();
+            }
+        }
+        return offsets;
+    }
+
+    private static int maxOffset(int[] offsets) {
+        int max = 0;
+        for (int offset : offsets) {
+            max = Math.max(max, offset);
+        }
+        return max;
+    }
+
+    private static int[] lags(int order) {
+        int[] lags = new int[order];
+        for (int j = 0; j < order; ++j) {
+            lags[j] = j + 1;
+        }
+        return lags;
+    }
+
+    /**
+     * Коэффициенты в порядке смещений оператора.
+     *
+     * @param offsets   смещения.
+     * @param flattened коэффициенты, индексированные смещением.
+     * @return коэффициенты.
+     */
+    private static double[] coefficients(int[] offsets, double[] flattened) {
+        double[] coeffs = new double[offsets.length];
+        for (int j = 0; j < offsets.length; ++j) {
+            coeffs[j] = flattened[offsets[j]];
+        }
+        return coeffs;
+    }
+}
@@ -1,74 +1,160 @@
 package domain.models.single;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import domain.Model;
+import domain.ModelSnapshot;
 import domain.TimeSeries;
 import domain.exceptions.ForecastNotFitedModelException;
 import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
 import domain.exceptions.InvalidTemporaryValueException;
 import domain.models.Stub;
 import domain.models.TRPoint;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClients;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Fuzzy extends Model {
+    /**
+     * Системное свойство с адресом удаленного сервиса нечеткой модели.
+     * Если свойство не задано, модель рассчитывается в памяти ({@link LocalFuzzyBackend}).
+     */
+    public static final String REMOTE_PROPERTY = "fuzzy.remote";
+    /**
+     * Системное свойство с адресом пакетной обработки удаленного сервиса (используется вместе с {@link #REMOTE_PROPERTY}).
+     * Если свойство не задано, пакет моделей отправляется отдельными одновременными запросами.
+     */
+    public static final String BATCH_PROPERTY = "fuzzy.remote.batch";
+
+    private final FuzzyBackend backend;
     private Stub stub;
 
     public Fuzzy(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
+        this(timeSeries, order, forecastCount, trainPercent, testPercent, defaultBackend());
+    }
+
+    /**
+     * @param backend реализация нечеткой модели.
+     */
+    public Fuzzy(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent, FuzzyBackend backend) throws InvalidOrderException {
         super(timeSeries, order, forecastCount, trainPercent, testPercent);
+        this.backend = backend;
     }
 
     public void fit() throws IOException {
-        HttpClient client = HttpClients.createDefault();
-        HttpPost post = new HttpPost("http://salx.pw/api/FModel/S");
-        post.setHeader("Accept", "application/json");
-        post.setHeader("Content-type", "application/json");
-
-        StringEntity input = getTrainingData();
-        System.out.println(input);
-
-        post.setEntity(input);
-        HttpResponse response = client.execute(post);
-        BufferedReader rd = new BufferedReader(new InputStreamReader(response.getEntity().getContent()));
-        String line = "";
-        String output = "";
-        while ((line = rd.readLine()) != null) {
-            output += line;
+        setStub(backend.fit(getTrainingData()));
+    }
+
+    /**
+     * Обучить несколько нечетких моделей. Запросы моделей с общей реализацией передаются ей одним пакетом,
+     * поэтому удаленный сервис обрабатывает их одновременно или одним запросом.
+     *
+     * @param models модели.
+     * @throws IOException ошибка обращения к реализации.
+     */
+    public static void fitAll(List<Fuzzy> models) throws IOException {
+        Map<FuzzyBackend, List<Fuzzy>> byBackend = new IdentityHashMap<>();
+        for (Fuzzy model : models) {
+            byBackend.computeIfAbsent(model.backend, backend -> new ArrayList<>()).add(model);
+        }
+        for (Map.Entry<FuzzyBackend, List<Fuzzy>> entry : byBackend.entrySet()) {
+            List<Stub> requests = new ArrayList<>(entry.getValue().size());
+            for (Fuzzy model : entry.getValue()) {
+                requests.add(model.getTrainingData());
+            }
+            List<Stub> responses = entry.getKey().fitAll(requests);
+            for (int i = 0; i < responses.size(); ++i) {
+                entry.getValue().get(i).setStub(responses.get(i));
+            }
         }
+    }
 
-        Gson gson = new GsonBuilder().create();
-        stub = gson.fromJson(output, Stub.class);
-        predict();
-        setFit();
+    /**
+     * Выгоднее ли обучать модель в пакете с другими через {@link #fitAll(List)}.
+     *
+     * @return выгоднее ли пакетное обучение.
+     */
+    public boolean isBatchPreferred() {
+        return backend.isBatchPreferred();
     }
 
     public double forecast(int t) throws ForecastNotFitedModelException, InvalidTemporaryValueException {
         EnableForForecasting(t);
+        if (t > stub.getROW().size()) {
+            return timeSeries.getTimeValue(t - 1);
+        }
         return stub.getROW().get(t - 1).getY();
     }
 
+    /**
+     * Значения модели рассчитываются один раз при обучении, поэтому новые значения не меняют модель.
+     *
+     * @param t метка времени нового значения.
+     */
+    protected void updateState(int t) {
+    }
+
+    /**
+     * Сдвинуть прогноз к концу ряда. Для меток вне рассчитанных значений используется последнее значение ряда.
+     */
+    protected void rollForecast() {
+        predict();
+    }
+
+    /**
+     * Записать значения модели и прогноз, рассчитанные при обучении.
+     */
+    protected void writeState(DataOutputStream out) throws IOException {
+        double[] values = new double[stub.getROW().size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = stub.getROW().get(i).getY();
+        }
+        ModelSnapshot.writeDoubles(out, values);
+    }
+
+    /**
+     * Прочитать значения модели и прогноз.
+     */
+    protected void readState(DataInputStream in) throws InvalidSnapshotException, IOException {
+        double[] values = ModelSnapshot.readDoubles(in);
+        List<TRPoint> collection = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; ++i) {
+            TRPoint point = new TRPoint();
+            point.setX(i + 1);
+            point.setY(values[i]);
+            collection.add(point);
+        }
+        stub = new Stub();
+        stub.setOrder(order);
+        stub.setForecastCount(forecastCount);
+        stub.setROW(collection);
+    }
+
+    /**
+     * Принять рассчитанные значения модели.
+     *
+     * @param stub ответ реализации нечеткой модели.
+     */
+    private void setStub(Stub stub) {
+        this.stub = stub;
+        predict();
+        setFit();
+    }
+
     /**
      * Расчет прогноза заданной длины.
      */
     private void predict() {
         forecast = new double[forecastCount];
         for(int i = 0; i < forecastCount; ++i) {
-            forecast[i] = stub.getROW().get(timeSeries.getSize() + i - 1).getY();
+            int row = timeSeries.getSize() + i;
+            forecast[i] = (row <= stub.getROW().size()) ? stub.getROW().get(row - 1).getY() : timeSeries.getTimeValue(timeSeries.getSize());
         }
-        System.out.println(Arrays.toString(forecast));
     }
 
     /**
@@ -77,7 +163,7 @@ public class Fuzzy extends Model {
      * @return обучающая выборка.
      */
     @NotNull
-    private StringEntity getTrainingData() throws UnsupportedEncodingException {
+    private Stub getTrainingData() {
         Stub stub = new Stub();
         stub.setName("нечеткий");
         stub.setOrder(order);
@@ -93,8 +179,20 @@ public class Fuzzy extends Model {
         }
 
         stub.setROW(collection);
+        return stub;
+    }
 
-        Gson gson = new GsonBuilder().create();
-        return new StringEntity(gson.toJson(stub));
+    /**
+     * Получить реализацию нечеткой модели по умолчанию.
+     *
+     * @return удаленный сервис, если задано свойство {@link #REMOTE_PROPERTY}, иначе расчет в памяти.
+     */
+    private static FuzzyBackend defaultBackend() {
+        String url = System.getProperty(REMOTE_PROPERTY);
+        if (url == null || url.isEmpty()) {
+            return new LocalFuzzyBackend();
+        }
+        String batchUrl = System.getProperty(BATCH_PROPERTY);
+        return RemoteFuzzyBackend.shared(url, (batchUrl == null || batchUrl.isEmpty()) ? null : batchUrl);
     }
 }
@@ -0,0 +1,50 @@
+package domain.models.single;
+
+import domain.models.Stub;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реализация нечеткой модели временного ряда.
+ * Запрос содержит весь временной ряд, порядок модели, горизонт прогноза и длину контрольной части ряда,
+ * ответ - значения модели для всех меток ряда и прогноз (точки с метками от 1 до длины ряда + горизонт прогноза).
+ */
+@ParametersAreNonnullByDefault
+public interface FuzzyBackend {
+    /**
+     * Обучить нечеткую модель и рассчитать ее значения.
+     *
+     * @param request запрос.
+     * @return ответ.
+     * @throws IOException ошибка обращения к реализации.
+     */
+    Stub fit(Stub request) throws IOException;
+
+    /**
+     * Обучить несколько нечетких моделей (например, разных порядков для одного ряда).
+     *
+     * @param requests запросы.
+     * @return ответы в порядке запросов.
+     * @throws IOException ошибка обращения к реализации.
+     */
+    default List<Stub> fitAll(List<Stub> requests) throws IOException {
+        List<Stub> responses = new ArrayList<>(requests.size());
+        for (Stub request : requests) {
+            responses.add(fit(request));
+        }
+        return responses;
+    }
+
+    /**
+     * Выгоднее ли обучать модели пакетом через {@link #fitAll(List)}, чем по одной
+     * (например, одним запросом к удаленному сервису).
+     *
+     * @return выгоднее ли пакетное обучение.
+     */
+    default boolean isBatchPreferred() {
+        return false;
+    }
+}
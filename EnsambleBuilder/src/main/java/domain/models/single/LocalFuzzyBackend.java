@@ -0,0 +1,285 @@
+package domain.models.single;
+
+import domain.Quality;
+import domain.models.Stub;
+import domain.models.TRPoint;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Нечеткая модель временного ряда высокого порядка, рассчитываемая в памяти за линейное время.
+ * <ul>
+ * <li>фазификация: область значений обучающей части ряда делится на равные интервалы,
+ * значение относится к интервалу с наибольшей степенью принадлежности (треугольные множества с центрами в серединах интервалов);</li>
+ * <li>группы нечетких логических отношений: для каждого порядка от 1 до порядка модели
+ * последовательность меток предыдущих значений связывается с метками следующих значений
+ * (группы хранятся в хеш-таблицах с ключом - последовательностью меток, поэтому порядок не ограничен);</li>
+ * <li>дефазификация: среднее середин интервалов следствий группы (с учетом повторов).
+ * Если группы нужного порядка нет, используется группа меньшего порядка, если нет и ее - середина интервала последнего значения.</li>
+ * </ul>
+ * Правила строятся по обучающей части ряда (без контрольной части).
+ */
+@ParametersAreNonnullByDefault
+public class LocalFuzzyBackend implements FuzzyBackend {
+    private static final int MIN_INTERVALS = 7;
+    private static final int MAX_INTERVALS = 64;
+    /**
+     * Расширение области значений в долях ее ширины.
+     */
+    private static final double MARGIN = 0.1;
+
+    @Override
+    public Stub fit(Stub request) {
+        List<TRPoint> points = request.getROW();
+        int size = points.size();
+        double[] values = new double[size];
+        for (int i = 0; i < size; ++i) {
+            values[i] = points.get(i).getY();
+        }
+        int trainSize = Math.max(1, size - request.getActualCount());
+        Rules rules = new Rules(values, trainSize, request.getOrder());
+
+        double[] result = new double[size + request.getForecastCount()];
+        int order = Math.min(request.getOrder(), size);
+        System.arraycopy(values, 0, result, 0, order);
+        for (int i = order; i < size; ++i) {
+            result[i] = rules.forecast(values, i);
+        }
+        double[] extended = new double[result.length];
+        System.arraycopy(values, 0, extended, 0, size);
+        for (int i = size; i < result.length; ++i) {
+            result[i] = rules.forecast(extended, i);
+            extended[i] = result[i];
+        }
+
+        Stub response = new Stub();
+        response.setName(request.getName());
+        response.setType("local");
+        response.setOrder(request.getOrder());
+        response.setForecastCount(request.getForecastCount());
+        response.setActualCount(request.getActualCount());
+        List<TRPoint> row = new ArrayList<>(result.length);
+        for (int i = 0; i < result.length; ++i) {
+            TRPoint point = new TRPoint();
+            point.setX(i + 1);
+            point.setY(result[i]);
+            row.add(point);
+        }
+        response.setROW(row);
+
+        int trainFrom = Math.min(order, trainSize);
+        response.setSMAPE_i(Quality.symmetricMape(values, trainFrom, result, trainFrom, trainSize - trainFrom));
+        response.setMSE_i(square(Quality.rmse(values, trainFrom, result, trainFrom, trainSize - trainFrom)));
+        response.setSMAPE_e(Quality.symmetricMape(values, trainSize, result, trainSize, size - trainSize));
+        response.setMSE_e(square(Quality.rmse(values, trainSize, result, trainSize, size - trainSize)));
+        return response;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * Интервалы и группы нечетких логических отношений.
+     */
+    private static class Rules {
+        private final double low;
+        private final double width;
+        private final int intervals;
+        private final int order;
+        /**
+         * Метки значений обучающей части ряда: ключи групп ссылаются на последовательности этих меток.
+         */
+        private final int[] labels;
+        /**
+         * Группы отношений по порядкам (индекс = порядок - 1).
+         */
+        private final GroupTable[] groups;
+        /**
+         * Метки предыдущих значений при прогнозе (буфер переиспользуется).
+         */
+        private final int[] window;
+
+        Rules(double[] values, int trainSize, int order) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < trainSize; ++i) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            double margin = (max > min) ? (max - min) * MARGIN : Math.max(Math.abs(max), 1) * MARGIN;
+            low = min - margin;
+            intervals = Math.max(MIN_INTERVALS, Math.min(MAX_INTERVALS, (int) Math.round(Math.sqrt(trainSize))));
+            width = (max + margin - low) / intervals;
+            this.order = Math.max(1, order);
+
+            labels = new int[trainSize];
+            for (int i = 0; i < trainSize; ++i) {
+                labels[i] = label(values[i]);
+            }
+            groups = new GroupTable[this.order];
+            for (int k = 1; k <= this.order; ++k) {
+                groups[k - 1] = new GroupTable(labels, k);
+            }
+            for (int i = 1; i < trainSize; ++i) {
+                double midpoint = midpoint(labels[i]);
+                int hash = 0;
+                for (int k = 1; k <= Math.min(this.order, i); ++k) {
+                    hash = GroupTable.hash(hash, labels[i - k]);
+                    groups[k - 1].add(labels, i - k, hash).add(midpoint);
+                }
+            }
+            window = new int[this.order];
+        }
+
+        /**
+         * Прогноз значения по предыдущим значениям.
+         *
+         * @param values значения ряда.
+         * @param i      индекс предсказываемого значения.
+         * @return прогноз.
+         */
+        double forecast(double[] values, int i) {
+            int maxOrder = Math.min(order, i);
+            // группа порядка k + 1 существует, только если существует группа ее последних k меток,
+            // поэтому порядки перебираются по возрастанию до первой отсутствующей группы
+            Group found = null;
+            int hash = 0;
+            for (int k = 1; k <= maxOrder; ++k) {
+                window[order - k] = label(values[i - k]);
+                hash = GroupTable.hash(hash, window[order - k]);
+                Group group = groups[k - 1].get(window, order - k, hash);
+                if (group == null) {
+                    break;
+                }
+                found = group;
+            }
+            return (found != null) ? found.defuzzify() : midpoint(label(values[i - 1]));
+        }
+
+        private int label(double value) {
+            int label = (int) Math.floor((value - low) / width);
+            return Math.max(0, Math.min(intervals - 1, label));
+        }
+
+        private double midpoint(int label) {
+            return low + (label + 0.5) * width;
+        }
+    }
+
+    /**
+     * Группы отношений одного порядка: хеш-таблица с открытой адресацией, ключ - последовательность order меток.
+     * Ключ хранится как индекс его первого вхождения в массив меток обучающей части ряда и сравнивается поэлементно,
+     * поэтому порядок не ограничен разрядностью ключа. Хеш считается от последней метки к первой,
+     * чтобы хеш порядка k + 1 получался из хеша порядка k добавлением одной метки.
+     */
+    private static final class GroupTable {
+        private final int[] labels;
+        private final int order;
+        private int[] starts = new int[16];
+        private int[] hashes = new int[16];
+        private Group[] groups = new Group[16];
+        private int size;
+
+        GroupTable(int[] labels, int order) {
+            this.labels = labels;
+            this.order = order;
+        }
+
+        static int hash(int hash, int label) {
+            return hash * 31 + label + 1;
+        }
+
+        /**
+         * Найти группу последовательности меток source[from] .. source[from + order - 1].
+         */
+        Group get(int[] source, int from, int hash) {
+            int mask = groups.length - 1;
+            for (int slot = mix(hash) & mask; groups[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && matches(source, from, starts[slot])) {
+                    return groups[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Найти или добавить группу последовательности меток source[from] .. source[from + order - 1].
+         */
+        Group add(int[] source, int from, int hash) {
+            Group group = get(source, from, hash);
+            if (group != null) {
+                return group;
+            }
+            if (2 * (size + 1) > groups.length) {
+                resize();
+            }
+            group = new Group();
+            int mask = groups.length - 1;
+            int slot = mix(hash) & mask;
+            while (groups[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            starts[slot] = from;
+            hashes[slot] = hash;
+            groups[slot] = group;
+            ++size;
+            return group;
+        }
+
+        private boolean matches(int[] source, int from, int start) {
+            for (int j = 0; j < order; ++j) {
+                if (source[from + j] != labels[start + j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void resize() {
+            int[] oldStarts = starts;
+            int[] oldHashes = hashes;
+            Group[] oldGroups = groups;
+            starts = new int[oldGroups.length * 2];
+            hashes = new int[oldGroups.length * 2];
+            groups = new Group[oldGroups.length * 2];
+            int mask = groups.length - 1;
+            for (int i = 0; i < oldGroups.length; ++i) {
+                if (oldGroups[i] == null) {
+                    continue;
+                }
+                int slot = mix(oldHashes[i]) & mask;
+                while (groups[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                starts[slot] = oldStarts[i];
+                hashes[slot] = oldHashes[i];
+                groups[slot] = oldGroups[i];
+            }
+        }
+
+        private static int mix(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Группа отношений: следствия с одинаковыми предпосылками.
+     */
+    private static class Group {
+        private double sum;
+        private int count;
+
+        void add(double midpoint) {
+            sum += midpoint;
+            ++count;
+        }
+
+        double defuzzify() {
+            return sum / count;
+        }
+    }
+}
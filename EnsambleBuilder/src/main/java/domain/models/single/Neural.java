@@ -1,9 +1,12 @@
 package domain.models.single;
 
 import domain.Model;
+import domain.ModelSnapshot;
 import domain.TimeSeries;
+import domain.TrainingBudget;
 import domain.exceptions.ForecastNotFitedModelException;
 import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidSnapshotException;
 import domain.exceptions.InvalidTemporaryValueException;
 import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
@@ -16,7 +19,6 @@ import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
-import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
 import org.jetbrains.annotations.NotNull;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -26,38 +28,113 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.learning.config.Nesterovs;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
-import java.util.Arrays;
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Locale;
 
 public class Neural extends Model {
+    /**
+     * Системное свойство с реализацией сети по умолчанию: dl4j или java (см. {@link Engine}).
+     */
+    public static final String ENGINE_PROPERTY = "neural.engine";
+
+    /**
+     * Реализация нейронной сети.
+     */
+    public enum Engine {
+        /**
+         * Сеть DL4J.
+         */
+        DL4J,
+        /**
+         * Сеть на Java ({@link DenseNetwork}) той же конфигурации: без вызовов ND4J, быстрее для малых сетей.
+         */
+        JAVA
+    }
+
     private static final int SEED = 12345;
-    private static final int ITERATIONS = 5;
+    /**
+     * Количество итераций оптимизатора на пакет по умолчанию.
+     */
+    public static final int ITERATIONS = 5;
     private static final int N_EPOCHS = 10;
+    private static final int N_UPDATE_EPOCHS = 1;
     private static final int BATCH_SIZE = 100;
     private static final double LEARNING_RATE = 0.01;
     private static final int NUM_OUTPUTS = 1;
+    private static final int NUM_HIDDEN_NODES = 10;
+    private static final double MOMENTUM = 0.9;
 
+    private final TrainingBudget budget;
+    private final Engine engine;
+    @Nullable
     private MultiLayerNetwork net;
+    @Nullable
+    private DenseNetwork dense;
 
     public Neural(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent) throws InvalidOrderException {
+        this(timeSeries, order, forecastCount, trainPercent, testPercent, TrainingBudget.fixed(N_EPOCHS, ITERATIONS));
+    }
+
+    /**
+     * @param budget бюджет обучения сети.
+     */
+    public Neural(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent, TrainingBudget budget) throws InvalidOrderException {
+        this(timeSeries, order, forecastCount, trainPercent, testPercent, budget, defaultEngine());
+    }
+
+    /**
+     * @param engine реализация сети.
+     */
+    public Neural(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent, Engine engine) throws InvalidOrderException {
+        this(timeSeries, order, forecastCount, trainPercent, testPercent, TrainingBudget.fixed(N_EPOCHS, ITERATIONS), engine);
+    }
+
+    /**
+     * @param budget бюджет обучения сети.
+     * @param engine реализация сети.
+     */
+    public Neural(TimeSeries timeSeries, int order, int forecastCount, int trainPercent, int testPercent, TrainingBudget budget, Engine engine) throws InvalidOrderException {
         super(timeSeries, order, forecastCount, trainPercent, testPercent);
-        final MultiLayerConfiguration conf = getDeepDenseLayerNetworkConfiguration();
-        net = new MultiLayerNetwork(conf);
-        net.init();
-        net.setListeners(new ScoreIterationListener(1));
+        this.budget = budget;
+        this.engine = engine;
+        if (engine == Engine.JAVA) {
+            dense = new DenseNetwork(order, NUM_HIDDEN_NODES, LEARNING_RATE, MOMENTUM, SEED);
+        } else {
+            final MultiLayerConfiguration conf = getDeepDenseLayerNetworkConfiguration();
+            net = new MultiLayerNetwork(conf);
+            net.init();
+            net.setListeners(budget.getListeners());
+        }
     }
 
     public void fit() {
-        final DataSetIterator iterator = getTrainingData();
-        for (int i = 0; i < N_EPOCHS; i++) {
-            iterator.reset();
-            net.fit(iterator);
+        if (dense != null) {
+            budget.train(dense, timeSeriesTrain.toArray(1, timeSeriesTrain.getSize()),
+                    (budget.getPatience() > 0) ? getValidationValues() : null, BATCH_SIZE);
+        } else {
+            budget.train(net, getTrainingData(), (budget.getPatience() > 0) ? getValidationData() : null);
         }
         predict();
         setFit();
     }
 
+    /**
+     * Получить реализацию сети.
+     *
+     * @return реализация сети.
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
     public double forecast(int t) throws ForecastNotFitedModelException, InvalidTemporaryValueException {
         EnableForForecasting(t);
+        if (dense != null) {
+            return dense.output(timeSeries.toArray(t - order, t - 1), 0);
+        }
         INDArray x = Nd4j.create(1, order);
         for (int i = 0; i < order; i++) {
             x.putScalar(new int[]{0, i}, timeSeries.getTimeValue(t + i - order));
@@ -66,11 +143,84 @@ public class Neural extends Model {
         return res.getDouble(0);
     }
 
+    /**
+     * Предсказать значения для диапазона меток времени одним вызовом сети.
+     * Каждая строка входной матрицы - окно из order предыдущих значений ряда.
+     */
+    @Override
+    protected double[] predictRange(int from, int to) {
+        int count = to - from + 1;
+        double[] values = timeSeries.toArray(from - order, to - 1);
+        if (dense != null) {
+            double[] result = new double[count];
+            for (int row = 0; row < count; ++row) {
+                result[row] = dense.output(values, row);
+            }
+            return result;
+        }
+        INDArray x = Nd4j.create(count, order);
+        for (int row = 0; row < count; ++row) {
+            for (int i = 0; i < order; i++) {
+                x.putScalar(row, i, values[row + i]);
+            }
+        }
+        INDArray res = net.output(x, false);
+        double[] result = new double[count];
+        for (int row = 0; row < count; ++row) {
+            result[row] = res.getDouble(row);
+        }
+        return result;
+    }
+
+    /**
+     * Дообучить сеть на новом значении ряда.
+     *
+     * @param t метка времени нового значения.
+     */
+    protected void updateState(int t) {
+        if (dense != null) {
+            double[] window = timeSeries.toArray(t - order, t);
+            for (int i = 0; i < N_UPDATE_EPOCHS; i++) {
+                dense.fit(window, 1, budget.getIterations());
+            }
+            return;
+        }
+        INDArray x = Nd4j.create(1, order);
+        for (int i = 0; i < order; i++) {
+            x.putScalar(new int[]{0, i}, timeSeries.getTimeValue(t + i - order));
+        }
+        INDArray y = Nd4j.create(1, NUM_OUTPUTS);
+        y.putScalar(0, timeSeries.getTimeValue(t));
+        DataSet dataSet = new DataSet(x, y);
+        for (int i = 0; i < N_UPDATE_EPOCHS; i++) {
+            net.fit(dataSet);
+        }
+    }
+
+    /**
+     * Пересчитать прогноз заданной длины от конца ряда.
+     */
+    protected void rollForecast() {
+        predict();
+    }
+
     /**
      * Расчет прогноза заданной длины.
      */
     private void predict() {
         forecast = new double[forecastCount];
+        if (dense != null) {
+            double[] values = new double[order + forecastCount];
+            int size = timeSeries.getSize();
+            for (int j = 0; j < order; ++j) {
+                values[j] = timeSeries.getTimeValue(size + 1 + j - order);
+            }
+            for (int i = 0; i < forecastCount; ++i) {
+                forecast[i] = dense.output(values, i);
+                values[order + i] = forecast[i];
+            }
+            return;
+        }
         for (int i = 0; i < forecastCount; ++i) {
             INDArray x = Nd4j.create(1, order);
             for (int j = 0; j < order; j++) {
@@ -83,7 +233,29 @@ public class Neural extends Model {
             }
             forecast[i] = net.output(x, false).getDouble(0);
         }
-        System.out.println(Arrays.toString(forecast));
+    }
+
+    /**
+     * Записать параметры сети и состояние оптимизатора.
+     */
+    protected void writeState(DataOutputStream out) throws IOException {
+        if (dense != null) {
+            dense.write(out);
+        } else {
+            ModelSnapshot.writeNetwork(out, net);
+        }
+    }
+
+    /**
+     * Прочитать параметры сети и состояние оптимизатора.
+     */
+    protected void readState(DataInputStream in) throws InvalidSnapshotException, IOException {
+        if (engine == Engine.JAVA) {
+            dense = DenseNetwork.read(in, order);
+            return;
+        }
+        net = ModelSnapshot.readNetwork(in, order);
+        net.setListeners(budget.getListeners());
     }
 
     /**
@@ -92,14 +264,14 @@ public class Neural extends Model {
      * @return конфигурация нейронной сети.
      */
     private MultiLayerConfiguration getDeepDenseLayerNetworkConfiguration() {
-        final int numHiddenNodes = 10;
+        final int numHiddenNodes = NUM_HIDDEN_NODES;
         return new NeuralNetConfiguration.Builder()
                 .seed(SEED)
-                .iterations(ITERATIONS)
+                .iterations(budget.getIterations())
                 .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
                 .learningRate(LEARNING_RATE)
                 .weightInit(WeightInit.XAVIER)
-                .updater(new Nesterovs(0.9))
+                .updater(new Nesterovs(MOMENTUM))
                 .list()
                 .layer(0, new DenseLayer.Builder().nIn(order).nOut(numHiddenNodes).activation(Activation.HARDTANH).build())
                 .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MSE).activation(Activation.SIGMOID).nIn(numHiddenNodes).nOut(NUM_OUTPUTS).build())
@@ -129,4 +301,51 @@ public class Neural extends Model {
         }
         return new ListDataSetIterator(new DataSet(x, y).asList(), BATCH_SIZE);
     }
+
+    /**
+     * Создание контрольной выборки для ранней остановки: окна с прогнозируемыми значениями из тестовой части ряда.
+     *
+     * @return контрольная выборка или null, если тестовая часть ряда короче порядка модели.
+     */
+    @Nullable
+    private DataSet getValidationData() {
+        int end = timeSeries.getSize();
+        int from = Math.max(end - timeSeriesTest.getSize() + 1, order + 1);
+        if (from > end) {
+            return null;
+        }
+        int size = end - from + 1;
+        INDArray x = Nd4j.create(size, order);
+        INDArray y = Nd4j.create(size, NUM_OUTPUTS);
+        for (int j = 0; j < size; ++j) {
+            int t = from + j;
+            for (int i = 0; i < order; ++i) {
+                x.putScalar(new int[]{j, i}, timeSeries.getTimeValue(t - order + i));
+            }
+            y.putScalar(j, timeSeries.getTimeValue(t));
+        }
+        return new DataSet(x, y);
+    }
+
+    /**
+     * Значения ряда для контрольной выборки сети на Java: окна {@link #getValidationData()}.
+     *
+     * @return значения или null, если тестовая часть ряда короче порядка модели.
+     */
+    @Nullable
+    private double[] getValidationValues() {
+        int end = timeSeries.getSize();
+        int from = Math.max(end - timeSeriesTest.getSize() + 1, order + 1);
+        return (from > end) ? null : timeSeries.toArray(from - order, end);
+    }
+
+    /**
+     * Получить реализацию сети по умолчанию.
+     *
+     * @return реализация, заданная свойством {@link #ENGINE_PROPERTY}, иначе DL4J.
+     */
+    private static Engine defaultEngine() {
+        String engine = System.getProperty(ENGINE_PROPERTY);
+        return (engine == null || engine.isEmpty()) ? Engine.DL4J : Engine.valueOf(engine.trim().toUpperCase(Locale.ROOT));
+    }
 }
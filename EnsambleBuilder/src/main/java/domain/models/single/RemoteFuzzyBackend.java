@@ -0,0 +1,251 @@
+package domain.models.single;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import domain.models.Stub;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Нечеткая модель на стороне удаленного сервиса.
+ * <p>
+ * Клиент держит пул постоянных соединений, поэтому экземпляр можно использовать из нескольких потоков одновременно.
+ * Запрос сериализуется сразу в поток соединения, ответ разбирается из потока без промежуточной строки.
+ * Несколько запросов можно отправить одновременно ({@link #fitAsync(Stub)}, {@link #fitAll(List)})
+ * или, если сервис поддерживает пакетный адрес, одним запросом с массивом запросов в теле.
+ */
+@ParametersAreNonnullByDefault
+public class RemoteFuzzyBackend implements FuzzyBackend, Closeable {
+    /**
+     * Адрес сервиса по умолчанию.
+     */
+    public static final String DEFAULT_URL = "http://salx.pw/api/FModel/S";
+    /**
+     * Количество соединений с сервисом по умолчанию.
+     */
+    public static final int DEFAULT_CONNECTIONS = 8;
+
+    /**
+     * Общие клиенты по адресам сервиса.
+     */
+    private static final ConcurrentMap<String, RemoteFuzzyBackend> SHARED = new ConcurrentHashMap<>();
+
+    private final Gson gson = new GsonBuilder().create();
+    private final String url;
+    @Nullable
+    private final String batchUrl;
+    private final CloseableHttpClient client;
+    private final ExecutorService executor;
+
+    public RemoteFuzzyBackend() {
+        this(DEFAULT_URL);
+    }
+
+    /**
+     * @param url адрес сервиса.
+     */
+    public RemoteFuzzyBackend(String url) {
+        this(url, null, DEFAULT_CONNECTIONS);
+    }
+
+    /**
+     * @param url         адрес сервиса.
+     * @param batchUrl    адрес пакетной обработки (массив запросов - массив ответов в том же порядке);
+     *                    если не задан, пакет отправляется отдельными одновременными запросами.
+     * @param connections максимальное количество одновременных соединений.
+     */
+    public RemoteFuzzyBackend(String url, @Nullable String batchUrl, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Количество соединений должно быть положительным");
+        }
+        this.url = url;
+        this.batchUrl = batchUrl;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(connections);
+        connectionManager.setDefaultMaxPerRoute(connections);
+        this.client = HttpClients.custom().setConnectionManager(connectionManager).build();
+        this.executor = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "fuzzy-remote");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Получить общий клиент сервиса. Клиент создается при первом обращении и не закрывается.
+     *
+     * @param url адрес сервиса.
+     * @return клиент.
+     */
+    public static RemoteFuzzyBackend shared(String url) {
+        return shared(url, null);
+    }
+
+    /**
+     * Получить общий клиент сервиса с пакетным адресом. Клиент создается при первом обращении и не закрывается.
+     *
+     * @param url      адрес сервиса.
+     * @param batchUrl адрес пакетной обработки (если не задан, пакет отправляется отдельными одновременными запросами).
+     * @return клиент.
+     */
+    public static RemoteFuzzyBackend shared(String url, @Nullable String batchUrl) {
+        String key = (batchUrl == null) ? url : url + ' ' + batchUrl;
+        return SHARED.computeIfAbsent(key, ignored -> new RemoteFuzzyBackend(url, batchUrl, DEFAULT_CONNECTIONS));
+    }
+
+    @Override
+    public Stub fit(Stub request) throws IOException {
+        return post(url, request, Stub.class);
+    }
+
+    /**
+     * Отправить запрос без ожидания ответа.
+     *
+     * @param request запрос.
+     * @return ответ; при ошибке обращения завершается с {@link IOException} в качестве причины.
+     */
+    public CompletableFuture<Stub> fitAsync(Stub request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return fit(request);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Обучить несколько моделей: одним пакетным запросом, если задан его адрес, иначе одновременными запросами.
+     *
+     * @param requests запросы.
+     * @return ответы в порядке запросов.
+     * @throws IOException ошибка обращения к сервису.
+     */
+    @Override
+    public List<Stub> fitAll(List<Stub> requests) throws IOException {
+        if (batchUrl != null) {
+            return postBatch(batchUrl, requests);
+        }
+
+        List<CompletableFuture<Stub>> futures = new ArrayList<>(requests.size());
+        for (Stub request : requests) {
+            futures.add(fitAsync(request));
+        }
+        List<Stub> responses = new ArrayList<>(requests.size());
+        for (CompletableFuture<Stub> future : futures) {
+            try {
+                responses.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Прервано ожидание ответа сервиса", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Ошибка обращения к сервису", e.getCause());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Запросы пакета отправляются одновременно или одним пакетным запросом.
+     */
+    @Override
+    public boolean isBatchPreferred() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        client.close();
+    }
+
+    private <T> T post(String address, Object body, Class<T> type) throws IOException {
+        try (CloseableHttpResponse response = client.execute(createPost(address, body))) {
+            HttpEntity entity = checkResponse(response);
+            try (JsonReader reader = new JsonReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
+                T result = gson.fromJson(reader, type);
+                if (result == null) {
+                    throw new IOException("Пустой ответ сервиса " + address);
+                }
+                return result;
+            } catch (JsonIOException | JsonSyntaxException e) {
+                throw new IOException("Некорректный ответ сервиса " + address, e);
+            }
+        }
+    }
+
+    private List<Stub> postBatch(String address, List<Stub> requests) throws IOException {
+        try (CloseableHttpResponse response = client.execute(createPost(address, requests))) {
+            HttpEntity entity = checkResponse(response);
+            List<Stub> responses = new ArrayList<>(requests.size());
+            try (JsonReader reader = new JsonReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    responses.add(gson.<Stub>fromJson(reader, Stub.class));
+                }
+                reader.endArray();
+            } catch (JsonIOException | JsonSyntaxException | IllegalStateException e) {
+                throw new IOException("Некорректный ответ сервиса " + address, e);
+            }
+            if (responses.size() != requests.size()) {
+                throw new IOException("Сервис " + address + " вернул " + responses.size() + " ответов на " + requests.size() + " запросов");
+            }
+            return responses;
+        }
+    }
+
+    private HttpPost createPost(String address, Object body) {
+        HttpPost post = new HttpPost(address);
+        post.setHeader("Accept", "application/json");
+        EntityTemplate entity = new EntityTemplate(stream -> {
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            gson.toJson(body, body.getClass(), writer);
+            writer.flush();
+        });
+        entity.setContentType(ContentType.APPLICATION_JSON.toString());
+        post.setEntity(entity);
+        return post;
+    }
+
+    private static HttpEntity checkResponse(CloseableHttpResponse response) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if (status / 100 != 2 || entity == null) {
+            EntityUtils.consume(entity);
+            throw new IOException("Сервис нечеткой модели вернул " + response.getStatusLine());
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,83 @@
+package domain;
+
+import domain.exceptions.*;
+import domain.models.ensemble.WeightedAverageEnsemble;
+import domain.models.single.Arima;
+import domain.models.single.Neural;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ModelSnapshotTest {
+    @Test
+    public void ShouldRestoreFittedEnsemble() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(60);
+        WeightedAverageEnsemble ensemble = new WeightedAverageEnsemble(timeSeries, 5, 70, 20);
+        ensemble.addModel(new Arima(timeSeries, 2, 5, 70, 20));
+        ensemble.addModel(new Neural(timeSeries, 3, 5, 70, 20));
+        ensemble.fit();
+
+        Model restored = ModelSnapshot.read(new ByteArrayInputStream(write(ensemble)), timeSeries);
+
+        assertTrue(restored instanceof WeightedAverageEnsemble);
+        assertTrue(restored.isFit());
+        assertEquals(ensemble.getOrder(), restored.getOrder());
+        assertArrayEquals(ensemble.getForecast(), restored.getForecast(), 0);
+        assertArrayEquals(ensemble.forecastRange(4, 61), restored.forecastRange(4, 61), 0);
+    }
+
+    @Test
+    public void ShouldReplayNewValues() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(60);
+        Arima arima = new Arima(timeSeries, 2, 5, 70, 20);
+        arima.fit();
+        byte[] snapshot = write(arima);
+
+        arima.update(0.5);
+        TimeSeries extended = TestSeries.sine(60);
+        extended.addTimeValue(0.5);
+        Model restored = ModelSnapshot.read(new ByteArrayInputStream(snapshot), extended);
+
+        assertArrayEquals(arima.getForecast(), restored.getForecast(), 0);
+        assertEquals(arima.forecast(61), restored.forecast(61), 0);
+    }
+
+    @Test
+    public void ShouldRestoreJavaNeuralAndReplayNewValues() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(60);
+        Neural neural = new Neural(timeSeries, 3, 5, 70, 20, Neural.Engine.JAVA);
+        neural.fit();
+        byte[] snapshot = write(neural);
+
+        neural.update(0.5);
+        TimeSeries extended = TestSeries.sine(60);
+        extended.addTimeValue(0.5);
+        Model restored = ModelSnapshot.read(new ByteArrayInputStream(snapshot), extended);
+
+        assertEquals(Neural.Engine.JAVA, ((Neural) restored).getEngine());
+        assertArrayEquals(neural.getForecast(), restored.getForecast(), 0);
+        assertEquals(neural.forecast(61), restored.forecast(61), 0);
+    }
+
+    @Test(expected = InvalidSnapshotException.class)
+    public void ShouldRejectOtherTimeSeries() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(60);
+        Arima arima = new Arima(timeSeries, 2, 5, 70, 20);
+        arima.fit();
+        byte[] snapshot = write(arima);
+
+        TimeSeries other = TestSeries.sine(60);
+        other.normalize();
+        ModelSnapshot.read(new ByteArrayInputStream(snapshot), other);
+    }
+
+    private static byte[] write(Model model) throws ForecastNotFitedModelException, IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ModelSnapshot.write(model, stream);
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,34 @@
+package domain;
+
+import domain.exceptions.TimeSeriesSizeException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QualityTest {
+    @Test
+    public void ShouldAccumulateAsArrayMetrics() throws TimeSeriesSizeException {
+        double[] fact = {0, 2, 4, 5, 4, 8};
+        double[] calc = {1, 3, 5, 4, 2};
+        QualityMetrics metrics = Quality.metrics(fact, 1, calc, 1, 4);
+
+        assertEquals(4, metrics.getCount());
+        assertEquals(Quality.mape(fact, 1, calc, 1, 4), metrics.getMape(), 0);
+        assertEquals((0.5 + 0.25 + 0.2 + 0.5) / 4, metrics.getMape(), 1e-15);
+        assertEquals(Quality.mae(fact, 1, calc, 1, 4), metrics.getMae(), 0);
+        assertEquals(1.25, metrics.getMae(), 1e-15);
+        assertEquals(Math.sqrt(7.0 / 4), metrics.getRmse(), 1e-15);
+        assertEquals(Quality.rmse(fact, 1, calc, 1, 4), metrics.getRmse(), 0);
+        assertEquals(1.25 / (4.0 / 3), metrics.getMase(), 1e-15);
+        assertEquals(Quality.mase(fact, 1, calc, 1, 4), metrics.getMase(), 1e-15);
+        assertEquals(Quality.symmetricMape(fact, 1, calc, 1, 4), metrics.getSymmetricMape(), 1e-15);
+
+        TimeSeries timeSeriesFact = new TimeSeries();
+        TimeSeries timeSeriesCalc = new TimeSeries();
+        for (int i = 1; i <= 4; ++i) {
+            timeSeriesFact.addTimeValue(fact[i]);
+            timeSeriesCalc.addTimeValue(calc[i]);
+        }
+        assertEquals(Quality.mape(timeSeriesFact, timeSeriesCalc), metrics.getMape(), 0);
+    }
+}
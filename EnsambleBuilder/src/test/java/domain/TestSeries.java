@@ -0,0 +1,23 @@
+package domain;
+
+/**
+ * Временные ряды для тестов.
+ */
+public final class TestSeries {
+    private TestSeries() {
+    }
+
+    /**
+     * Нормализованный ряд: синусоида с небольшим трендом, значения в интервале (0, 1).
+     *
+     * @param size длина ряда.
+     * @return временной ряд.
+     */
+    public static TimeSeries sine(int size) {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < size; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 4.0) + 0.002 * i);
+        }
+        return timeSeries;
+    }
+}
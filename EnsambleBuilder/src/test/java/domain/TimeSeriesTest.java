@@ -0,0 +1,110 @@
+package domain;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TimeSeriesTest {
+    @Test
+    public void ShouldGrowAndKeepOrder() {
+        TimeSeries timeSeries = new TimeSeries(2);
+        for (int i = 1; i <= 100; ++i) {
+            timeSeries.addTimeValue(i * 0.5);
+        }
+        assertEquals(100, timeSeries.getSize());
+        assertEquals(0.5, timeSeries.getTimeValue(1), 0);
+        assertEquals(50, timeSeries.getTimeValue(100), 0);
+        assertEquals(50, timeSeries.getMaxValue(), 0);
+        assertArrayEquals(new double[]{1.5, 2, 2.5}, timeSeries.toArray(3, 5), 0);
+    }
+
+    @Test
+    public void ShouldStartFromFirstTimestamp() {
+        TimeSeries timeSeries = new TimeSeries();
+        timeSeries.add(3, 0.1);
+        timeSeries.add(4, 0.2);
+        timeSeries.add(3, 0.3);
+        assertEquals(3, timeSeries.getStartTime());
+        assertEquals(4, timeSeries.getEndTime());
+        assertEquals(0.3, timeSeries.getTimeValue(3), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldRejectGap() {
+        TimeSeries timeSeries = new TimeSeries();
+        timeSeries.addTimeValue(0.1);
+        timeSeries.add(3, 0.2);
+    }
+
+    @Test
+    public void ShouldShareValuesWithSubSeries() {
+        TimeSeries timeSeries = new TimeSeries();
+        timeSeries.addTimeValue(2);
+        timeSeries.addTimeValue(4);
+        timeSeries.addTimeValue(8);
+        TimeSeries view = timeSeries.subSeries(2, 3);
+        timeSeries.normalize();
+        assertEquals(2, view.getSize());
+        assertEquals(0.5, view.getTimeValue(1), 0);
+        assertEquals(1, view.getTimeValue(2), 0);
+    }
+
+    @Test
+    public void ShouldShareSplitUntilSizeChanges() {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 1; i <= 25; ++i) {
+            timeSeries.addTimeValue(i);
+        }
+        TimeSeries.Split split = timeSeries.split(70, 20);
+        assertSame(split, timeSeries.split(70, 20));
+        assertEquals(17, split.getTrain().getSize());
+        assertEquals(5, split.getTest().getSize());
+        assertEquals(4, split.getTrain().getTimeValue(1), 0);
+        assertEquals(21, split.getTest().getTimeValue(1), 0);
+        assertEquals(25, split.getTest().getTimeValue(5), 0);
+
+        timeSeries.addTimeValue(26);
+        assertNotSame(split, timeSeries.split(70, 20));
+        assertEquals(25, split.getTest().getTimeValue(5), 0);
+    }
+
+    @Test
+    public void ShouldResplitAfterSlidingWindow() {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 1; i <= 25; ++i) {
+            timeSeries.addTimeValue(i);
+        }
+        TimeSeries.Split split = timeSeries.split(70, 20);
+
+        timeSeries.removeTimeValue(1);
+        timeSeries.addTimeValue(26);
+        TimeSeries.Split moved = timeSeries.split(70, 20);
+        assertNotSame(split, moved);
+        assertEquals(5, moved.getTrain().getTimeValue(1), 0);
+        assertEquals(22, moved.getTest().getTimeValue(1), 0);
+        assertEquals(26, moved.getTest().getTimeValue(5), 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void ShouldNotModifySubSeries() {
+        TimeSeries timeSeries = new TimeSeries();
+        timeSeries.addTimeValue(2);
+        timeSeries.addTimeValue(4);
+        timeSeries.subSeries(1, 2).addTimeValue(1);
+    }
+
+    @Test
+    public void ShouldWriteThroughMapView() {
+        TimeSeries timeSeries = new TimeSeries();
+        timeSeries.addTimeValue(2);
+        timeSeries.addTimeValue(4);
+        for (Map.Entry<Integer, Double> entry : timeSeries.getTimeSeries().entrySet()) {
+            entry.setValue(entry.getValue() + entry.getKey());
+        }
+        assertEquals(3, timeSeries.getTimeValue(1), 0);
+        assertEquals(6, timeSeries.getTimeValue(2), 0);
+        assertEquals(Double.valueOf(6), timeSeries.getTimeSeries().get(2));
+    }
+}
@@ -0,0 +1,154 @@
+package domain;
+
+import domain.models.single.DenseNetwork;
+import domain.models.single.Neural;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrainingBudgetTest {
+    private static final int MAX_EPOCHS = 1000;
+
+    @Test
+    public void ShouldMatchDefaultWithFixedBudget() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(80);
+        Neural standard = new Neural(timeSeries, 3, 5, 70, 20);
+        Neural budgeted = new Neural(timeSeries, 3, 5, 70, 20, TrainingBudget.fixed(10, 5));
+        standard.fit();
+        budgeted.fit();
+        assertArrayEquals(standard.getForecast(), budgeted.getForecast(), 0);
+    }
+
+    @Test
+    public void ShouldStopWithinBudget() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(80);
+        Neural neural = new Neural(timeSeries, 3, 5, 70, 20, new TrainingBudget(200, 1, 2, 0.5, Long.MAX_VALUE, 0));
+        neural.fit();
+        assertTrue(neural.isFit());
+        assertEquals(5, neural.getForecast().length);
+    }
+
+    @Test
+    public void ShouldRestoreBestEpoch() {
+        double[] values = TestSeries.sine(60).toArray();
+        double[] validation = new double[20];
+        for (int i = 0; i < validation.length; ++i) {
+            validation[i] = 0.9 - 0.02 * i;
+        }
+        TrainingBudget budget = new TrainingBudget(MAX_EPOCHS, 1, 3, 0, Long.MAX_VALUE, 0);
+        DenseNetwork net = new DenseNetwork(3, 10, 0.05, 0.9, 7);
+        int epochs = budget.train(net, values, validation, 10);
+        assertTrue(epochs < MAX_EPOCHS);
+
+        // повторяем обучение по эпохам и находим лучшую по контрольной выборке
+        DenseNetwork replay = new DenseNetwork(3, 10, 0.05, 0.9, 7);
+        double bestLoss = Double.POSITIVE_INFINITY;
+        double[] bestParams = null;
+        int bestEpoch = 0;
+        for (int epoch = 1; epoch <= epochs; ++epoch) {
+            replay.fit(values, 10, 1);
+            double loss = replay.score(validation);
+            if (loss < bestLoss) {
+                bestLoss = loss;
+                bestParams = replay.getParams();
+                bestEpoch = epoch;
+            }
+        }
+        assertEquals(epochs - 3, bestEpoch);
+        assertArrayEquals(bestParams, net.getParams(), 0);
+        assertEquals(bestLoss, net.score(validation), 0);
+    }
+
+    @Test
+    public void ShouldScoreEpochThatHitsDeadline() {
+        // лучшая эпоха - вторая, время истекает на третьей
+        ScriptedTrainee trainee = new ScriptedTrainee(new double[]{0.5, 0.3, 0.4, 0.1}, 3, 1100);
+        assertEquals(3, new TrainingBudget(MAX_EPOCHS, 1, 3, 0, 1000, 0).train(trainee));
+        assertEquals(Integer.valueOf(2), trainee.restored);
+
+        // лучшая эпоха - последняя, параметры не восстанавливаются
+        trainee = new ScriptedTrainee(new double[]{0.5, 0.3, 0.2, 0.1}, 3, 1100);
+        assertEquals(3, new TrainingBudget(MAX_EPOCHS, 1, 3, 0, 1000, 0).train(trainee));
+        assertNull(trainee.restored);
+    }
+
+    @Test
+    public void ShouldTrainAllEpochsWithoutPatience() {
+        DenseNetwork net = new DenseNetwork(3, 10, 0.05, 0.9, 7);
+        assertEquals(25, TrainingBudget.fixed(25, 1).train(net, TestSeries.sine(60).toArray(), null, 10));
+    }
+
+    @Test
+    public void ShouldParseBudget() {
+        TrainingBudget budget = TrainingBudget.parse("200, 5, 30000", 4);
+        assertEquals(200, budget.getMaxEpochs());
+        assertEquals(4, budget.getIterations());
+        assertEquals(5, budget.getPatience());
+        assertEquals(30000, budget.getMaxMillis());
+        assertEquals(0, budget.getMinDelta(), 0);
+        assertEquals(0.001, TrainingBudget.parse("200,5,30000,0.001", 4).getMinDelta(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldRejectMalformedBudget() {
+        TrainingBudget.parse("200,five,30000", 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldRejectNegativePatience() {
+        new TrainingBudget(10, 5, -1, 0, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Сеть с заданными ошибками на контрольной выборке, параметры - номер эпохи.
+     */
+    private static class ScriptedTrainee implements TrainingBudget.Trainee<Integer> {
+        private final double[] losses;
+        private final int slowEpoch;
+        private final long delay;
+        private int epoch;
+        Integer restored;
+
+        ScriptedTrainee(double[] losses, int slowEpoch, long delay) {
+            this.losses = losses;
+            this.slowEpoch = slowEpoch;
+            this.delay = delay;
+        }
+
+        @Override
+        public void fitEpoch() {
+            if (++epoch == slowEpoch) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        public double score() {
+            return 1.0 / epoch;
+        }
+
+        @Override
+        public boolean hasValidation() {
+            return true;
+        }
+
+        @Override
+        public double validationScore() {
+            return losses[epoch - 1];
+        }
+
+        @Override
+        public Integer saveParams() {
+            return epoch;
+        }
+
+        @Override
+        public void restoreParams(Integer params) {
+            restored = params;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package domain.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+    @Test
+    public void ShouldAggregateLatencies() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        for (int i = 0; i < 99; ++i) {
+            registry.record(Metrics.Stage.MODEL_FIT, "Arima", 1000);
+        }
+        registry.record(Metrics.Stage.MODEL_FIT, "Arima", 5_000_000);
+        registry.increment(Metrics.Counter.MODEL_FIT_FAILURES, 2);
+
+        LatencyHistogram histogram = registry.getHistogram(Metrics.Stage.MODEL_FIT, "Arima");
+        assertNotNull(histogram);
+        assertEquals(100, histogram.getCount());
+        assertEquals(99 * 1000 + 5_000_000, histogram.getSum());
+        assertEquals(5_000_000, histogram.getMax());
+        assertEquals(1024, histogram.getQuantile(0.5));
+        assertEquals(5_000_000, histogram.getQuantile(1));
+        assertNull(registry.getHistogram(Metrics.Stage.MODEL_FIT, "Neural"));
+
+        StringBuilder prometheus = new StringBuilder();
+        registry.writePrometheus(prometheus);
+        assertTrue(prometheus.toString().contains("ensemble_model_fit_seconds_bucket{model=\"Arima\",le=\"1.024E-6\"} 99\n"));
+        assertTrue(prometheus.toString().contains("ensemble_model_fit_seconds_bucket{model=\"Arima\",le=\"+Inf\"} 100\n"));
+        assertTrue(prometheus.toString().contains("ensemble_model_fit_failures_total 2\n"));
+        assertFalse(prometheus.toString().contains("ensemble_quality_seconds"));
+
+        StringBuilder json = new StringBuilder();
+        registry.writeJson(json);
+        assertTrue(json.toString().contains("\"Arima\": {\"count\": 100,"));
+        assertTrue(json.toString().contains("\"model_fit_failures\": 2"));
+    }
+
+    @Test
+    public void ShouldBeDisabledByDefault() {
+        assertFalse(Metrics.isEnabled());
+        assertEquals(0, Metrics.start());
+        Metrics.stop(Metrics.Stage.QUALITY, "Arima", 0);
+        assertNull(Metrics.getRegistry().getHistogram(Metrics.Stage.QUALITY, "Arima"));
+    }
+}
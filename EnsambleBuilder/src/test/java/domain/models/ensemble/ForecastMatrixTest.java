@@ -0,0 +1,83 @@
+package domain.models.ensemble;
+
+import domain.ForecastMatrix;
+import domain.Model;
+import domain.QualityMetrics;
+import domain.QualityReport;
+import domain.TimeSeries;
+import domain.models.single.Arima;
+import domain.models.single.Fuzzy;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ForecastMatrixTest {
+    @Test
+    public void ShouldMatchPerPointForecasts() throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 80; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 5.0) + 0.002 * i);
+        }
+        TimeSeries.Split split = timeSeries.split(70, 20);
+        WeightedAverageEnsemble ensemble = new WeightedAverageEnsemble(timeSeries, 3, 70, 20);
+        ensemble.addModel(new Arima(timeSeries, 2, 3, 70, 20));
+        ensemble.addModel(new Arima(timeSeries, 4, 3, 70, 20));
+        ensemble.addModel(new Fuzzy(timeSeries, 3, 3, 70, 20));
+        ensemble.fit();
+        assertMatchesPerPoint(ensemble, split);
+
+        for (int i = 0; i < 5; ++i) {
+            ensemble.update(ensemble.getForecast()[0] + 0.01);
+        }
+        assertEquals(85, timeSeries.getSize());
+        assertMatchesPerPoint(ensemble, split);
+    }
+
+    /**
+     * Сравнить прогнозы и качество ансамбля, рассчитанные по общей матрице прогнозов,
+     * с расчетом по отдельным прогнозам моделей в каждой точке.
+     */
+    private static void assertMatchesPerPoint(WeightedAverageEnsemble ensemble, TimeSeries.Split split) throws Exception {
+        List<Model> models = ensemble.getModels();
+        int size = ensemble.getTimeSeries().getSize();
+        ForecastMatrix matrix = ensemble.getForecastMatrix();
+        assertNotNull(matrix);
+        for (int i = 0; i < models.size(); ++i) {
+            for (int t = models.get(i).getOrder() + 1; t <= size; ++t) {
+                assertEquals("Модель " + i + ", t = " + t, models.get(i).forecast(t), matrix.get(i, t), 1e-12);
+            }
+        }
+
+        int order = ensemble.getOrder();
+        for (int t = order + 1; t <= size; ++t) {
+            assertEquals("t = " + t, perPoint(ensemble, t), ensemble.forecast(t), 1e-12);
+        }
+
+        TimeSeries train = split.getTrain();
+        TimeSeries test = split.getTest();
+        QualityMetrics expectedTrain = new QualityMetrics();
+        QualityMetrics expectedTest = new QualityMetrics();
+        for (int i = order + 1; i <= train.getSize(); ++i) {
+            expectedTrain.add(train.getTimeValue(i), perPoint(ensemble, i));
+        }
+        for (int i = order + 1; i <= test.getSize(); ++i) {
+            expectedTest.add(test.getTimeValue(i), perPoint(ensemble, i + train.getSize()));
+        }
+        QualityReport report = ensemble.evaluate();
+        assertEquals(expectedTrain.getMape(), report.getTrain().getMape(), 1e-12);
+        assertEquals(expectedTest.getMape(), report.getTest().getMape(), 1e-12);
+    }
+
+    /**
+     * Прогноз ансамбля по прогнозам моделей в точке, без кэша прогнозов.
+     */
+    private static double perPoint(WeightedAverageEnsemble ensemble, int t) throws Exception {
+        double value = 0;
+        for (int i = 0; i < ensemble.weights.length; ++i) {
+            value += ensemble.getModels().get(i).forecast(t) * ensemble.weights[i];
+        }
+        return value;
+    }
+}
@@ -0,0 +1,87 @@
+package domain.models.ensemble;
+
+import domain.Model;
+import domain.ModelSnapshot;
+import domain.TestSeries;
+import domain.TimeSeries;
+import domain.models.single.Arima;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StackingEnsembleTest {
+    @Test
+    public void ShouldReuseSharedGram() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(120);
+        List<Model> models = new ArrayList<>();
+        for (int order = 1; order <= 4; ++order) {
+            Arima arima = new Arima(timeSeries, order, 5, 70, 20);
+            arima.fit();
+            models.add(arima);
+        }
+        StackingGram gram = new StackingGram(models);
+
+        for (StackingEnsemble.Method method : StackingEnsemble.Method.values()) {
+            StackingEnsemble shared = createEnsemble(timeSeries, method, gram, models.get(3), models.get(1));
+            StackingEnsemble local = createEnsemble(timeSeries, method, null, models.get(3), models.get(1));
+            assertArrayEquals(local.getForecast(), shared.getForecast(), 1e-12);
+            assertArrayEquals(local.forecastRange(5, 120), shared.forecastRange(5, 120), 1e-12);
+        }
+    }
+
+    @Test
+    public void ShouldSolveNonNegativeLeastSquares() {
+        double[][] g = {{4, 3, 1}, {3, 4, 2}, {1, 2, 3}};
+        double[] b = {5, 1, 2};
+        double[] x = StackingEnsemble.nnls(g, b);
+        for (int i = 0; i < b.length; ++i) {
+            double gradient = b[i];
+            for (int j = 0; j < b.length; ++j) {
+                gradient -= g[i][j] * x[j];
+            }
+            assertTrue(Arrays.toString(x), x[i] >= 0);
+            if (x[i] > 0) {
+                assertEquals(0, gradient, 1e-10);
+            } else {
+                assertTrue(gradient <= 1e-10);
+            }
+        }
+        assertEquals(0, x[1], 0);
+    }
+
+    @Test
+    public void ShouldUpdateLikeRestoredSnapshot() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(80);
+        Arima first = new Arima(timeSeries, 1, 5, 70, 20);
+        Arima second = new Arima(timeSeries, 3, 5, 70, 20);
+        first.fit();
+        second.fit();
+        StackingEnsemble ensemble = createEnsemble(timeSeries, StackingEnsemble.Method.RIDGE, null, first, second);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        ModelSnapshot.write(ensemble, snapshot);
+
+        ensemble.update(0.9);
+        Model restored = ModelSnapshot.read(new ByteArrayInputStream(snapshot.toByteArray()), timeSeries);
+
+        assertEquals(ensemble.forecast(81), ensemble.getFittedValue(81), 0);
+        assertEquals(ensemble.getFittedValue(81), restored.getFittedValue(81), 0);
+        assertArrayEquals(second.getForecast(), ((StackingEnsemble) restored).getModels().get(1).getForecast(), 0);
+        assertArrayEquals(ensemble.getForecast(), restored.getForecast(), 0);
+        assertEquals(ensemble.forecast(81), restored.forecast(81), 0);
+    }
+
+    private static StackingEnsemble createEnsemble(TimeSeries timeSeries, StackingEnsemble.Method method, StackingGram gram, Model... models) throws Exception {
+        StackingEnsemble ensemble = new StackingEnsemble(timeSeries, 5, 70, 20, method, StackingEnsemble.DEFAULT_REGULARIZATION, gram);
+        for (Model model : models) {
+            ensemble.addModel(model);
+        }
+        ensemble.fit();
+        return ensemble;
+    }
+}
@@ -0,0 +1,34 @@
+package domain.models.ensemble;
+
+import domain.TimeSeries;
+import domain.models.single.Arima;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightedAverageEnsembleTest {
+    @Test
+    public void ShouldReweightOnUpdate() throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 60; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 5.0));
+        }
+        Arima first = new Arima(timeSeries, 1, 3, 70, 20);
+        Arima second = new Arima(timeSeries, 4, 3, 70, 20);
+        WeightedAverageEnsemble ensemble = new WeightedAverageEnsemble(timeSeries, 3, 70, 20);
+        ensemble.addModel(first);
+        ensemble.addModel(second);
+        ensemble.fit();
+        double[] weights = ensemble.weights.clone();
+
+        double value = first.forecast(61);
+        ensemble.update(value);
+
+        assertTrue(ensemble.weights[0] > weights[0]);
+        assertEquals(1, ensemble.weights[0] + ensemble.weights[1], 1e-12);
+        for (int i = 0; i < 3; ++i) {
+            double expected = ensemble.weights[0] * first.getForecast()[i] + ensemble.weights[1] * second.getForecast()[i];
+            assertEquals(expected, ensemble.getForecast()[i], 1e-12);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package domain.models.ensemble;
+
+import domain.Model;
+import domain.TestSeries;
+import domain.TimeSeries;
+import domain.models.single.Arima;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WeightedSubsetScorerTest {
+    @Test
+    public void ShouldMatchWeightedAverageEnsemble() throws Exception {
+        TimeSeries timeSeries = TestSeries.sine(120);
+        List<Model> models = new ArrayList<>();
+        for (int order : new int[]{1, 3, 2, 3, 4}) {
+            Arima arima = new Arima(timeSeries, order, 5, 70, 20);
+            arima.fit();
+            models.add(arima);
+        }
+        WeightedSubsetScorer scorer = new WeightedSubsetScorer(models);
+
+        List<Long> visited = new ArrayList<>();
+        scorer.forEachSubset((subset, trainMape, testMape) -> {
+            visited.add(subset);
+            try {
+                WeightedAverageEnsemble ensemble = createEnsemble(timeSeries, models, subset);
+                assertEquals(ensemble.getTrainMape(), trainMape, 1e-12);
+                assertEquals(ensemble.getTestMape(), testMape, 1e-12);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertEquals(31, visited.size());
+        assertEquals(31, visited.stream().distinct().count());
+        for (int i = 1; i < visited.size(); ++i) {
+            assertEquals(1, Long.bitCount(visited.get(i) ^ visited.get(i - 1)));
+        }
+
+        scorer.moveTo(0b10101);
+        WeightedAverageEnsemble ensemble = createEnsemble(timeSeries, models, 0b10101);
+        assertEquals(0b10101, scorer.getSubset());
+        assertEquals(ensemble.getTestMape(), scorer.getTestMape(), 1e-12);
+        scorer.moveTo(0);
+        assertTrue(Double.isNaN(scorer.getTestMape()));
+    }
+
+    private static WeightedAverageEnsemble createEnsemble(TimeSeries timeSeries, List<Model> models, long subset) throws Exception {
+        WeightedAverageEnsemble ensemble = new WeightedAverageEnsemble(timeSeries, 5, 70, 20);
+        for (int i = 0; i < models.size(); ++i) {
+            if ((subset & (1L << i)) != 0) {
+                ensemble.addModel(models.get(i));
+            }
+        }
+        ensemble.fit();
+        return ensemble;
+    }
+}
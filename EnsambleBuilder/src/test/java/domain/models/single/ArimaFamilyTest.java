@@ -0,0 +1,89 @@
+package domain.models.single;
+
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidTemporaryValueException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ArimaFamilyTest {
+    @Test
+    public void ShouldSolveYuleWalkerForAllOrders() {
+        double[] centered = createSeries(500);
+        int maxOrder = 6;
+        double[] autocovariance = ArimaFamily.autocovariance(centered, maxOrder);
+        double[][] coefficients = ArimaFamily.levinsonDurbin(autocovariance, maxOrder);
+
+        for (int order = 1; order <= maxOrder; ++order) {
+            RealMatrix toeplitz = new Array2DRowRealMatrix(order, order);
+            double[] right = new double[order];
+            for (int i = 0; i < order; ++i) {
+                for (int j = 0; j < order; ++j) {
+                    toeplitz.setEntry(i, j, autocovariance[Math.abs(i - j)]);
+                }
+                right[i] = autocovariance[i + 1];
+            }
+            double[] expected = new LUDecomposition(toeplitz).getSolver().solve(new ArrayRealVector(right)).toArray();
+            assertArrayEquals(expected, coefficients[order], 1e-10);
+        }
+    }
+
+    @Test
+    public void ShouldComputeAutocovarianceWithFft() {
+        double[] centered = createSeries(4096);
+        int maxLag = 200;
+        double[] autocovariance = ArimaFamily.autocovariance(centered, maxLag);
+        for (int k = 0; k <= maxLag; ++k) {
+            double sum = 0;
+            for (int i = k; i < centered.length; ++i) {
+                sum += centered[i] * centered[i - k];
+            }
+            assertEquals(sum / centered.length, autocovariance[k], 1e-9);
+        }
+    }
+
+    @Test
+    public void ShouldFitEachOrder() throws InvalidOrderException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (double value : createSeries(120)) {
+            timeSeries.addTimeValue(value + 2);
+        }
+        ArimaFamily family = new ArimaFamily(timeSeries, 4, 5, 70, 20);
+        for (int order = 1; order <= 4; ++order) {
+            Arima arima = family.fit(order);
+            assertTrue(arima.isFit());
+            assertEquals(order, arima.getOrder());
+            assertEquals(5, arima.getForecast().length);
+            for (int t = order + 1; t <= 121; ++t) {
+                assertEquals(arima.forecast(t), arima.getFittedValue(t), 0);
+            }
+        }
+    }
+
+    /**
+     * Центрированный процесс AR(2).
+     */
+    private static double[] createSeries(int length) {
+        Random random = new Random(7);
+        double[] values = new double[length];
+        for (int i = 2; i < length; ++i) {
+            values[i] = 0.5 * values[i - 1] - 0.3 * values[i - 2] + random.nextGaussian();
+        }
+        double mean = 0;
+        for (double value : values) {
+            mean += value / length;
+        }
+        for (int i = 0; i < length; ++i) {
+            values[i] -= mean;
+        }
+        return values;
+    }
+}
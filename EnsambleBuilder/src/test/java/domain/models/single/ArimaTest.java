@@ -1,6 +1,8 @@
 package domain.models.single;
 
+import com.workday.insights.timeseries.arima.ArimaSolver;
 import com.workday.insights.timeseries.arima.struct.ArimaModel;
+import com.workday.insights.timeseries.arima.struct.ArimaParams;
 import domain.Model;
 import domain.TimeSeries;
 import domain.exceptions.ForecastNotFitedModelException;
@@ -9,6 +11,7 @@ import domain.exceptions.InvalidTemporaryValueException;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -43,4 +46,64 @@ public class ArimaTest {
         arima.fit();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void ShouldUpdateWithoutRefit() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 40; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 3.0));
+        }
+        Model arima = new Arima(timeSeries, 2, 3, 70, 20);
+        arima.fit();
+        double expected = arima.forecast(41);
+
+        arima.update(0.6);
+
+        assertEquals(41, timeSeries.getSize());
+        assertEquals(expected, arima.getFittedValue(41), 0);
+        assertEquals(3, arima.getForecast().length);
+    }
+
+    @Test
+    public void ShouldRollForecastLikeRefit() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        Random random = new Random(3);
+        double value = 1;
+        for (int i = 0; i < 300; ++i) {
+            value = 1 + 0.6 * (value - 1) + 0.1 * random.nextGaussian();
+            timeSeries.addTimeValue(value);
+        }
+        Model arima = new Arima(timeSeries, 1, 3, 100, 0);
+        arima.fit();
+
+        arima.update(1.3);
+        Model refit = new Arima(timeSeries, 1, 3, 100, 0);
+        refit.fit();
+
+        assertArrayEquals(refit.getForecast(), arima.getForecast(), 0.005);
+    }
+
+    @Test
+    public void ShouldMatchLibraryForecast() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 60; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 4.0) + 0.01 * (i % 7));
+        }
+        int order = 3;
+        Model arima = new Arima(timeSeries, order, 5, 70, 20);
+        arima.fit();
+
+        double[] train = arima.getTimeSeriesTrain().toArray();
+        ArimaModel model = ArimaSolver.estimateARIMA(new ArimaParams(order, 0, 0, 0, 0, 0, 0), train, train.length, train.length + 1);
+        double[] errors = new double[order];
+        for (int t = order + 1; t <= timeSeries.getSize() + 1; ++t) {
+            double[] values = timeSeries.toArray(t - order, t - 1);
+            double expected = model.getParams().forecastOnePointARMA(values, errors, order) * (-1);
+            assertEquals(expected, arima.forecast(t), 0);
+        }
+
+        arima.update(0.6);
+        int size = timeSeries.getSize();
+        double[] expected = ArimaSolver.forecastARIMA(model.getParams(), timeSeries.toArray(), size, size + 5).getForecast();
+        assertArrayEquals(expected, arima.getForecast(), 1e-12);
+    }
+}
@@ -0,0 +1,42 @@
+package domain.models.single;
+
+import domain.TestSeries;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DenseNetworkTest {
+    @Test
+    public void ShouldMatchNumericalGradient() {
+        double[] values = TestSeries.sine(40).toArray();
+        DenseNetwork net = new DenseNetwork(3, 5, 0.01, 0.9, 11);
+        double[] gradient = net.gradient(values);
+        double[] params = net.getParams();
+
+        double eps = 1e-6;
+        for (int i = 0; i < params.length; ++i) {
+            double[] shifted = params.clone();
+            shifted[i] = params[i] + eps;
+            net.setParams(shifted);
+            double plus = net.score(values);
+            shifted[i] = params[i] - eps;
+            net.setParams(shifted);
+            double minus = net.score(values);
+
+            double numerical = (plus - minus) / (2 * eps);
+            double scale = Math.max(1e-8, Math.abs(numerical) + Math.abs(gradient[i]));
+            assertEquals("Параметр " + i, 0, Math.abs(numerical - gradient[i]) / scale, 1e-5);
+        }
+    }
+
+    @Test
+    public void ShouldLowerErrorWhenTraining() {
+        double[] values = TestSeries.sine(80).toArray();
+        DenseNetwork net = new DenseNetwork(3, 10, 0.05, 0.9, 11);
+        double initial = net.score(values);
+        for (int epoch = 0; epoch < 50; ++epoch) {
+            net.fit(values, 10, 1);
+        }
+        assertTrue(net.score(values) < initial / 4);
+    }
+}
@@ -0,0 +1,103 @@
+package domain.models.single;
+
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidTemporaryValueException;
+import domain.models.Stub;
+import domain.models.TRPoint;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FuzzyTest {
+    @Test
+    public void ShouldFitLocally() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 60; ++i) {
+            timeSeries.addTimeValue(1 + (i % 4));
+        }
+
+        Fuzzy fuzzy = new Fuzzy(timeSeries, 2, 4, 70, 20, new LocalFuzzyBackend());
+        fuzzy.fit();
+
+        assertEquals(4, fuzzy.getForecast().length);
+        for (int t = 10; t <= 60; ++t) {
+            assertEquals(timeSeries.getTimeValue(t), fuzzy.forecast(t), 0.2);
+        }
+    }
+
+    @Test
+    public void ShouldReturnAllPoints() {
+        Stub request = new Stub();
+        request.setOrder(3);
+        request.setActualCount(5);
+        request.setForecastCount(2);
+        List<TRPoint> row = new ArrayList<>();
+        for (int i = 1; i <= 20; ++i) {
+            TRPoint point = new TRPoint();
+            point.setX(i);
+            point.setY((i % 4) + 1);
+            row.add(point);
+        }
+        request.setROW(row);
+
+        Stub response = new LocalFuzzyBackend().fit(request);
+
+        assertEquals(22, response.getROW().size());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(row.get(i).getY(), response.getROW().get(i).getY(), 0);
+        }
+        for (int x = 21; x <= 22; ++x) {
+            assertEquals(x, response.getROW().get(x - 1).getX(), 0);
+            assertEquals((x % 4) + 1, response.getROW().get(x - 1).getY(), 0.2);
+        }
+    }
+
+    @Test
+    public void ShouldShiftForecastOnUpdate() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 60; ++i) {
+            timeSeries.addTimeValue(1 + (i % 4));
+        }
+        Fuzzy fuzzy = new Fuzzy(timeSeries, 2, 4, 70, 20, new LocalFuzzyBackend());
+        fuzzy.fit();
+        double[] before = fuzzy.getForecast();
+        double expected = fuzzy.forecast(61);
+
+        fuzzy.update(1);
+
+        assertEquals(expected, fuzzy.getFittedValue(61), 0);
+        assertArrayEquals(Arrays.copyOfRange(before, 1, 4), Arrays.copyOfRange(fuzzy.getForecast(), 0, 3), 0);
+    }
+
+    @Test
+    public void ShouldDistinguishHighOrders() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        // значение после 11 нулей определяется значением за 12 шагов до него
+        double[] block = new double[26];
+        block[0] = 1;
+        block[12] = 2;
+        block[13] = 3;
+        block[25] = 4;
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 4500; ++i) {
+            timeSeries.addTimeValue(block[i % block.length]);
+        }
+        Fuzzy high = new Fuzzy(timeSeries, 12, 4, 70, 20, new LocalFuzzyBackend());
+        Fuzzy low = new Fuzzy(timeSeries, 11, 4, 70, 20, new LocalFuzzyBackend());
+        high.fit();
+        low.fit();
+
+        for (int t = 4000; t <= 4500; ++t) {
+            assertEquals(timeSeries.getTimeValue(t), high.forecast(t), 0.1);
+        }
+        int t = 172 * block.length + 13;
+        assertEquals(2, timeSeries.getTimeValue(t), 0);
+        assertEquals(3, low.forecast(t), 0.1);
+    }
+}
@@ -0,0 +1,66 @@
+package domain.models.single;
+
+import domain.Model;
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidTemporaryValueException;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class NeuralTest {
+    @Test
+    public void ShouldForecastRangeAsPointwise() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 40; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 3.0));
+        }
+        Model neural = new Neural(timeSeries, 3, 3, 70, 20);
+        neural.fit();
+
+        double[] range = neural.forecastRange(4, 41);
+
+        assertEquals(38, range.length);
+        for (int t = 4; t <= 41; ++t) {
+            assertEquals(neural.forecast(t), range[t - 4], 1e-6);
+        }
+    }
+
+    @Test
+    public void ShouldFitJavaEngineDeterministically() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 40; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 3.0));
+        }
+        Model first = new Neural(timeSeries, 3, 3, 70, 20, Neural.Engine.JAVA);
+        Model second = new Neural(timeSeries, 3, 3, 70, 20, Neural.Engine.JAVA);
+        first.fit();
+        second.fit();
+
+        assertArrayEquals(first.getForecast(), second.getForecast(), 0);
+        double[] range = first.forecastRange(4, 41);
+        for (int t = 4; t <= 41; ++t) {
+            assertEquals(first.forecast(t), range[t - 4], 0);
+        }
+    }
+
+    @Test
+    public void ShouldLearnFromUpdate() throws InvalidOrderException, IOException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 40; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 3.0));
+        }
+        Model neural = new Neural(timeSeries, 3, 3, 70, 20, Neural.Engine.JAVA);
+        neural.fit();
+        double expected = neural.forecast(41);
+
+        neural.update(0.9);
+
+        assertEquals(expected, neural.getFittedValue(41), 0);
+        assertTrue(Math.abs(neural.forecast(41) - 0.9) < Math.abs(expected - 0.9));
+        assertEquals(neural.forecast(42), neural.getForecast()[0], 0);
+    }
+}
@@ -0,0 +1,124 @@
+package domain.models.single;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import domain.models.Stub;
+import domain.models.TRPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RemoteFuzzyBackendTest {
+    private final Gson gson = new Gson();
+    private final LocalFuzzyBackend local = new LocalFuzzyBackend();
+    private final AtomicInteger batches = new AtomicInteger();
+    private HttpServer server;
+    private String address;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/fit", exchange -> {
+            Stub request = gson.fromJson(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), Stub.class);
+            respond(exchange, gson.toJson(local.fit(request)));
+        });
+        server.createContext("/batch", exchange -> {
+            batches.incrementAndGet();
+            List<Stub> requests = gson.fromJson(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8),
+                    new TypeToken<List<Stub>>() {}.getType());
+            respond(exchange, gson.toJson(local.fitAll(requests)));
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        address = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void ShouldFitRemotely() throws IOException {
+        try (RemoteFuzzyBackend backend = new RemoteFuzzyBackend(address + "/fit")) {
+            List<Stub> requests = createRequests(4);
+            List<Stub> responses = backend.fitAll(requests);
+
+            assertEquals(requests.size(), responses.size());
+            for (int i = 0; i < requests.size(); ++i) {
+                assertSameRow(local.fit(requests.get(i)), responses.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void ShouldFitBatch() throws IOException {
+        try (RemoteFuzzyBackend backend = new RemoteFuzzyBackend(address + "/fit", address + "/batch", 2)) {
+            List<Stub> requests = createRequests(3);
+            List<Stub> responses = backend.fitAll(requests);
+
+            assertEquals(1, batches.get());
+            for (int i = 0; i < requests.size(); ++i) {
+                assertSameRow(local.fit(requests.get(i)), responses.get(i));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void ShouldFailOnServerError() throws IOException {
+        try (RemoteFuzzyBackend backend = new RemoteFuzzyBackend(address + "/missing")) {
+            backend.fit(createRequests(1).get(0));
+        }
+    }
+
+    private static List<Stub> createRequests(int count) {
+        List<Stub> requests = new ArrayList<>();
+        for (int order = 1; order <= count; ++order) {
+            Stub request = new Stub();
+            request.setName("нечеткий");
+            request.setOrder(order);
+            request.setActualCount(6);
+            request.setForecastCount(3);
+            List<TRPoint> row = new ArrayList<>();
+            for (int i = 1; i <= 30; ++i) {
+                TRPoint point = new TRPoint();
+                point.setX(i);
+                point.setY(Math.sin(i / 3.0) + i / 10.0);
+                row.add(point);
+            }
+            request.setROW(row);
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private static void assertSameRow(Stub expected, Stub actual) {
+        assertEquals(expected.getROW().size(), actual.getROW().size());
+        for (int i = 0; i < expected.getROW().size(); ++i) {
+            assertEquals(expected.getROW().get(i).getY(), actual.getROW().get(i).getY(), 0);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(bytes);
+        }
+    }
+}
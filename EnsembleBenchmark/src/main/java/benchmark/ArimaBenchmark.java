@@ -0,0 +1,76 @@
+package benchmark;
+
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidTemporaryValueException;
+import domain.models.single.Arima;
+import domain.models.single.ArimaFamily;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры обучения и прогнозирования модели ARIMA.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArimaBenchmark {
+    @Param({"100", "1000", "5000"})
+    public int length;
+
+    @Param({"1", "3"})
+    public int order;
+
+    private TimeSeries timeSeries;
+    private Arima fited;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InvalidOrderException {
+        timeSeries = SyntheticSeries.normalized(length);
+        fited = new Arima(timeSeries, order, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT);
+        fited.fit();
+    }
+
+    @Benchmark
+    public Arima fit() throws InvalidOrderException {
+        Arima arima = new Arima(timeSeries, order, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT);
+        arima.fit();
+        return arima;
+    }
+
+    /**
+     * Обучение моделей всех порядков от 1 до order по отдельности, как при переборе.
+     */
+    @Benchmark
+    public void fitAllOrders(Blackhole blackhole) throws InvalidOrderException {
+        for (int i = 1; i <= order; ++i) {
+            Arima arima = new Arima(timeSeries, i, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT);
+            arima.fit();
+            blackhole.consume(arima);
+        }
+    }
+
+    /**
+     * Обучение моделей всех порядков от 1 до order одним проходом.
+     */
+    @Benchmark
+    public void fitFamily(Blackhole blackhole) throws InvalidOrderException {
+        ArimaFamily family = new ArimaFamily(timeSeries, order, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT);
+        for (int i = 1; i <= order; ++i) {
+            blackhole.consume(family.fit(i));
+        }
+    }
+
+    @Benchmark
+    public void forecast(Blackhole blackhole) throws ForecastNotFitedModelException, InvalidTemporaryValueException {
+        for (int t = order + 1; t <= length; ++t) {
+            blackhole.consume(fited.forecast(t));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск замеров с сохранением результатов в JSON.
+ * Принимает те же аргументы, что и JMH (например, регулярное выражение для выбора замеров),
+ * файл результатов по умолчанию - target/jmh-result.json.
+ */
+public class BenchmarkRunner {
+    /**
+     * Горизонт прогноза моделей в замерах.
+     */
+    static final int FORECAST_COUNT = 5;
+    /**
+     * Процент обучающей выборки.
+     */
+    static final int TRAIN_PERCENT = 70;
+    /**
+     * Процент тестовой выборки.
+     */
+    static final int TEST_PERCENT = 20;
+
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT);
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
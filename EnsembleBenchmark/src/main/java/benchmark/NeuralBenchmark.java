@@ -0,0 +1,79 @@
+package benchmark;
+
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.exceptions.InvalidOrderException;
+import domain.exceptions.InvalidTemporaryValueException;
+import domain.models.single.Neural;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры обучения и прогнозирования нейронной модели с сетью DL4J и сетью на Java.
+ * Обучение сети DL4J длится секунды, поэтому замеряется одиночными вызовами;
+ * пропускная способность обучения (моделей в секунду) замеряется отдельно.
+ */
+@State(Scope.Thread)
+@Fork(1)
+public class NeuralBenchmark {
+    @Param({"100", "500"})
+    public int length;
+
+    @Param({"2", "5"})
+    public int order;
+
+    @Param({"DL4J", "JAVA"})
+    public Neural.Engine engine;
+
+    private TimeSeries timeSeries;
+    private Neural fited;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InvalidOrderException {
+        timeSeries = SyntheticSeries.normalized(length);
+        fited = new Neural(timeSeries, order, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT, engine);
+        fited.fit();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public Neural fit() throws InvalidOrderException {
+        Neural neural = new Neural(timeSeries, order, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT, engine);
+        neural.fit();
+        return neural;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Neural fitThroughput() throws InvalidOrderException {
+        return fit();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void forecast(Blackhole blackhole) throws ForecastNotFitedModelException, InvalidTemporaryValueException {
+        for (int t = order + 1; t <= length; ++t) {
+            blackhole.consume(fited.forecast(t));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public double[] forecastRange() throws ForecastNotFitedModelException, InvalidTemporaryValueException {
+        return fited.forecastRange(order + 1, length + 1);
+    }
+}
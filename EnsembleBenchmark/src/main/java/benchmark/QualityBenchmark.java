@@ -0,0 +1,56 @@
+package benchmark;
+
+import domain.Quality;
+import domain.QualityMetrics;
+import domain.TimeSeries;
+import domain.exceptions.TimeSeriesSizeException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры расчета средней ошибки аппроксимации.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QualityBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int length;
+
+    private TimeSeries fact;
+    private TimeSeries calc;
+    private double[] factValues;
+    private double[] calcValues;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fact = SyntheticSeries.generate(length);
+        Random random = new Random(SyntheticSeries.DEFAULT_SEED);
+        calc = new TimeSeries(length);
+        for (int t = fact.getStartTime(); t <= fact.getEndTime(); ++t) {
+            calc.addTimeValue(fact.getTimeValue(t) * (1 + 0.05 * random.nextGaussian()));
+        }
+        factValues = fact.toArray();
+        calcValues = calc.toArray();
+    }
+
+    @Benchmark
+    public double mape() throws TimeSeriesSizeException {
+        return Quality.mape(fact, calc);
+    }
+
+    @Benchmark
+    public double mapeArray() {
+        return Quality.mape(factValues, 0, calcValues, 0, length);
+    }
+
+    @Benchmark
+    public QualityMetrics metrics() {
+        return Quality.metrics(factValues, 0, calcValues, 0, length);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import domain.Ensemble;
+import domain.Model;
+import domain.TimeSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры полного перебора ансамблей: обучение моделей и поиск лучших комбинаций.
+ * Класс SortOutEnsemble лежит в пакете по умолчанию и не может быть импортирован, поэтому вызывается через рефлексию.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SortOutBenchmark {
+    @Param({"100", "500"})
+    public int length;
+
+    /**
+     * Максимальный порядок ARIMA, он же количество моделей в переборе.
+     */
+    @Param({"4", "8", "12"})
+    public int poolSize;
+
+    private TimeSeries timeSeries;
+    private Constructor<?> constructor;
+    private Method sortOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        timeSeries = SyntheticSeries.normalized(length);
+        Class<?> sortOutClass = Class.forName("SortOutEnsemble");
+        constructor = sortOutClass.getConstructor(
+                TimeSeries.class,
+                boolean.class, boolean.class, boolean.class,
+                double.class, double.class,
+                int.class, int.class, int.class,
+                boolean.class, boolean.class,
+                int.class);
+        sortOut = sortOutClass.getMethod("sortOut", List.class, List.class, List.class);
+    }
+
+    @Benchmark
+    public List<Ensemble> sortOut() throws Exception {
+        Object instance = constructor.newInstance(
+                timeSeries,
+                true, false, false,
+                1.0, 1.0,
+                poolSize, 0, 0,
+                false, true,
+                BenchmarkRunner.FORECAST_COUNT);
+        List<Model> allModels = new ArrayList<>();
+        List<Ensemble> weighted = new ArrayList<>();
+        List<Ensemble> neural = new ArrayList<>();
+        try {
+            sortOut.invoke(instance, allModels, weighted, neural);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return weighted;
+    }
+}
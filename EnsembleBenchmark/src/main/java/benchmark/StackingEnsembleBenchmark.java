@@ -0,0 +1,74 @@
+package benchmark;
+
+import domain.Model;
+import domain.TimeSeries;
+import domain.exceptions.*;
+import domain.models.ensemble.StackingEnsemble;
+import domain.models.ensemble.StackingGram;
+import domain.models.single.Arima;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры обучения метаалгоритма ансамбля со стекингом.
+ * Модели ансамбля обучаются заранее; сравнивается расчет матрицы Грама ансамблем и выборка из общей матрицы.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackingEnsembleBenchmark {
+    @Param({"200", "1000", "5000"})
+    public int length;
+
+    @Param({"2", "5", "10"})
+    public int poolSize;
+
+    @Param({"RIDGE", "NNLS"})
+    public StackingEnsemble.Method method;
+
+    private TimeSeries timeSeries;
+    private List<Model> models;
+    private StackingGram gram;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InvalidOrderException, ForecastNotFitedModelException {
+        timeSeries = SyntheticSeries.normalized(length);
+        models = new ArrayList<>(poolSize);
+        for (int order = 1; order <= poolSize; ++order) {
+            Arima arima = new Arima(timeSeries, order, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT);
+            arima.fit();
+            models.add(arima);
+        }
+        gram = new StackingGram(models);
+    }
+
+    @Benchmark
+    public StackingEnsemble fitMetaAlgorithm() throws InvalidOrderException, NoEqualsTimeSeriesException,
+            InvalidTemporaryValueException, ForecastNotFitedModelException, IOException {
+        return fit(null);
+    }
+
+    @Benchmark
+    public StackingEnsemble fitMetaAlgorithmSharedGram() throws InvalidOrderException, NoEqualsTimeSeriesException,
+            InvalidTemporaryValueException, ForecastNotFitedModelException, IOException {
+        return fit(gram);
+    }
+
+    private StackingEnsemble fit(StackingGram gram) throws InvalidOrderException, NoEqualsTimeSeriesException,
+            InvalidTemporaryValueException, ForecastNotFitedModelException, IOException {
+        StackingEnsemble ensemble = new StackingEnsemble(timeSeries, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT,
+                BenchmarkRunner.TEST_PERCENT, method, StackingEnsemble.DEFAULT_REGULARIZATION, gram);
+        for (Model model : models) {
+            ensemble.addModel(model);
+        }
+        ensemble.fit();
+        return ensemble;
+    }
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import domain.TimeSeries;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Random;
+
+/**
+ * Генератор синтетических временных рядов для замеров.
+ * Ряд состоит из тренда, сезонной составляющей и авторегрессионного шума,
+ * при одинаковом зерне генерируется один и тот же ряд.
+ */
+@ParametersAreNonnullByDefault
+public final class SyntheticSeries {
+    /**
+     * Зерно генератора по умолчанию.
+     */
+    public static final long DEFAULT_SEED = 42;
+
+    /**
+     * Период сезонной составляющей.
+     */
+    private static final int SEASON = 12;
+
+    private SyntheticSeries() {
+    }
+
+    /**
+     * Сгенерировать ряд с зерном по умолчанию.
+     *
+     * @param length длина ряда.
+     * @return временной ряд.
+     */
+    public static TimeSeries generate(int length) {
+        return generate(length, DEFAULT_SEED);
+    }
+
+    /**
+     * Сгенерировать ряд.
+     *
+     * @param length длина ряда.
+     * @param seed   зерно генератора.
+     * @return временной ряд (значения положительные, не нормализованы).
+     */
+    public static TimeSeries generate(int length, long seed) {
+        Random random = new Random(seed);
+        TimeSeries timeSeries = new TimeSeries(length);
+        double noise = 0;
+        for (int t = 1; t <= length; ++t) {
+            noise = 0.6 * noise + random.nextGaussian();
+            double value = 100 + 0.05 * t + 10 * Math.sin(2 * Math.PI * t / SEASON) + 2 * noise;
+            timeSeries.addTimeValue(Math.max(value, 1));
+        }
+        return timeSeries;
+    }
+
+    /**
+     * Сгенерировать нормализованный ряд, как его подготавливает приложение перед обучением моделей.
+     *
+     * @param length длина ряда.
+     * @return нормализованный временной ряд.
+     */
+    public static TimeSeries normalized(int length) {
+        TimeSeries timeSeries = generate(length);
+        timeSeries.normalize();
+        return timeSeries;
+    }
+}
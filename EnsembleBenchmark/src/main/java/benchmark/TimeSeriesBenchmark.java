@@ -0,0 +1,56 @@
+package benchmark;
+
+import domain.TimeSeries;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры базовых операций временного ряда.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeSeriesBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int length;
+
+    private double[] values;
+    private TimeSeries timeSeries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        timeSeries = SyntheticSeries.generate(length);
+        values = timeSeries.toArray();
+    }
+
+    @Benchmark
+    public TimeSeries add() {
+        TimeSeries result = new TimeSeries();
+        for (double value : values) {
+            result.addTimeValue(value);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole) {
+        for (int t = timeSeries.getStartTime(); t <= timeSeries.getEndTime(); ++t) {
+            blackhole.consume(timeSeries.getTimeValue(t));
+        }
+    }
+
+    @Benchmark
+    public TimeSeries normalize() {
+        TimeSeries result = new TimeSeries(values.length);
+        for (double value : values) {
+            result.addTimeValue(value);
+        }
+        result.normalize();
+        return result;
+    }
+}
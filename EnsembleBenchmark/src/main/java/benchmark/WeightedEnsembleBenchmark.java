@@ -0,0 +1,56 @@
+package benchmark;
+
+import domain.Model;
+import domain.TimeSeries;
+import domain.exceptions.*;
+import domain.models.ensemble.WeightedAverageEnsemble;
+import domain.models.single.Arima;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеры обучения метаалгоритма средневзвешенного ансамбля.
+ * Модели ансамбля обучаются заранее, поэтому замеряется только расчет весов по матрице прогнозов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeightedEnsembleBenchmark {
+    @Param({"200", "1000", "5000"})
+    public int length;
+
+    @Param({"2", "5", "10"})
+    public int poolSize;
+
+    private TimeSeries timeSeries;
+    private List<Model> models;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InvalidOrderException {
+        timeSeries = SyntheticSeries.normalized(length);
+        models = new ArrayList<>(poolSize);
+        for (int order = 1; order <= poolSize; ++order) {
+            Arima arima = new Arima(timeSeries, order, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT);
+            arima.fit();
+            models.add(arima);
+        }
+    }
+
+    @Benchmark
+    public WeightedAverageEnsemble fitMetaAlgorithm() throws InvalidOrderException, NoEqualsTimeSeriesException,
+            InvalidTemporaryValueException, ForecastNotFitedModelException, IOException {
+        WeightedAverageEnsemble ensemble = new WeightedAverageEnsemble(timeSeries, BenchmarkRunner.FORECAST_COUNT, BenchmarkRunner.TRAIN_PERCENT, BenchmarkRunner.TEST_PERCENT);
+        for (Model model : models) {
+            ensemble.addModel(model);
+        }
+        ensemble.fit();
+        return ensemble;
+    }
+}
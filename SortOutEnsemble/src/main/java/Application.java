@@ -2,9 +2,12 @@ import domain.Ensemble;
 import domain.Model;
 import domain.TimeSeries;
 import domain.exceptions.*;
+import domain.metrics.Metrics;
 import domain.models.ensemble.NeuralEnsemble;
+import domain.models.ensemble.StackingEnsemble;
 import domain.models.ensemble.WeightedAverageEnsemble;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -12,23 +15,63 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 public class Application {
+    /**
+     * Команда пакетной обработки рядов, см. {@link BatchRunner}.
+     */
+    private static final String BATCH_COMMAND = "batch";
+    /**
+     * Команда запуска сервера прогнозов, см. {@link ForecastServer}.
+     */
+    private static final String SERVE_COMMAND = "serve";
+    /**
+     * Системное свойство: записывать ли при переборе снимок обученной модели для каждого результата
+     * (при применении сохраненного ансамбля снимок пишется всегда).
+     */
+    private static final String SNAPSHOT_PROPERTY = "models.snapshot";
+
     public static void main(String[] args) throws IOException {
-        Reader reader = new Reader();
+        if (args.length > 0 && args[0].equals(BATCH_COMMAND)) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals(SERVE_COMMAND)) {
+            ForecastServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        Writer writer = new Writer();
+        process(new Reader(), writer, null);
+        if (Metrics.isEnabled()) {
+            writer.writeMetrics(Metrics.getRegistry());
+        }
+    }
+
+    /**
+     * Обработать один временной ряд: перебор ансамблей или применение сохраненного ансамбля.
+     * Ошибки обработки записываются в файл исключения в каталоге выходных файлов ряда.
+     *
+     * @param reader       чтение входных файлов ряда.
+     * @param writer       запись выходных файлов ряда.
+     * @param fitScheduler планировщик обучения моделей (если не задан, создается на время перебора).
+     * @return обработан ли ряд без ошибок.
+     * @throws IOException при записи файла исключения.
+     */
+    static boolean process(Reader reader, Writer writer, @Nullable ModelFitScheduler fitScheduler) throws IOException {
         TimeSeries timeSeries = null;
         try {
             timeSeries = reader.readTimeSeries();
         } catch (IOException e) {
-            (new Writer()).writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
-            return;
+            writer.writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
+            return false;
         }
         timeSeries.normalize();
         String[] params = new String[0];
         try {
             params = reader.readParams();
         } catch (IOException e) {
-            (new Writer()).writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
-            return;
+            writer.writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
+            return false;
         }
+        boolean binaryOutput = params.length > 12 && params[12].equals("Binary");
         if (params[11].equals("Test")) {
 //            List<Object> keys = timeSeries.getTimeSeries().keySet().stream().collect(Collectors.toList());
 //            int trainSize = (int) (keys.size() * 0.9);
@@ -50,6 +93,9 @@ public class Application {
                     (params[8].equals("1")) ? true : false,
                     (params[9].equals("1")) ? true : false,
                     Integer.parseInt(params[10]));
+            if (fitScheduler != null) {
+                sortOut.setFitScheduler(fitScheduler);
+            }
 
             List<Model> allModels = new ArrayList<>();
             List<Ensemble> weighted = new ArrayList<>();
@@ -57,70 +103,80 @@ public class Application {
             try {
                 sortOut.sortOut(allModels, weighted, neural);
             } catch (InvalidTemporaryValueException e) {
-                (new Writer()).writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (ForecastNotFitedModelException e) {
-                (new Writer()).writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (NoEqualsTimeSeriesException e) {
-                (new Writer()).writeException("Не эквивалентные временные ряды среди моделей ансамбля", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Не эквивалентные временные ряды среди моделей ансамбля", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (TimeSeriesSizeException e) {
-                (new Writer()).writeException("Некорректная длина временных рядов", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректная длина временных рядов", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (IOException e) {
-                (new Writer()).writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (InvalidOrderException e) {
-                (new Writer()).writeException("Некорректный порядок модели", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректный порядок модели", Arrays.toString(e.getStackTrace()));
+                return false;
+            }
+            if (!sortOut.getFailures().isEmpty()) {
+                writer.writeFailures(sortOut.getFailures());
             }
 
-            EnsembleUtil writeEnsemble = new EnsembleUtil(timeSeries, weighted, neural, allModels, 0);
-            try {
+            EnsembleUtil writeEnsemble = new EnsembleUtil(timeSeries, weighted, neural, allModels, 0, writer);
+            try (ResultStore resultStore = binaryOutput ? writer.openResultStore() : null) {
+                writeEnsemble.setResultStore(resultStore);
+                writeEnsemble.setWriteSnapshots(Boolean.getBoolean(SNAPSHOT_PROPERTY));
                 writeEnsemble.write();
             } catch (InvalidTemporaryValueException e) {
-                (new Writer()).writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (ForecastNotFitedModelException e) {
-                (new Writer()).writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (TimeSeriesSizeException e) {
-                (new Writer()).writeException("Некорректная длина временных рядов", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректная длина временных рядов", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (IOException e) {
-                (new Writer()).writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
+                return false;
             }
         } else {
-            EnsembleUtil readEnsemble = new EnsembleUtil(timeSeries, Integer.parseInt(params[10]),90, 10);
+            EnsembleUtil readEnsemble = new EnsembleUtil(timeSeries, Integer.parseInt(params[10]),90, 10, reader);
             Model model = null;
             try {
                 model = readEnsemble.read();
             } catch (IOException e) {
-                (new Writer()).writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (InvalidDescriptionException e) {
-                (new Writer()).writeException("Не корректное описание модели", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Не корректное описание модели", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (NoEqualsTimeSeriesException e) {
-                (new Writer()).writeException("Не эквивалентные временные ряды среди моделей ансамбля", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Не эквивалентные временные ряды среди моделей ансамбля", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (InvalidOrderException e) {
-                (new Writer()).writeException("Некорректный порядок модели", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректный порядок модели", Arrays.toString(e.getStackTrace()));
+                return false;
             }
             try {
-                model.fit();
+                Model fitted = readEnsemble.readSnapshot(model);
+                if (fitted != null) {
+                    model = fitted;
+                } else {
+                    model.fit();
+                }
             } catch (InvalidTemporaryValueException e) {
-                (new Writer()).writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (ForecastNotFitedModelException e) {
-                (new Writer()).writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (IOException e) {
-                (new Writer()).writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
+                return false;
             }
 
             List<Model> allModels = new ArrayList<>();
@@ -129,27 +185,30 @@ public class Application {
 
             if(model instanceof WeightedAverageEnsemble) {
                 weighted.add((Ensemble) model);
-            } else if(model instanceof NeuralEnsemble) {
+            } else if(model instanceof NeuralEnsemble || model instanceof StackingEnsemble) {
                 neural.add((Ensemble) model);
             } else {
                 allModels.add(model);
             }
-            EnsembleUtil writeEnsemble = new EnsembleUtil(timeSeries, weighted, neural, allModels, -1);
-            try {
+            EnsembleUtil writeEnsemble = new EnsembleUtil(timeSeries, weighted, neural, allModels, -1, writer);
+            try (ResultStore resultStore = binaryOutput ? writer.openResultStore() : null) {
+                writeEnsemble.setResultStore(resultStore);
+                writeEnsemble.setWriteSnapshots(true);
                 writeEnsemble.write();
             } catch (InvalidTemporaryValueException e) {
-                (new Writer()).writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректная метка времени предсказываемого значения", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (ForecastNotFitedModelException e) {
-                (new Writer()).writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Предсказание необученной модели", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (TimeSeriesSizeException e) {
-                (new Writer()).writeException("Некорректная длина временных рядов", Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException("Некорректная длина временных рядов", Arrays.toString(e.getStackTrace()));
+                return false;
             } catch (IOException e) {
-                (new Writer()).writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
-                return;
+                writer.writeException(e.getMessage(), Arrays.toString(e.getStackTrace()));
+                return false;
             }
         }
+        return true;
     }
 }
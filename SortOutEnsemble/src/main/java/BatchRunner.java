@@ -0,0 +1,202 @@
+import domain.metrics.Metrics;
+import org.apache.commons.csv.CSVPrinter;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Пакетная обработка множества временных рядов в одной JVM.
+ * <p>
+ * Каждый ряд - каталог с файлами ts.csv и params.csv (и, для применения ансамбля, model.csv и model.bin).
+ * Ряды перечисляются подкаталогами входного каталога или строками файла-списка (пути относительно файла,
+ * строки, начинающиеся с #, пропускаются). Результаты ряда пишутся в собственный подкаталог выходного каталога,
+ * ошибка ряда - в его файл исключения, не прерывая обработку остальных рядов.
+ * После каждого ряда в журнал batch.csv выходного каталога добавляется строка: ряд, результат, время в мс.
+ * <p>
+ * Ряды обрабатываются параллельно, модели всех рядов обучаются на общем пуле потоков;
+ * нативный бэкенд ND4J инициализируется один раз на JVM.
+ */
+@ParametersAreNonnullByDefault
+public class BatchRunner implements AutoCloseable {
+    /**
+     * Количество доступных ядер.
+     */
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    private static final String MANIFEST_COMMENT = "#";
+    private static final String STATUS_OK = "ok";
+    private static final String STATUS_ERROR = "error";
+
+    /**
+     * Выходной каталог.
+     */
+    private final Path outputDir;
+    /**
+     * Пул обработки рядов.
+     */
+    private final ExecutorService seriesExecutor;
+    /**
+     * Общий пул обучения моделей.
+     */
+    private final ExecutorService modelExecutor;
+
+    /**
+     * @param outputDir         выходной каталог.
+     * @param seriesParallelism  количество одновременно обрабатываемых рядов.
+     */
+    public BatchRunner(Path outputDir, int seriesParallelism) {
+        if (seriesParallelism < 1) {
+            throw new IllegalArgumentException("Количество одновременно обрабатываемых рядов должно быть положительным");
+        }
+        this.outputDir = outputDir;
+        this.seriesExecutor = Executors.newFixedThreadPool(seriesParallelism, new DaemonThreadFactory("batch-series-"));
+        this.modelExecutor = Executors.newFixedThreadPool(CORES, new DaemonThreadFactory("batch-model-fit-"));
+    }
+
+    /**
+     * Получить каталоги рядов.
+     *
+     * @param input входной каталог (ряды - его подкаталоги с файлом ряда) или файл-список каталогов.
+     * @return каталоги рядов в порядке обработки.
+     * @throws IOException при чтении каталога или файла-списка.
+     */
+    public static List<Path> listSeries(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> children = Files.list(input)) {
+                return children.filter(dir -> new Reader(dir).hasTimeSeries())
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        Path base = input.toAbsolutePath().getParent();
+        List<Path> series = new ArrayList<>();
+        for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith(MANIFEST_COMMENT)) {
+                series.add(base.resolve(line));
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Обработать ряды.
+     *
+     * @param series каталоги рядов.
+     * @return количество рядов, обработанных с ошибкой.
+     * @throws IOException          при создании выходного каталога или журнала.
+     * @throws InterruptedException обработка прервана.
+     */
+    public int run(List<Path> series) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        try (CSVPrinter log = new Writer(outputDir).openBatchLog()) {
+            Set<String> names = new HashSet<>();
+            List<Future<Boolean>> results = new ArrayList<>(series.size());
+            for (Path input : series) {
+                String name = getPartitionName(input, names);
+                results.add(seriesExecutor.submit(() -> process(input, name, log)));
+            }
+            int failed = 0;
+            for (Future<Boolean> result : results) {
+                try {
+                    if (!result.get()) {
+                        ++failed;
+                    }
+                } catch (ExecutionException e) {
+                    ++failed;
+                }
+            }
+            return failed;
+        }
+    }
+
+    @Override
+    public void close() {
+        seriesExecutor.shutdownNow();
+        modelExecutor.shutdownNow();
+    }
+
+    /**
+     * Обработать один ряд.
+     *
+     * @param input каталог ряда.
+     * @param name  имя подкаталога результатов.
+     * @param log   журнал пакетной обработки.
+     * @return обработан ли ряд без ошибок.
+     * @throws IOException при записи результатов или журнала.
+     */
+    private boolean process(Path input, String name, CSVPrinter log) throws IOException {
+        Path output = outputDir.resolve(name);
+        Files.createDirectories(output);
+        Writer writer = new Writer(output);
+        long start = System.nanoTime();
+        boolean success;
+        try (ModelFitScheduler fitScheduler = new ModelFitScheduler(modelExecutor)) {
+            success = Application.process(new Reader(input), writer, fitScheduler);
+        } catch (RuntimeException e) {
+            writer.writeException(String.valueOf(e), Arrays.toString(e.getStackTrace()));
+            success = false;
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        synchronized (log) {
+            log.printRecord(name, success ? STATUS_OK : STATUS_ERROR, millis);
+            log.flush();
+        }
+        return success;
+    }
+
+    /**
+     * Получить уникальное имя подкаталога результатов ряда (имя каталога ряда, при повторе - с номером).
+     *
+     * @param input каталог ряда.
+     * @param names уже занятые имена.
+     * @return имя подкаталога.
+     */
+    private static String getPartitionName(Path input, Set<String> names) {
+        Path fileName = input.getFileName();
+        String name = (fileName != null) ? fileName.toString() : "series";
+        String unique = name;
+        for (int i = 2; !names.add(unique); ++i) {
+            unique = name + "-" + i;
+        }
+        return unique;
+    }
+
+    /**
+     * Пакетная обработка из командной строки.
+     *
+     * @param args входной каталог или файл-список, выходной каталог (по умолчанию output),
+     *             количество одновременно обрабатываемых рядов (по умолчанию по числу ядер).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Не задан входной каталог или файл-список рядов");
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args.length > 1 ? args[1] : "output");
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : CORES;
+        try (BatchRunner runner = new BatchRunner(output, parallelism)) {
+            runner.run(listSeries(input));
+            if (Metrics.isEnabled()) {
+                new Writer(output).writeMetrics(Metrics.getRegistry());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import domain.exceptions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Лучевой поиск: на каждом уровне хранятся width лучших подмножеств,
+ * следующий уровень получается добавлением к ним по одной модели.
+ * Перебор прекращается, когда уровень не улучшает лучший найденный ансамбль.
+ */
+public class BeamSearch implements EnsembleSearch {
+    /**
+     * Ширина луча.
+     */
+    private final int width;
+
+    /**
+     * @param width ширина луча.
+     */
+    public BeamSearch(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Ширина луча должна быть положительной");
+        }
+        this.width = width;
+    }
+
+    @Override
+    public void search(int size, SubsetEvaluator evaluator, SearchBudget budget) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
+        if (size > MAX_MODELS) {
+            throw new IllegalArgumentException("Перебор возможен не более чем для " + MAX_MODELS + " моделей");
+        }
+        List<Candidate> beam = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            beam.add(new Candidate(1L << i, evaluator.evaluate(1L << i)));
+        }
+        beam = best(beam);
+
+        double bestScore = Double.POSITIVE_INFINITY;
+        Set<Long> seen = new HashSet<>();
+        for (int level = 2; level <= size; ++level) {
+            List<Candidate> next = new ArrayList<>();
+            for (Candidate candidate : beam) {
+                for (int i = 0; i < size; ++i) {
+                    long subset = candidate.subset | (1L << i);
+                    if (subset == candidate.subset || !seen.add(subset)) {
+                        continue;
+                    }
+                    if (!budget.tryAcquire()) {
+                        return;
+                    }
+                    next.add(new Candidate(subset, evaluator.evaluate(subset)));
+                }
+            }
+            if (next.isEmpty()) {
+                return;
+            }
+            beam = best(next);
+            double levelScore = beam.get(0).score;
+            if (level > 2 && !(levelScore < bestScore)) {
+                return;
+            }
+            bestScore = Math.min(bestScore, levelScore);
+        }
+    }
+
+    /**
+     * Выбрать лучшие подмножества уровня.
+     *
+     * @param candidates подмножества уровня.
+     * @return не более width лучших подмножеств.
+     */
+    private List<Candidate> best(List<Candidate> candidates) {
+        candidates.sort((a, b) -> Double.compare(a.score, b.score));
+        return new ArrayList<>(candidates.subList(0, Math.min(width, candidates.size())));
+    }
+
+    /**
+     * Оцененное подмножество.
+     */
+    private static class Candidate {
+        private final long subset;
+        private final double score;
+
+        Candidate(long subset, double score) {
+            this.subset = subset;
+            this.score = score;
+        }
+    }
+}
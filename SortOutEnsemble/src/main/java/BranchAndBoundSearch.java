@@ -0,0 +1,71 @@
+import domain.exceptions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Перебор с отсечением по порогу качества.
+ * Модели упорядочиваются по собственной ошибке, подмножества строятся в глубину;
+ * подмножество, ошибка которого превышает порог качества, не расширяется.
+ */
+public class BranchAndBoundSearch implements EnsembleSearch {
+    /**
+     * Порог качества ансамбля.
+     */
+    private final double qualityBorder;
+
+    /**
+     * @param qualityBorder порог качества ансамбля.
+     */
+    public BranchAndBoundSearch(double qualityBorder) {
+        this.qualityBorder = qualityBorder;
+    }
+
+    @Override
+    public void search(int size, SubsetEvaluator evaluator, SearchBudget budget) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
+        if (size > MAX_MODELS) {
+            throw new IllegalArgumentException("Перебор возможен не более чем для " + MAX_MODELS + " моделей");
+        }
+        List<Integer> order = new ArrayList<>(size);
+        double[] scores = new double[size];
+        for (int i = 0; i < size; ++i) {
+            scores[i] = evaluator.evaluate(1L << i);
+            order.add(i);
+        }
+        order.sort((a, b) -> Double.compare(scores[a], scores[b]));
+        int[] models = new int[size];
+        for (int i = 0; i < size; ++i) {
+            models[i] = order.get(i);
+        }
+        branch(0, 0, models, evaluator, budget);
+    }
+
+    /**
+     * Расширить подмножество моделями, следующими за последней добавленной.
+     *
+     * @param subset    подмножество.
+     * @param from      позиция первой модели-кандидата.
+     * @param models    модели, упорядоченные по собственной ошибке.
+     * @param evaluator оценка подмножества.
+     * @param budget    бюджет перебора.
+     * @return можно ли продолжать перебор.
+     */
+    private boolean branch(long subset, int from, int[] models, SubsetEvaluator evaluator, SearchBudget budget) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
+        for (int i = from; i < models.length; ++i) {
+            long child = subset | (1L << models[i]);
+            if (Long.bitCount(child) > 1) {
+                if (!budget.tryAcquire()) {
+                    return false;
+                }
+                if (evaluator.evaluate(child) > qualityBorder) {
+                    continue;
+                }
+            }
+            if (!branch(child, i + 1, models, evaluator, budget)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+import domain.Model;
+import domain.ModelSnapshot;
+import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Хранилище рядов в каталоге: каждый ряд - подкаталог с файлами в формате режима применения ансамбля
+ * (ts.csv, params.csv, model.csv и снимок model.bin).
+ * Модель строится по описанию из model.csv, как при применении ансамбля; новые значения дописываются в ts.csv.
+ */
+@ParametersAreNonnullByDefault
+public class DirectoryModelStore implements ModelStore {
+    private static final String TS_FILE_NAME = "ts.csv";
+    private static final String SNAPSHOT_FILE_NAME = "model.bin";
+    private static final int TRAIN_PERCENT = 90;
+    private static final int TEST_PERCENT = 10;
+
+    /**
+     * Каталог рядов.
+     */
+    private final Path dataDir;
+
+    /**
+     * @param dataDir каталог рядов.
+     */
+    public DirectoryModelStore(Path dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    @Nullable
+    @Override
+    public Model load(String id) throws Exception {
+        return load(id, true);
+    }
+
+    @Nullable
+    @Override
+    public Model refit(String id) throws Exception {
+        return load(id, false);
+    }
+
+    @Override
+    public void append(String id, double[] values) throws IOException {
+        Path path = dataDir.resolve(id).resolve(TS_FILE_NAME);
+        StringBuilder lines = new StringBuilder();
+        if (!endsWithNewLine(path)) {
+            lines.append('\n');
+        }
+        for (double value : values) {
+            lines.append(value).append(";\n");
+        }
+        Files.write(path, lines.toString().getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Сохранить снимок модели: снимок пишется во временный файл и заменяет прежний одним переименованием.
+     */
+    @Override
+    public void save(String id, Model model) throws IOException {
+        Path path = dataDir.resolve(id).resolve(SNAPSHOT_FILE_NAME);
+        Path temporary = path.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary)) {
+            ModelSnapshot.write(model, stream);
+        } catch (ForecastNotFitedModelException e) {
+            throw new IOException(e);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загрузить модель ряда.
+     *
+     * @param id          идентификатор ряда.
+     * @param useSnapshot использовать ли снимок.
+     * @return обученная модель или null, если ряда нет.
+     */
+    @Nullable
+    private Model load(String id, boolean useSnapshot) throws Exception {
+        Reader reader = new Reader(dataDir.resolve(id));
+        if (!reader.hasTimeSeries()) {
+            return null;
+        }
+        TimeSeries timeSeries = reader.readTimeSeries();
+        timeSeries.normalize();
+        String[] params = reader.readParams();
+        EnsembleUtil ensembleUtil = new EnsembleUtil(timeSeries, Integer.parseInt(params[10]), TRAIN_PERCENT, TEST_PERCENT, reader);
+        Model model = ensembleUtil.read();
+        Model fitted = useSnapshot ? ensembleUtil.readSnapshot(model) : null;
+        if (fitted != null) {
+            return fitted;
+        }
+        model.fit();
+        save(id, model);
+        return model;
+    }
+
+    private static boolean endsWithNewLine(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            if (file.length() == 0) {
+                return true;
+            }
+            file.seek(file.length() - 1);
+            return file.read() == '\n';
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import domain.exceptions.*;
+
+import java.io.IOException;
+
+/**
+ * Стратегия перебора подмножеств моделей для построения ансамблей.
+ */
+public interface EnsembleSearch {
+    /**
+     * Максимальное количество моделей, которое можно задать битовой маской.
+     */
+    int MAX_MODELS = 62;
+
+    /**
+     * Перебрать подмножества моделей.
+     *
+     * @param size      количество моделей.
+     * @param evaluator оценка подмножества.
+     * @param budget    бюджет перебора.
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws TimeSeriesSizeException        некорректная длина временных рядов.
+     * @throws NoEqualsTimeSeriesException    разные временные ряды в моделях.
+     */
+    void search(int size, SubsetEvaluator evaluator, SearchBudget budget) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException;
+}
@@ -0,0 +1,84 @@
+import domain.Ensemble;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отбор лучших ансамблей во время перебора: хранится не больше limit ансамблей
+ * с наименьшей ошибкой на тестовой выборке. Ансамбль, вытесненный более точным, сразу освобождается,
+ * поэтому память не зависит от количества перебранных подмножеств.
+ * При равной ошибке остается ансамбль, добавленный раньше; неопределенная ошибка считается наибольшей.
+ */
+@ParametersAreNonnullByDefault
+class EnsembleSelection {
+    /**
+     * Сначала худший ансамбль: большая ошибка, затем более позднее добавление.
+     */
+    private static final Comparator<Entry> WORST_FIRST = Comparator.<Entry>comparingDouble(entry -> entry.error)
+            .thenComparingLong(entry -> entry.sequence)
+            .reversed();
+
+    private final int limit;
+    private final PriorityQueue<Entry> heap;
+    private long sequence;
+
+    /**
+     * @param limit наибольшее количество отобранных ансамблей.
+     */
+    EnsembleSelection(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Количество отбираемых ансамблей должно быть положительным: " + limit);
+        }
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(Math.min(limit, 64), WORST_FIRST);
+    }
+
+    /**
+     * Предложить ансамбль, прошедший проверку качества.
+     *
+     * @param ensemble ансамбль.
+     * @param error    ошибка на тестовой выборке.
+     * @return попал ли ансамбль в отбор.
+     */
+    boolean offer(Ensemble ensemble, double error) {
+        Entry entry = new Entry(ensemble, error, sequence++);
+        if (heap.size() == limit) {
+            if (WORST_FIRST.compare(entry, heap.peek()) <= 0) {
+                return false;
+            }
+            heap.poll();
+        }
+        heap.add(entry);
+        return true;
+    }
+
+    /**
+     * Получить отобранные ансамбли в порядке добавления.
+     *
+     * @return ансамбли.
+     */
+    List<Ensemble> getEnsembles() {
+        List<Entry> entries = new ArrayList<>(heap);
+        entries.sort(Comparator.comparingLong(entry -> entry.sequence));
+        List<Ensemble> ensembles = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            ensembles.add(entry.ensemble);
+        }
+        return ensembles;
+    }
+
+    private static final class Entry {
+        private final Ensemble ensemble;
+        private final double error;
+        private final long sequence;
+
+        Entry(Ensemble ensemble, double error, long sequence) {
+            this.ensemble = ensemble;
+            this.error = error;
+            this.sequence = sequence;
+        }
+    }
+}
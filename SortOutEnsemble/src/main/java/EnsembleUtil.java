@@ -1,14 +1,16 @@
 import domain.Ensemble;
 import domain.Model;
-import domain.Quality;
+import domain.QualityReport;
 import domain.TimeSeries;
 import domain.exceptions.*;
 import domain.models.ensemble.NeuralEnsemble;
+import domain.models.ensemble.StackingEnsemble;
 import domain.models.ensemble.WeightedAverageEnsemble;
 import domain.models.single.Arima;
 import domain.models.single.Fuzzy;
 import domain.models.single.Neural;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -24,8 +26,23 @@ public class EnsembleUtil {
     private final int testPercent;
     private final int forecastCount;
     private int index;
+    /**
+     * Двоичный файл результатов (если не задан, результаты пишутся в отдельные CSV-файлы).
+     */
+    private ResultStore resultStore;
+    /**
+     * Записывать ли снимки обученных моделей рядом с результатами.
+     */
+    private boolean writeSnapshots;
 
     public EnsembleUtil(TimeSeries timeSeries, List<Ensemble> weighted, List<Ensemble> neural, List<Model> allModels, int start) {
+        this(timeSeries, weighted, neural, allModels, start, new Writer());
+    }
+
+    /**
+     * @param writer запись результатов (каталог выходных файлов ряда).
+     */
+    public EnsembleUtil(TimeSeries timeSeries, List<Ensemble> weighted, List<Ensemble> neural, List<Model> allModels, int start, Writer writer) {
         this.timeSeries = timeSeries;
         this.weighted = weighted;
         this.neural = neural;
@@ -34,11 +51,18 @@ public class EnsembleUtil {
         forecastCount = 0;
         testPercent = 0;
         trainPercent = 0;
-        writer = new Writer();
+        this.writer = writer;
         reader = new Reader();
     }
 
     public EnsembleUtil(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent) {
+        this(timeSeries, forecastCount, trainPercent, testPercent, new Reader());
+    }
+
+    /**
+     * @param reader чтение описания и снимка ансамбля (каталог входных файлов ряда).
+     */
+    public EnsembleUtil(TimeSeries timeSeries, int forecastCount, int trainPercent, int testPercent, Reader reader) {
         this.timeSeries = timeSeries;
         this.testPercent = testPercent;
         this.trainPercent = trainPercent;
@@ -48,7 +72,7 @@ public class EnsembleUtil {
         neural = new ArrayList<>();
         allModels = new ArrayList<>();
         writer = new Writer();
-        reader = new Reader();
+        this.reader = reader;
     }
 
     /**
@@ -61,8 +85,26 @@ public class EnsembleUtil {
      */
     public void write() throws InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException {
         write(allModels);
-        write(weighted, "средневзвешенный");
-        write(neural, "нейросетевой");
+        write(weighted);
+        write(neural);
+    }
+
+    /**
+     * Задать двоичный файл результатов.
+     *
+     * @param resultStore файл результатов.
+     */
+    public void setResultStore(ResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+
+    /**
+     * Задать запись снимков обученных моделей (по умолчанию снимки не пишутся).
+     *
+     * @param writeSnapshots записывать ли снимок для каждого результата.
+     */
+    public void setWriteSnapshots(boolean writeSnapshots) {
+        this.writeSnapshots = writeSnapshots;
     }
 
     /**
@@ -90,6 +132,14 @@ public class EnsembleUtil {
         } else if (description.contains("нейросетевой")) {
             description = description.replace("нейросетевой", "");
             ensemble = new NeuralEnsemble(timeSeries, forecastCount, trainPercent, testPercent);
+        } else if (description.contains("неотрицательный стекинг")) {
+            description = description.replace("неотрицательный стекинг", "");
+            ensemble = new StackingEnsemble(timeSeries, forecastCount, trainPercent, testPercent,
+                    StackingEnsemble.Method.NNLS, StackingEnsemble.DEFAULT_REGULARIZATION, null);
+        } else if (description.contains("гребневый стекинг")) {
+            description = description.replace("гребневый стекинг", "");
+            ensemble = new StackingEnsemble(timeSeries, forecastCount, trainPercent, testPercent,
+                    StackingEnsemble.Method.RIDGE, StackingEnsemble.DEFAULT_REGULARIZATION, null);
         } else {
             throw new InvalidDescriptionException();
         }
@@ -103,28 +153,60 @@ public class EnsembleUtil {
     }
 
     /**
-     * Запись результатов для списка ансамблей.
+     * Чтение снимка обученного ансамбля, сохраненного при переборе.
+     * Снимок используется, только если он описывает тот же ансамбль, что и текстовое описание,
+     * с тем же горизонтом прогноза и реализацией нейронных сетей.
+     * Разбиение ряда берется из снимка: ансамбль обучен при переборе на его разбиении и не переобучается.
      *
-     * @param ensembles список ансамблей.
-     * @param type      типа ансамблей в списке.
-     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
-     * @throws ForecastNotFitedModelException модель не была обучена.
-     * @throws TimeSeriesSizeException        некорректная длина временных рядов.
-     * @throws IOException                    при записи в файл.
+     * @param described ансамбль, созданный по текстовому описанию.
+     * @return обученный ансамбль или null, если снимка нет, он поврежден или не подходит (ансамбль нужно обучить).
      */
-    private void write(List<Ensemble> ensembles, String type) throws InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException {
-        for (Ensemble ensemble : ensembles) {
-            StringBuilder descriptionBuilder = new StringBuilder();
-            descriptionBuilder.append("Тип ансамбля: " + type + ". Включает модели: ");
-            for (Model model : ensemble.getModels()) {
-                descriptionBuilder.append(getModelDescription(model));
+    @Nullable
+    public Model readSnapshot(Model described) {
+        if (!reader.hasModelSnapshot()) {
+            return null;
+        }
+        Model model;
+        try {
+            model = reader.readModelSnapshot(timeSeries);
+        } catch (InvalidSnapshotException | IOException e) {
+            return null;
+        }
+        if (!getDescription(model).equals(getDescription(described)) || !isSameSetup(model, described)) {
+            return null;
+        }
+        return model;
+    }
+
+    /**
+     * Проверить, что модели совпадают по горизонту прогноза и реализации нейронных сетей.
+     * Описания моделей должны совпадать, поэтому ансамбли содержат модели тех же типов в том же порядке.
+     *
+     * @param model     модель из снимка.
+     * @param described модель, созданная по описанию.
+     * @return совпадают ли настройки.
+     */
+    private static boolean isSameSetup(Model model, Model described) {
+        if (model.getForecastCount() != described.getForecastCount()) {
+            return false;
+        }
+        if (model instanceof Neural) {
+            return ((Neural) model).getEngine() == ((Neural) described).getEngine();
+        }
+        if (model instanceof Ensemble) {
+            List<Model> models = ((Ensemble) model).getModels();
+            List<Model> describedModels = ((Ensemble) described).getModels();
+            for (int i = 0; i < models.size(); ++i) {
+                if (!isSameSetup(models.get(i), describedModels.get(i))) {
+                    return false;
+                }
             }
-            write(ensemble, descriptionBuilder.toString());
         }
+        return true;
     }
 
     /**
-     * Запись результатов для автомной модели.
+     * Запись результатов для списка автономных моделей или ансамблей.
      *
      * @param models список моделей.
      * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
@@ -132,12 +214,9 @@ public class EnsembleUtil {
      * @throws TimeSeriesSizeException        некорректная длина временных рядов.
      * @throws IOException                    при записи в файл.
      */
-    private void write(List<Model> models) throws ForecastNotFitedModelException, TimeSeriesSizeException, InvalidTemporaryValueException, IOException {
+    private void write(List<? extends Model> models) throws ForecastNotFitedModelException, TimeSeriesSizeException, InvalidTemporaryValueException, IOException {
         for (Model model : models) {
-            StringBuilder descriptionBuilder = new StringBuilder();
-            descriptionBuilder.append("Тип ансамбля: автономная модель.  Включает модели: ");
-            descriptionBuilder.append(getModelDescription(model));
-            write(model, descriptionBuilder.toString());
+            write(model, getDescription(model));
         }
     }
 
@@ -152,9 +231,10 @@ public class EnsembleUtil {
      */
     private void write(Model model, String description) throws IOException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException {
         TimeSeries timeSeriesCalc = new TimeSeries();
-        int i;
-        for (i = model.getOrder() + 1; i <= timeSeries.getSize(); ++i) {
-            timeSeriesCalc.add(i, model.forecast(i));
+        int i = model.getOrder() + 1;
+        for (double fitted : model.forecastRange(i, timeSeries.getSize())) {
+            timeSeriesCalc.add(i, fitted);
+            ++i;
         }
         for (double forecast : model.getForecast()) {
             timeSeriesCalc.add(i, forecast);
@@ -162,14 +242,59 @@ public class EnsembleUtil {
         }
         timeSeriesCalc.denormalize(timeSeries.getMaxValue());
 
-        String name = String.valueOf(++index);
+        ++index;
+        QualityReport report = model.evaluate();
+        double mapeTrain = report.getTrain().getMape();
+        double mapeTest = report.getTest().getMape();
+        double sMape = report.getOverFit();
+
+        String name = String.valueOf(index);
+        if (writeSnapshots) {
+            writer.writeModel(model, name);
+        }
+        if (resultStore != null) {
+            resultStore.write(index, timeSeriesCalc, mapeTrain, mapeTest, sMape, description);
+            return;
+        }
         writer.writeTs(timeSeriesCalc, model.getOrder(), name);
+        writer.writeParams(mapeTrain, mapeTest, sMape, description, name);
+    }
 
-        double mapeTrain = model.getTrainMape();
-        double mapeTest = model.getTestMape();
-        double sMape = Quality.sMape(mapeTrain, mapeTest);
+    /**
+     * Получить описание ансамбля или автономной модели.
+     *
+     * @param model модель.
+     * @return описание.
+     */
+    private String getDescription(Model model) {
+        if (model instanceof WeightedAverageEnsemble) {
+            return getDescription((Ensemble) model, "средневзвешенный");
+        } else if (model instanceof NeuralEnsemble) {
+            return getDescription((Ensemble) model, "нейросетевой");
+        } else if (model instanceof StackingEnsemble) {
+            StackingEnsemble.Method method = ((StackingEnsemble) model).getMethod();
+            return getDescription((Ensemble) model, (method == StackingEnsemble.Method.NNLS) ? "неотрицательный стекинг" : "гребневый стекинг");
+        }
+        StringBuilder descriptionBuilder = new StringBuilder();
+        descriptionBuilder.append("Тип ансамбля: автономная модель.  Включает модели: ");
+        descriptionBuilder.append(getModelDescription(model));
+        return descriptionBuilder.toString();
+    }
 
-        writer.writeParams(mapeTrain, mapeTest, sMape, description, name);
+    /**
+     * Получить описание ансамбля.
+     *
+     * @param ensemble ансамбль.
+     * @param type     тип ансамбля.
+     * @return описание.
+     */
+    private String getDescription(Ensemble ensemble, String type) {
+        StringBuilder descriptionBuilder = new StringBuilder();
+        descriptionBuilder.append("Тип ансамбля: " + type + ". Включает модели: ");
+        for (Model model : ensemble.getModels()) {
+            descriptionBuilder.append(getModelDescription(model));
+        }
+        return descriptionBuilder.toString();
     }
 
     /**
@@ -0,0 +1,28 @@
+import domain.exceptions.*;
+
+import java.io.IOException;
+
+/**
+ * Полный перебор всех подмножеств из двух и более моделей.
+ * Подмножества перебираются в порядке таблицы перебора: строка i - двоичная запись числа i,
+ * первый символ которой соответствует первой модели. Подходит только для небольшого количества моделей.
+ */
+public class ExhaustiveSearch implements EnsembleSearch {
+    @Override
+    public void search(int size, SubsetEvaluator evaluator, SearchBudget budget) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
+        if (size > MAX_MODELS) {
+            throw new IllegalArgumentException("Полный перебор возможен не более чем для " + MAX_MODELS + " моделей");
+        }
+        long tableSize = 1L << size;
+        for (long row = 1; row < tableSize; ++row) {
+            long subset = Long.reverse(row) >>> (Long.SIZE - size);
+            if (Long.bitCount(subset) < 2) {
+                continue;
+            }
+            if (!budget.tryAcquire()) {
+                return;
+            }
+            evaluator.evaluate(subset);
+        }
+    }
+}
@@ -0,0 +1,486 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import domain.Model;
+import domain.TimeSeries;
+import domain.metrics.Metrics;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Локальный сервер прогнозов: обученные модели рядов держатся в памяти и отвечают без повторного обучения.
+ * <ul>
+ * <li>GET /series/{id}/forecast - прогноз;</li>
+ * <li>POST /series/{id}/observations, тело {"values": [...]} - добавить значения ряда (модель догоняет ряд
+ * без переобучения), ответ - новый прогноз;</li>
+ * <li>POST /series/{id}/refit - переобучить модель в фоне (ответ 202 сразу);</li>
+ * <li>GET /series/{id}/status - состояние модели: идет ли переобучение и ошибка последнего переобучения;</li>
+ * <li>GET /metrics - замеры этапов расчета в текстовом формате Prometheus (см. {@link Metrics}).</li>
+ * </ul>
+ * Прогнозы и значения передаются без нормализации. Модели хранятся в LRU-кэше ограниченного размера,
+ * при промахе модель загружается из {@link ModelStore}. Чтения модели ряда идут параллельно;
+ * переобучение строит новую модель без блокировки и подменяет старую под блокировкой записи,
+ * предварительно учтя значения, добавленные за время обучения.
+ */
+@ParametersAreNonnullByDefault
+public class ForecastServer implements AutoCloseable {
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_PORT = 8085;
+    private static final int DEFAULT_CAPACITY = 1000;
+    private static final Pattern PATH = Pattern.compile("^/series/([A-Za-z0-9_.-]+)/(forecast|observations|refit|status)$");
+    private static final Logger LOGGER = Logger.getLogger(ForecastServer.class.getName());
+
+    private final Gson gson = new Gson();
+    private final ModelStore store;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService refitExecutor;
+    /**
+     * Модели рядов в порядке последнего обращения.
+     */
+    private final Map<String, Entry> cache;
+
+    /**
+     * @param address  адрес сервера (порт 0 - свободный порт).
+     * @param store    хранилище рядов и моделей.
+     * @param capacity максимальное количество моделей в памяти.
+     * @throws IOException при открытии порта.
+     */
+    public ForecastServer(InetSocketAddress address, ModelStore store, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер кэша моделей должен быть положительным");
+        }
+        this.store = store;
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        requestExecutor = Executors.newFixedThreadPool(CORES, new DaemonThreadFactory("forecast-request-"));
+        refitExecutor = Executors.newFixedThreadPool(Math.max(1, CORES / 2), new DaemonThreadFactory("forecast-refit-"));
+        server = HttpServer.create(address, 0);
+        server.setExecutor(requestExecutor);
+        server.createContext("/series/", this::handle);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Запустить сервер.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Получить адрес сервера.
+     *
+     * @return адрес.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        requestExecutor.shutdownNow();
+        refitExecutor.shutdownNow();
+    }
+
+    /**
+     * Получить прогноз ряда.
+     *
+     * @param id идентификатор ряда.
+     * @return прогноз или null, если ряда нет.
+     * @throws Exception при загрузке модели.
+     */
+    @Nullable
+    public double[] forecast(String id) throws Exception {
+        Entry entry = getEntry(id);
+        return (entry != null) ? entry.forecast() : null;
+    }
+
+    /**
+     * Добавить значения ряда.
+     *
+     * @param id     идентификатор ряда.
+     * @param values значения.
+     * @return прогноз после добавления или null, если ряда нет.
+     * @throws Exception при загрузке модели или записи значений.
+     */
+    @Nullable
+    public double[] observe(String id, double[] values) throws Exception {
+        Entry entry = getEntry(id);
+        return (entry != null) ? entry.observe(values) : null;
+    }
+
+    /**
+     * Запустить переобучение модели ряда в фоне. Повторный запрос во время переобучения игнорируется.
+     *
+     * @param id идентификатор ряда.
+     * @return есть ли ряд.
+     * @throws Exception при загрузке модели.
+     */
+    public boolean refit(String id) throws Exception {
+        Entry entry = getEntry(id);
+        if (entry == null) {
+            return false;
+        }
+        entry.scheduleRefit();
+        return true;
+    }
+
+    /**
+     * Получить состояние модели ряда.
+     *
+     * @param id идентификатор ряда.
+     * @return состояние или null, если ряда нет.
+     * @throws Exception при загрузке модели.
+     */
+    @Nullable
+    public Status status(String id) throws Exception {
+        Entry entry = getEntry(id);
+        return (entry != null) ? entry.status() : null;
+    }
+
+    /**
+     * Получить загруженную модель ряда из кэша или загрузить ее.
+     *
+     * @param id идентификатор ряда.
+     * @return запись кэша или null, если ряда нет.
+     */
+    @Nullable
+    private Entry getEntry(String id) throws Exception {
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(id);
+            if (entry == null) {
+                entry = new Entry(id);
+                cache.put(id, entry);
+            }
+        }
+        if (entry.load()) {
+            return entry;
+        }
+        synchronized (cache) {
+            cache.remove(id, entry);
+        }
+        return null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Matcher matcher = PATH.matcher(exchange.getRequestURI().getPath());
+            if (!matcher.matches()) {
+                respond(exchange, 404, error("Неизвестный запрос"));
+                return;
+            }
+            String id = matcher.group(1);
+            String action = matcher.group(2);
+            String method = exchange.getRequestMethod();
+            if (action.equals("forecast") && method.equals("GET")) {
+                respondForecast(exchange, id, forecast(id));
+            } else if (action.equals("observations") && method.equals("POST")) {
+                double[] values;
+                try (InputStreamReader body = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                    Observations observations = gson.fromJson(body, Observations.class);
+                    values = (observations != null) ? observations.values : null;
+                } catch (JsonParseException e) {
+                    values = null;
+                }
+                if (values == null) {
+                    respond(exchange, 400, error("Ожидается {\"values\": [...]}"));
+                    return;
+                }
+                respondForecast(exchange, id, observe(id, values));
+            } else if (action.equals("refit") && method.equals("POST")) {
+                if (!refit(id)) {
+                    respond(exchange, 404, error("Ряд не найден: " + id));
+                    return;
+                }
+                JsonObject response = new JsonObject();
+                response.addProperty("id", id);
+                response.addProperty("refitting", true);
+                respond(exchange, 202, response);
+            } else if (action.equals("status") && method.equals("GET")) {
+                Status status = status(id);
+                if (status == null) {
+                    respond(exchange, 404, error("Ряд не найден: " + id));
+                    return;
+                }
+                JsonObject response = gson.toJsonTree(status).getAsJsonObject();
+                response.addProperty("id", id);
+                respond(exchange, 200, response);
+            } else {
+                respond(exchange, 405, error("Метод не поддерживается: " + method));
+            }
+        } catch (Exception e) {
+            respond(exchange, 500, error(String.valueOf(e)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder text = new StringBuilder();
+            Metrics.getRegistry().writePrometheus(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream stream = exchange.getResponseBody()) {
+                stream.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respondForecast(HttpExchange exchange, String id, @Nullable double[] forecast) throws IOException {
+        if (forecast == null) {
+            respond(exchange, 404, error("Ряд не найден: " + id));
+            return;
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("id", id);
+        response.add("forecast", gson.toJsonTree(forecast));
+        respond(exchange, 200, response);
+    }
+
+    private void respond(HttpExchange exchange, int status, JsonObject response) throws IOException {
+        byte[] body = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(body);
+        }
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject response = new JsonObject();
+        response.addProperty("error", message);
+        return response;
+    }
+
+    /**
+     * Запуск сервера из командной строки.
+     *
+     * @param args каталог рядов (см. {@link DirectoryModelStore}), порт (по умолчанию 8085),
+     *             размер кэша моделей (по умолчанию 1000). Сервер слушает только локальный адрес.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Не задан каталог рядов");
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CAPACITY;
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        new ForecastServer(address, new DirectoryModelStore(Paths.get(args[0])), capacity).start();
+    }
+
+    /**
+     * Тело запроса добавления значений.
+     */
+    private static class Observations {
+        double[] values;
+    }
+
+    /**
+     * Состояние модели ряда.
+     */
+    public static final class Status {
+        private final int size;
+        private final boolean refitting;
+        @Nullable
+        private final String lastRefitError;
+
+        Status(int size, boolean refitting, @Nullable String lastRefitError) {
+            this.size = size;
+            this.refitting = refitting;
+            this.lastRefitError = lastRefitError;
+        }
+
+        /**
+         * @return длина ряда модели.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return идет ли переобучение.
+         */
+        public boolean isRefitting() {
+            return refitting;
+        }
+
+        /**
+         * @return ошибка последнего переобучения или null, если оно прошло успешно (или не запускалось).
+         */
+        @Nullable
+        public String getLastRefitError() {
+            return lastRefitError;
+        }
+    }
+
+    /**
+     * Модель ряда в кэше.
+     */
+    private class Entry {
+        private final String id;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final AtomicBoolean refitting = new AtomicBoolean();
+        /**
+         * Модель (null - еще не загружена).
+         */
+        private Model model;
+        /**
+         * Максимум ряда, на который нормализованы значения модели.
+         */
+        private double scale;
+        /**
+         * Ряда нет в хранилище.
+         */
+        private boolean missing;
+        /**
+         * Ошибка последнего переобучения (null - переобучение прошло успешно или не запускалось).
+         */
+        private volatile String lastRefitError;
+
+        Entry(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Загрузить модель при первом обращении.
+         *
+         * @return есть ли ряд.
+         */
+        boolean load() throws Exception {
+            lock.readLock().lock();
+            try {
+                if (model != null || missing) {
+                    return !missing;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            lock.writeLock().lock();
+            try {
+                if (model == null && !missing) {
+                    Model loaded = store.load(id);
+                    if (loaded == null) {
+                        missing = true;
+                    } else {
+                        scale = loaded.getTimeSeries().getMaxValue();
+                        model = loaded;
+                    }
+                }
+                return !missing;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        double[] forecast() {
+            lock.readLock().lock();
+            try {
+                return denormalize(model.getForecast());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        double[] observe(double[] values) throws Exception {
+            lock.writeLock().lock();
+            try {
+                store.append(id, values);
+                for (double value : values) {
+                    model.update(value / scale);
+                }
+                return denormalize(model.getForecast());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        Status status() {
+            lock.readLock().lock();
+            try {
+                return new Status(model.getTimeSeries().getSize(), refitting.get(), lastRefitError);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void scheduleRefit() {
+            if (refitting.compareAndSet(false, true)) {
+                refitExecutor.execute(() -> {
+                    try {
+                        refit();
+                        lastRefitError = null;
+                    } catch (Exception e) {
+                        // Прежняя модель продолжает обслуживать запросы
+                        lastRefitError = String.valueOf(e);
+                        Metrics.increment(Metrics.Counter.MODEL_REFIT_FAILURES);
+                        LOGGER.log(Level.WARNING, "Ошибка переобучения модели ряда " + id, e);
+                    } finally {
+                        refitting.set(false);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Переобучить модель без блокировки и подменить прежнюю.
+         */
+        private void refit() throws Exception {
+            Model fitted = store.refit(id);
+            if (fitted == null) {
+                return;
+            }
+            TimeSeries series = fitted.getTimeSeries();
+            double fittedScale = series.getMaxValue();
+            lock.writeLock().lock();
+            try {
+                TimeSeries current = model.getTimeSeries();
+                for (int t = series.getSize() + 1; t <= current.getSize(); ++t) {
+                    fitted.update(current.getTimeValue(t) * scale / fittedScale);
+                }
+                model = fitted;
+                scale = fittedScale;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private double[] denormalize(double[] forecast) {
+            double[] result = new double[forecast.length];
+            for (int i = 0; i < forecast.length; ++i) {
+                result[i] = forecast[i] * scale;
+            }
+            return result;
+        }
+    }
+}
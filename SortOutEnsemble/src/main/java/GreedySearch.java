@@ -0,0 +1,51 @@
+import domain.exceptions.*;
+
+import java.io.IOException;
+
+/**
+ * Жадный последовательный выбор моделей.
+ * Начинает с лучшей по отдельности модели и на каждом шаге добавляет модель, сильнее всего уменьшающую ошибку.
+ * Перебор прекращается, когда добавление любой модели не улучшает ансамбль.
+ */
+public class GreedySearch implements EnsembleSearch {
+    @Override
+    public void search(int size, SubsetEvaluator evaluator, SearchBudget budget) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
+        if (size > MAX_MODELS) {
+            throw new IllegalArgumentException("Перебор возможен не более чем для " + MAX_MODELS + " моделей");
+        }
+        long current = 0;
+        double currentScore = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; ++i) {
+            double score = evaluator.evaluate(1L << i);
+            if (score < currentScore || current == 0) {
+                current = 1L << i;
+                currentScore = score;
+            }
+        }
+
+        while (Long.bitCount(current) < size) {
+            long best = 0;
+            double bestScore = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < size; ++i) {
+                if ((current & (1L << i)) != 0) {
+                    continue;
+                }
+                if (!budget.tryAcquire()) {
+                    return;
+                }
+                long candidate = current | (1L << i);
+                double score = evaluator.evaluate(candidate);
+                if (best == 0 || score < bestScore) {
+                    best = candidate;
+                    bestScore = score;
+                }
+            }
+            // ансамбль из одной модели не строится, поэтому первая пара принимается всегда
+            if (Long.bitCount(current) > 1 && !(bestScore < currentScore)) {
+                return;
+            }
+            current = best;
+            currentScore = bestScore;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+import domain.Model;
+import domain.models.single.Fuzzy;
+import domain.metrics.Metrics;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельное обучение моделей на ограниченном пуле потоков.
+ * Для каждого типа модели задается собственное ограничение параллельности:
+ * нейронные модели уже используют нативные потоки ND4J, поэтому их по умолчанию обучается меньше одновременно.
+ * Нечеткие модели, реализация которых предпочитает пакетное обучение (удаленный сервис),
+ * обучаются одним пакетом через {@link Fuzzy#fitAll(List)}; если пакет не удалось обучить, модели обучаются по одной.
+ * Ошибки обучения собираются в список, переданный в {@link #fit(Map, List)}, поэтому планировщик можно
+ * использовать для нескольких рядов одновременно.
+ */
+@ParametersAreNonnullByDefault
+public class ModelFitScheduler implements AutoCloseable {
+    /**
+     * Количество доступных ядер.
+     */
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Пул потоков обучения.
+     */
+    private final ExecutorService executor;
+    /**
+     * Нужно ли останавливать пул при закрытии планировщика.
+     */
+    private final boolean ownExecutor;
+    /**
+     * Ограничение количества одновременно обучаемых моделей каждого типа.
+     */
+    private final Map<SortOutEnsemble.Models, Integer> parallelism;
+
+    public ModelFitScheduler() {
+        this(Executors.newFixedThreadPool(CORES, new DaemonThreadFactory("model-fit-")), true);
+    }
+
+    /**
+     * @param executor внешний пул потоков, планировщик его не останавливает.
+     */
+    public ModelFitScheduler(ExecutorService executor) {
+        this(executor, false);
+    }
+
+    private ModelFitScheduler(ExecutorService executor, boolean ownExecutor) {
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.parallelism = new EnumMap<>(SortOutEnsemble.Models.class);
+        parallelism.put(SortOutEnsemble.Models.ARIMA, CORES);
+        parallelism.put(SortOutEnsemble.Models.NEURAL, Math.max(1, CORES / 4));
+        parallelism.put(SortOutEnsemble.Models.FUZZY, CORES);
+    }
+
+    /**
+     * Задать количество одновременно обучаемых моделей типа.
+     *
+     * @param model тип модели.
+     * @param limit количество одновременно обучаемых моделей.
+     */
+    public void setParallelism(SortOutEnsemble.Models model, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Ограничение параллельности должно быть положительным");
+        }
+        parallelism.put(model, limit);
+    }
+
+    /**
+     * Получить количество одновременно обучаемых моделей типа.
+     *
+     * @param model тип модели.
+     * @return количество одновременно обучаемых моделей.
+     */
+    public int getParallelism(SortOutEnsemble.Models model) {
+        return parallelism.get(model);
+    }
+
+    /**
+     * Обучить модели.
+     * Модели, при обучении которых возникла ошибка, исключаются из результата и попадают в список ошибок.
+     *
+     * @param candidates модели по типам.
+     * @param failures   список ошибок обучения этого вызова (должен допускать добавление из нескольких потоков).
+     * @return обученные модели по типам в исходном порядке.
+     */
+    public Map<SortOutEnsemble.Models, List<Model>> fit(Map<SortOutEnsemble.Models, List<Model>> candidates, List<Failure> failures) {
+        Map<SortOutEnsemble.Models, Model[]> fited = new EnumMap<>(SortOutEnsemble.Models.class);
+        List<Future<?>> workers = new ArrayList<>();
+        List<SortOutEnsemble.Models> workerTypes = new ArrayList<>();
+        for (Map.Entry<SortOutEnsemble.Models, List<Model>> entry : candidates.entrySet()) {
+            SortOutEnsemble.Models type = entry.getKey();
+            List<Model> models = entry.getValue();
+            Model[] results = new Model[models.size()];
+            fited.put(type, results);
+
+            List<Integer> single = new ArrayList<>(models.size());
+            List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < models.size(); ++i) {
+                Model model = models.get(i);
+                boolean batched = model instanceof Fuzzy && ((Fuzzy) model).isBatchPreferred();
+                (batched ? batch : single).add(i);
+            }
+            if (!batch.isEmpty()) {
+                workers.add(executor.submit(() -> fitBatch(type, models, batch, results, failures)));
+                workerTypes.add(type);
+            }
+
+            AtomicInteger next = new AtomicInteger();
+            int count = Math.min(getParallelism(type), single.size());
+            for (int i = 0; i < count; ++i) {
+                workers.add(executor.submit(() -> {
+                    int position;
+                    while ((position = next.getAndIncrement()) < single.size() && !Thread.currentThread().isInterrupted()) {
+                        int index = single.get(position);
+                        Model model = models.get(index);
+                        if (fit(type, model, failures)) {
+                            results[index] = model;
+                        }
+                    }
+                }));
+                workerTypes.add(type);
+            }
+        }
+        await(workers, workerTypes, failures);
+
+        Map<SortOutEnsemble.Models, List<Model>> result = new EnumMap<>(SortOutEnsemble.Models.class);
+        for (Map.Entry<SortOutEnsemble.Models, Model[]> entry : fited.entrySet()) {
+            List<Model> models = new ArrayList<>(entry.getValue().length);
+            for (Model model : entry.getValue()) {
+                if (model != null) {
+                    models.add(model);
+                }
+            }
+            result.put(entry.getKey(), models);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Обучить одну модель, сохранив ошибку обучения.
+     * Ошибки виртуальной машины и библиотек (например, нативных вызовов ND4J) тоже перехватываются,
+     * чтобы поток обучения продолжил обучать остальные модели.
+     *
+     * @param type     тип модели.
+     * @param model    модель.
+     * @param failures список ошибок обучения.
+     * @return была ли модель обучена.
+     */
+    private boolean fit(SortOutEnsemble.Models type, Model model, List<Failure> failures) {
+        try {
+            long start = Metrics.start();
+            model.fit();
+            Metrics.stop(Metrics.Stage.MODEL_FIT, model, start);
+            return true;
+        } catch (Exception | Error e) {
+            Metrics.increment(Metrics.Counter.MODEL_FIT_FAILURES);
+            failures.add(new Failure(type, model.getOrder(), e));
+            return false;
+        }
+    }
+
+    /**
+     * Обучить нечеткие модели одним пакетом. Если пакет не удалось обучить, модели обучаются по одной,
+     * и ошибки сохраняются для каждой модели отдельно.
+     *
+     * @param type     тип модели.
+     * @param models   модели типа.
+     * @param indexes  индексы нечетких моделей пакета.
+     * @param results  обученные модели по индексам.
+     * @param failures список ошибок обучения.
+     */
+    private void fitBatch(SortOutEnsemble.Models type, List<Model> models, List<Integer> indexes, Model[] results, List<Failure> failures) {
+        List<Fuzzy> batch = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            batch.add((Fuzzy) models.get(index));
+        }
+        try {
+            long start = Metrics.start();
+            Fuzzy.fitAll(batch);
+            Metrics.stop(Metrics.Stage.MODEL_FIT, batch.get(0), start);
+            for (int index : indexes) {
+                results[index] = models.get(index);
+            }
+            return;
+        } catch (Exception e) {
+            // пакет обучается заново по одной модели, чтобы ошибка была привязана к модели
+        }
+        for (int index : indexes) {
+            Model model = models.get(index);
+            if (!Thread.currentThread().isInterrupted() && fit(type, model, failures)) {
+                results[index] = model;
+            }
+        }
+    }
+
+    /**
+     * Дождаться завершения обучения.
+     *
+     * @param workers     задачи обучения.
+     * @param workerTypes типы моделей задач обучения.
+     * @param failures    список ошибок обучения.
+     */
+    private static void await(List<Future<?>> workers, List<SortOutEnsemble.Models> workerTypes, List<Failure> failures) {
+        for (int i = 0; i < workers.size(); ++i) {
+            try {
+                workers.get(i).get();
+            } catch (InterruptedException e) {
+                for (Future<?> other : workers) {
+                    other.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                failures.add(new Failure(workerTypes.get(i), 0, e.getCause()));
+            }
+        }
+    }
+
+    /**
+     * Ошибка обучения модели.
+     */
+    public static class Failure {
+        private final SortOutEnsemble.Models model;
+        private final int order;
+        private final Throwable cause;
+
+        Failure(SortOutEnsemble.Models model, int order, Throwable cause) {
+            this.model = model;
+            this.order = order;
+            this.cause = cause;
+        }
+
+        /**
+         * Получить тип модели.
+         *
+         * @return тип модели.
+         */
+        public SortOutEnsemble.Models getModel() {
+            return model;
+        }
+
+        /**
+         * Получить порядок модели.
+         *
+         * @return порядок модели.
+         */
+        public int getOrder() {
+            return order;
+        }
+
+        /**
+         * Получить причину ошибки.
+         *
+         * @return причина ошибки.
+         */
+        public Throwable getCause() {
+            return cause;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import domain.Model;
+import domain.TimeSeries;
+import domain.exceptions.InvalidOrderException;
+import domain.metrics.Metrics;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Предварительный отбор моделей последовательным делением (successive halving).
+ * <p>
+ * На каждом из rungs шагов для каждого оставшегося кандидата обучается пробная модель того же типа и порядка
+ * на последних значениях ряда: на первом шаге - на доле 1/reduction^rungs ряда, на каждом следующем -
+ * на доле в reduction раз большей. Кандидаты каждого типа ранжируются по MAPE пробных моделей на тестовой
+ * выборке, остается 1/reduction лучших (с округлением вверх). Полностью обучаются только кандидаты,
+ * прошедшие все шаги. Шаг пропускается для типа, если пробный ряд слишком короток для наибольшего
+ * порядка его кандидатов. Пробная модель, которую не удалось создать, обучить или оценить, считается худшей;
+ * такие пробные модели учитываются счетчиком {@link Metrics.Counter#PROBE_FIT_FAILURES}.
+ */
+@ParametersAreNonnullByDefault
+public class ModelScreening {
+    /**
+     * Системное свойство: количество шагов отбора (при делении пополам).
+     */
+    public static final String PROPERTY = "models.screening";
+
+    /**
+     * Создание пробной модели.
+     */
+    public interface ProbeFactory {
+        /**
+         * @param type   тип модели.
+         * @param order  порядок модели.
+         * @param series пробный временной ряд.
+         * @return необученная модель.
+         * @throws InvalidOrderException некорректный порядок модели.
+         */
+        Model create(SortOutEnsemble.Models type, int order, TimeSeries series) throws InvalidOrderException;
+    }
+
+    private final int rungs;
+    private final int reduction;
+
+    /**
+     * @param rungs     количество шагов отбора.
+     * @param reduction во сколько раз уменьшается количество кандидатов и увеличивается пробный ряд за шаг.
+     */
+    public ModelScreening(int rungs, int reduction) {
+        if (rungs < 1 || reduction < 2) {
+            throw new IllegalArgumentException("Некорректные параметры отбора: " + rungs + " шагов, сокращение " + reduction);
+        }
+        this.rungs = rungs;
+        this.reduction = reduction;
+    }
+
+    /**
+     * Получить отбор из системного свойства {@link #PROPERTY}.
+     *
+     * @return отбор делением пополам или null, если свойство не задано.
+     */
+    @Nullable
+    public static ModelScreening fromProperty() {
+        Integer rungs = Integer.getInteger(PROPERTY);
+        return (rungs == null || rungs == 0) ? null : new ModelScreening(rungs, 2);
+    }
+
+    /**
+     * Отобрать кандидатов для полного обучения.
+     *
+     * @param candidates   необученные модели по типам.
+     * @param timeSeries   временной ряд.
+     * @param trainPercent процент обучающей выборки.
+     * @param testPercent  процент тестовой выборки.
+     * @param factory      создание пробных моделей.
+     * @param scheduler    планировщик обучения пробных моделей.
+     * @return отобранные модели по типам в исходном порядке.
+     */
+    public Map<SortOutEnsemble.Models, List<Model>> screen(Map<SortOutEnsemble.Models, List<Model>> candidates, TimeSeries timeSeries,
+                                                           int trainPercent, int testPercent, ProbeFactory factory, ModelFitScheduler scheduler) {
+        Map<SortOutEnsemble.Models, List<Model>> survivors = new EnumMap<>(SortOutEnsemble.Models.class);
+        survivors.putAll(candidates);
+        for (int rung = 0; rung < rungs; ++rung) {
+            int length = probeLength(timeSeries.getSize(), rungs - rung);
+            TimeSeries probeSeries = timeSeries.subSeries(timeSeries.getEndTime() - length + 1, timeSeries.getEndTime());
+
+            Map<SortOutEnsemble.Models, List<Model>> probes = new EnumMap<>(SortOutEnsemble.Models.class);
+            Map<Model, Model> probeOf = new IdentityHashMap<>();
+            for (Map.Entry<SortOutEnsemble.Models, List<Model>> entry : survivors.entrySet()) {
+                List<Model> models = entry.getValue();
+                if (models.size() < 2 || !fits(models, length, trainPercent, testPercent)) {
+                    continue;
+                }
+                List<Model> typeProbes = new ArrayList<>(models.size());
+                for (Model model : models) {
+                    try {
+                        Model probe = factory.create(entry.getKey(), model.getOrder(), probeSeries);
+                        probeOf.put(model, probe);
+                        typeProbes.add(probe);
+                    } catch (InvalidOrderException e) {
+                        // без пробной модели кандидат считается худшим
+                        Metrics.increment(Metrics.Counter.PROBE_FIT_FAILURES);
+                    }
+                }
+                probes.put(entry.getKey(), typeProbes);
+            }
+            if (probes.isEmpty()) {
+                continue;
+            }
+            List<ModelFitScheduler.Failure> failures = Collections.synchronizedList(new ArrayList<>());
+            scheduler.fit(probes, failures);
+            Metrics.increment(Metrics.Counter.PROBE_FIT_FAILURES, failures.size());
+
+            for (SortOutEnsemble.Models type : probes.keySet()) {
+                List<Model> models = survivors.get(type);
+                double[] scores = new double[models.size()];
+                for (int i = 0; i < scores.length; ++i) {
+                    scores[i] = score(probeOf.get(models.get(i)));
+                }
+                List<Model> kept = keepBest(models, scores, (models.size() + reduction - 1) / reduction);
+                Metrics.increment(Metrics.Counter.MODELS_SCREENED_OUT, models.size() - kept.size());
+                survivors.put(type, kept);
+            }
+        }
+        return survivors;
+    }
+
+    /**
+     * Длина пробного ряда: доля 1/reduction^power ряда.
+     */
+    private int probeLength(int size, int power) {
+        double length = size;
+        for (int i = 0; i < power; ++i) {
+            length /= reduction;
+        }
+        return (int) Math.ceil(length);
+    }
+
+    /**
+     * Достаточно ли длины пробного ряда для оценки моделей всех порядков.
+     */
+    private static boolean fits(List<Model> models, int length, int trainPercent, int testPercent) {
+        int order = 0;
+        for (Model model : models) {
+            order = Math.max(order, model.getOrder());
+        }
+        return partSize(length, trainPercent) > order && partSize(length, testPercent) > order;
+    }
+
+    private static int partSize(int size, int percent) {
+        return (int) (size * ((double) percent / 100));
+    }
+
+    /**
+     * Ошибка пробной модели на тестовой выборке пробного ряда.
+     */
+    private static double score(@Nullable Model probe) {
+        if (probe == null || !probe.isFit()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        try {
+            double mape = probe.getTestMape();
+            return Double.isNaN(mape) ? Double.POSITIVE_INFINITY : mape;
+        } catch (Exception e) {
+            Metrics.increment(Metrics.Counter.PROBE_FIT_FAILURES);
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Оставить count моделей с наименьшей ошибкой (при равной - раньше в списке), сохранив исходный порядок.
+     */
+    static List<Model> keepBest(List<Model> models, double[] scores, int count) {
+        Integer[] indices = new Integer[models.size()];
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, (a, b) -> Double.compare(scores[a], scores[b]));
+        boolean[] keep = new boolean[models.size()];
+        for (int i = 0; i < count; ++i) {
+            keep[indices[i]] = true;
+        }
+        List<Model> kept = new ArrayList<>(count);
+        for (int i = 0; i < keep.length; ++i) {
+            if (keep[i]) {
+                kept.add(models.get(i));
+            }
+        }
+        return kept;
+    }
+}
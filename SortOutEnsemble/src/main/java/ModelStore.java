@@ -0,0 +1,50 @@
+import domain.Model;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+
+/**
+ * Хранилище рядов и моделей для сервера прогнозов.
+ * Ряд загруженной модели нормализован делением на свой максимум ({@link domain.TimeSeries#getMaxValue()}).
+ */
+@ParametersAreNonnullByDefault
+public interface ModelStore {
+    /**
+     * Загрузить обученную модель ряда (из снимка или обучив заново по сохраненным значениям ряда).
+     *
+     * @param id идентификатор ряда.
+     * @return обученная модель или null, если ряда нет.
+     * @throws Exception при чтении или обучении модели.
+     */
+    @Nullable
+    Model load(String id) throws Exception;
+
+    /**
+     * Обучить модель ряда заново по сохраненным значениям ряда (снимок не используется).
+     *
+     * @param id идентификатор ряда.
+     * @return обученная модель или null, если ряда нет.
+     * @throws Exception при чтении или обучении модели.
+     */
+    @Nullable
+    Model refit(String id) throws Exception;
+
+    /**
+     * Сохранить новые значения ряда.
+     *
+     * @param id     идентификатор ряда.
+     * @param values значения (без нормализации).
+     * @throws IOException при записи.
+     */
+    void append(String id, double[] values) throws IOException;
+
+    /**
+     * Сохранить снимок обученной модели ряда.
+     *
+     * @param id    идентификатор ряда.
+     * @param model обученная модель.
+     * @throws IOException при записи.
+     */
+    void save(String id, Model model) throws IOException;
+}
@@ -1,35 +1,65 @@
+import domain.Model;
+import domain.ModelSnapshot;
 import domain.TimeSeries;
+import domain.exceptions.InvalidSnapshotException;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.text.DecimalFormatSymbols;
-import java.util.Locale;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class Reader {
-    private final static String DIR = "input\\";
+    private final static String DIR = "input";
     private final static String TS_FILE_NAME = "ts.csv";
     private final static String PARAMS_FILE_NAME = "params.csv";
     private final static String MODEL_FILE_NAME = "model.csv";
+    private final static String SNAPSHOT_FILE_NAME = "model.bin";
+    /**
+     * Кодировка текстовых файлов: описание ансамбля берется из файла параметров, записанного {@link Writer}.
+     */
+    private static final Charset CHARSET = Charset.forName("windows-1251");
+
+    /**
+     * Каталог входных файлов.
+     */
+    private final Path dir;
+
+    public Reader() {
+        this(Paths.get(DIR));
+    }
+
+    /**
+     * @param dir каталог входных файлов ряда.
+     */
+    public Reader(Path dir) {
+        this.dir = dir;
+    }
 
     /**
      * Чтение временного ряда.
+     * Файл разбирается потоково, см. {@link TimeSeriesParser}.
      *
      * @return временной ряд.
-     * @throws IOException возникает при чтении файла.
+     * @throws TimeSeriesParseException файл содержит некорректные данные (в сообщении указана позиция ошибки).
+     * @throws IOException              возникает при чтении файла.
      */
     public TimeSeries readTimeSeries() throws IOException {
-        File file = new File(DIR, TS_FILE_NAME);
-        String inputString = read(file);
-        String[] values = inputString.split(";");
-        TimeSeries timeSeries = new TimeSeries();
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.getDefault());
-        for (String value : values) {
-            value = value.replaceAll(",", ".");
-            timeSeries.addTimeValue(Double.parseDouble(value));
-        }
-        return timeSeries;
+        return new TimeSeriesParser().parse(dir.resolve(TS_FILE_NAME));
+    }
+
+    /**
+     * Проверить наличие файла временного ряда.
+     *
+     * @return есть ли файл ряда.
+     */
+    public boolean hasTimeSeries() {
+        return Files.isRegularFile(dir.resolve(TS_FILE_NAME));
     }
 
     /**
@@ -39,7 +69,7 @@ public class Reader {
      * @throws IOException возникает при чтении файла.
      */
     public String[] readParams() throws IOException {
-        File file = new File(DIR, PARAMS_FILE_NAME);
+        File file = dir.resolve(PARAMS_FILE_NAME).toFile();
         String inputString = read(file);
         return inputString.split(";");
     }
@@ -51,10 +81,34 @@ public class Reader {
      * @throws IOException при чтении файла.
      */
     public String readDescription() throws IOException {
-        File file = new File(DIR, MODEL_FILE_NAME);
+        File file = dir.resolve(MODEL_FILE_NAME).toFile();
         return read(file);
     }
 
+    /**
+     * Проверить наличие снимка обученного ансамбля.
+     *
+     * @return есть ли снимок.
+     */
+    public boolean hasModelSnapshot() {
+        return Files.isRegularFile(dir.resolve(SNAPSHOT_FILE_NAME));
+    }
+
+    /**
+     * Чтение снимка обученного ансамбля (см. {@link ModelSnapshot}).
+     *
+     * @param timeSeries временной ряд.
+     * @return обученный ансамбль.
+     * @throws InvalidSnapshotException снимок некорректен или записан для другого временного ряда.
+     * @throws IOException              при чтении файла.
+     */
+    public Model readModelSnapshot(TimeSeries timeSeries) throws InvalidSnapshotException, IOException {
+        Path path = dir.resolve(SNAPSHOT_FILE_NAME);
+        try (InputStream stream = Files.newInputStream(path)) {
+            return ModelSnapshot.read(stream, timeSeries);
+        }
+    }
+
     /**
      * Чтение строки из файла.
      *
@@ -63,12 +117,13 @@ public class Reader {
      * @throws IOException возникает при чтении файла.
      */
     private String read(File file) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
-        String s;
-        String inputString = "";
-        while ((s = br.readLine()) != null) {
-            inputString += s;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET))) {
+            String s;
+            StringBuilder inputString = new StringBuilder();
+            while ((s = br.readLine()) != null) {
+                inputString.append(s);
+            }
+            return inputString.toString();
         }
-        return inputString;
     }
 }
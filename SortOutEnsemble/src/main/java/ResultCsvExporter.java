@@ -0,0 +1,43 @@
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Выгрузка двоичного файла результатов в прежние CSV-файлы ts%n%.csv и params%n%.csv.
+ */
+@ParametersAreNonnullByDefault
+public class ResultCsvExporter {
+    private final Writer writer;
+
+    public ResultCsvExporter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Выгрузить все записи файла результатов.
+     *
+     * @param path путь к файлу результатов.
+     * @throws IOException при чтении или записи файлов.
+     */
+    public void export(Path path) throws IOException {
+        try (ResultStoreReader reader = new ResultStoreReader(path)) {
+            for (ResultStore.Entry entry : reader.getEntries()) {
+                String name = String.valueOf(entry.getIndex());
+                writer.writeTs(reader.readTimeSeries(entry), entry.getStartTime() - 1, name);
+                writer.writeParams(entry.getMapeTrain(), entry.getMapeTest(), entry.getSMape(), entry.getDescription(), name);
+            }
+        }
+    }
+
+    /**
+     * Выгрузка из командной строки.
+     *
+     * @param args путь к файлу результатов (по умолчанию файл в каталоге результатов).
+     */
+    public static void main(String[] args) throws IOException {
+        Writer writer = new Writer();
+        Path path = args.length > 0 ? Paths.get(args[0]) : writer.getResultStorePath();
+        new ResultCsvExporter(writer).export(path);
+    }
+}
@@ -0,0 +1,269 @@
+import domain.TimeSeries;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись результатов моделирования в один двоичный файл.
+ * <p>
+ * Формат (little-endian):
+ * <ul>
+ * <li>заголовок {@link #HEADER_SIZE} байт: сигнатура, версия, количество записей, резерв, смещение таблицы описаний;</li>
+ * <li>столбцы прогнозов - значения double подряд, по столбцу на модель;</li>
+ * <li>таблица описаний в конце файла: номер, метка времени первого значения, количество значений, смещение столбца,
+ * MAPE обучающей и тестовой выборок, SMAPE, длина и байты описания в UTF-8.</li>
+ * </ul>
+ * Таблица описаний и заголовок дописываются при закрытии, поэтому записи можно добавлять по мере расчета.
+ */
+@ParametersAreNonnullByDefault
+public class ResultStore implements AutoCloseable {
+    /**
+     * Сигнатура файла ("ENSR").
+     */
+    static final int MAGIC = 0x52534E45;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final List<Entry> entries = new ArrayList<>();
+    private long position;
+
+    /**
+     * @param path путь к файлу результатов (перезаписывается).
+     * @throws IOException при записи в файл.
+     */
+    public ResultStore(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        position = HEADER_SIZE;
+        writeHeader(0);
+    }
+
+    /**
+     * Записать результаты модели.
+     *
+     * @param index       номер модели.
+     * @param timeSeries  расчетный временной ряд (значения модели и прогноз).
+     * @param mapeTrain   MAPE обучающей выборки.
+     * @param mapeTest    MAPE тестовой выборки.
+     * @param sMape       SMAPE.
+     * @param description описание модели.
+     * @throws IOException при записи в файл.
+     */
+    public void write(int index, TimeSeries timeSeries, double mapeTrain, double mapeTest, double sMape, String description) throws IOException {
+        long offset = position;
+        buffer.clear();
+        for (int t = timeSeries.getStartTime(); t <= timeSeries.getEndTime(); ++t) {
+            if (buffer.remaining() < Double.BYTES) {
+                flush();
+            }
+            buffer.putDouble(timeSeries.getTimeValue(t));
+        }
+        flush();
+        entries.add(new Entry(index, timeSeries.getStartTime(), timeSeries.getSize(), offset, mapeTrain, mapeTest, sMape, description));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long tableOffset = position;
+            buffer.clear();
+            for (Entry entry : entries) {
+                byte[] description = entry.getDescription().getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < Entry.FIXED_SIZE + description.length) {
+                    flush();
+                }
+                if (buffer.remaining() < Entry.FIXED_SIZE + description.length) {
+                    ByteBuffer large = ByteBuffer.allocate(Entry.FIXED_SIZE + description.length).order(ByteOrder.LITTLE_ENDIAN);
+                    entry.writeTo(large, description);
+                    large.flip();
+                    position += writeFully(large, position);
+                } else {
+                    entry.writeTo(buffer, description);
+                }
+            }
+            flush();
+            writeHeader(tableOffset);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Записать заголовок файла.
+     *
+     * @param tableOffset смещение таблицы описаний.
+     */
+    private void writeHeader(long tableOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(entries.size());
+        header.putInt(0);
+        header.putLong(tableOffset);
+        header.putLong(0);
+        header.flip();
+        writeFully(header, 0);
+    }
+
+    /**
+     * Сбросить накопленные байты в файл.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        position += writeFully(buffer, position);
+        buffer.clear();
+    }
+
+    private int writeFully(ByteBuffer source, long at) throws IOException {
+        int written = 0;
+        while (source.hasRemaining()) {
+            written += channel.write(source, at + written);
+        }
+        return written;
+    }
+
+    /**
+     * Описание записи в файле результатов.
+     */
+    public static class Entry {
+        /**
+         * Размер описания без текста.
+         */
+        static final int FIXED_SIZE = 4 + 4 + 4 + 8 + 8 + 8 + 8 + 4;
+
+        private final int index;
+        private final int startTime;
+        private final int size;
+        private final long offset;
+        private final double mapeTrain;
+        private final double mapeTest;
+        private final double sMape;
+        private final String description;
+
+        Entry(int index, int startTime, int size, long offset, double mapeTrain, double mapeTest, double sMape, String description) {
+            this.index = index;
+            this.startTime = startTime;
+            this.size = size;
+            this.offset = offset;
+            this.mapeTrain = mapeTrain;
+            this.mapeTest = mapeTest;
+            this.sMape = sMape;
+            this.description = description;
+        }
+
+        /**
+         * Прочитать описание из буфера.
+         *
+         * @param buffer буфер (little-endian).
+         * @return описание.
+         */
+        static Entry readFrom(ByteBuffer buffer) {
+            int index = buffer.getInt();
+            int startTime = buffer.getInt();
+            int size = buffer.getInt();
+            long offset = buffer.getLong();
+            double mapeTrain = buffer.getDouble();
+            double mapeTest = buffer.getDouble();
+            double sMape = buffer.getDouble();
+            byte[] description = new byte[buffer.getInt()];
+            buffer.get(description);
+            return new Entry(index, startTime, size, offset, mapeTrain, mapeTest, sMape, new String(description, StandardCharsets.UTF_8));
+        }
+
+        private void writeTo(ByteBuffer buffer, byte[] description) {
+            buffer.putInt(index);
+            buffer.putInt(startTime);
+            buffer.putInt(size);
+            buffer.putLong(offset);
+            buffer.putDouble(mapeTrain);
+            buffer.putDouble(mapeTest);
+            buffer.putDouble(sMape);
+            buffer.putInt(description.length);
+            buffer.put(description);
+        }
+
+        /**
+         * Получить номер модели.
+         *
+         * @return номер модели.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Получить метку времени первого значения.
+         *
+         * @return метка времени.
+         */
+        public int getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Получить количество значений.
+         *
+         * @return количество значений.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Получить смещение столбца значений в файле.
+         *
+         * @return смещение в байтах.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Получить MAPE обучающей выборки.
+         *
+         * @return MAPE.
+         */
+        public double getMapeTrain() {
+            return mapeTrain;
+        }
+
+        /**
+         * Получить MAPE тестовой выборки.
+         *
+         * @return MAPE.
+         */
+        public double getMapeTest() {
+            return mapeTest;
+        }
+
+        /**
+         * Получить SMAPE.
+         *
+         * @return SMAPE.
+         */
+        public double getSMape() {
+            return sMape;
+        }
+
+        /**
+         * Получить описание модели.
+         *
+         * @return описание.
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import domain.TimeSeries;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Чтение двоичного файла результатов, записанного {@link ResultStore}.
+ */
+@ParametersAreNonnullByDefault
+public class ResultStoreReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final List<ResultStore.Entry> entries;
+
+    /**
+     * @param path путь к файлу результатов.
+     * @throws IOException при чтении файла или некорректном формате.
+     */
+    public ResultStoreReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, ResultStore.HEADER_SIZE);
+            if (header.getInt() != ResultStore.MAGIC) {
+                throw new IOException("Файл " + path + " не является файлом результатов");
+            }
+            int version = header.getInt();
+            if (version != ResultStore.VERSION) {
+                throw new IOException("Неподдерживаемая версия файла результатов: " + version);
+            }
+            int count = header.getInt();
+            header.getInt();
+            long tableOffset = header.getLong();
+            if (tableOffset < ResultStore.HEADER_SIZE || tableOffset > channel.size()) {
+                throw new IOException("Файл результатов " + path + " не был закрыт после записи");
+            }
+
+            ByteBuffer table = read(tableOffset, (int) (channel.size() - tableOffset));
+            List<ResultStore.Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                entries.add(ResultStore.Entry.readFrom(table));
+            }
+            this.entries = Collections.unmodifiableList(entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Получить описания записей в порядке записи.
+     *
+     * @return описания записей.
+     */
+    public List<ResultStore.Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Прочитать значения записи.
+     *
+     * @param entry описание записи.
+     * @return значения.
+     * @throws IOException при чтении файла.
+     */
+    public double[] readValues(ResultStore.Entry entry) throws IOException {
+        double[] values = new double[entry.getSize()];
+        read(entry.getOffset(), entry.getSize() * Double.BYTES).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Прочитать значения записи в виде временного ряда (метки времени как при записи).
+     *
+     * @param entry описание записи.
+     * @return временной ряд.
+     * @throws IOException при чтении файла.
+     */
+    public TimeSeries readTimeSeries(ResultStore.Entry entry) throws IOException {
+        double[] values = readValues(entry);
+        TimeSeries timeSeries = new TimeSeries(values.length);
+        for (int i = 0; i < values.length; ++i) {
+            timeSeries.add(entry.getStartTime() + i, values[i]);
+        }
+        return timeSeries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец файла результатов");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
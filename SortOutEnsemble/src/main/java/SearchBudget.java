@@ -0,0 +1,103 @@
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Бюджет перебора ансамблей: ограничение по количеству оценок и по времени.
+ * Время отсчитывается от первого обращения к бюджету, поэтому бюджет можно создать заранее.
+ */
+@ParametersAreNonnullByDefault
+public class SearchBudget {
+    /**
+     * Максимальное количество оценок подмножеств.
+     */
+    private final long maxEvaluations;
+    /**
+     * Максимальное время перебора в миллисекундах.
+     */
+    private final long maxMillis;
+    /**
+     * Момент, после которого перебор прекращается (0 - отсчет времени еще не начат).
+     */
+    private long deadline;
+    /**
+     * Количество выполненных оценок.
+     */
+    private long evaluations;
+
+    /**
+     * @param maxEvaluations максимальное количество оценок подмножеств.
+     * @param maxMillis      максимальное время перебора в миллисекундах.
+     */
+    public SearchBudget(long maxEvaluations, long maxMillis) {
+        if (maxEvaluations < 0 || maxMillis < 0) {
+            throw new IllegalArgumentException("Некорректный бюджет перебора");
+        }
+        this.maxEvaluations = maxEvaluations;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Бюджет без ограничений.
+     *
+     * @return бюджет.
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Разобрать бюджет из строки "оценки,миллисекунды", например "5000,60000"; 0 - без ограничения.
+     *
+     * @param value строка бюджета.
+     * @return бюджет.
+     * @throws IllegalArgumentException строка некорректна.
+     */
+    public static SearchBudget parse(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Ожидается бюджет перебора \"оценки,миллисекунды\": " + value);
+        }
+        try {
+            long maxEvaluations = Long.parseLong(parts[0].trim());
+            long maxMillis = Long.parseLong(parts[1].trim());
+            return new SearchBudget((maxEvaluations == 0) ? Long.MAX_VALUE : maxEvaluations,
+                    (maxMillis == 0) ? Long.MAX_VALUE : maxMillis);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный бюджет перебора: " + value, e);
+        }
+    }
+
+    /**
+     * Занять одну оценку из бюджета.
+     *
+     * @return можно ли выполнить оценку.
+     */
+    public boolean tryAcquire() {
+        if (isExhausted()) {
+            return false;
+        }
+        ++evaluations;
+        return true;
+    }
+
+    /**
+     * Исчерпан ли бюджет.
+     *
+     * @return исчерпан ли бюджет.
+     */
+    public boolean isExhausted() {
+        long now = System.currentTimeMillis();
+        if (deadline == 0) {
+            deadline = (maxMillis > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + maxMillis;
+        }
+        return evaluations >= maxEvaluations || now >= deadline;
+    }
+
+    /**
+     * Получить количество выполненных оценок.
+     *
+     * @return количество оценок.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+}
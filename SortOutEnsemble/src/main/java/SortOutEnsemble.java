@@ -1,23 +1,66 @@
 import domain.Ensemble;
 import domain.Model;
+import domain.Quality;
+import domain.QualityReport;
 import domain.TimeSeries;
+import domain.TrainingBudget;
 import domain.exceptions.*;
+import domain.metrics.Metrics;
 import domain.models.ensemble.NeuralEnsemble;
+import domain.models.ensemble.StackingEnsemble;
+import domain.models.ensemble.StackingGram;
 import domain.models.ensemble.WeightedAverageEnsemble;
+import domain.models.ensemble.WeightedSubsetScorer;
 import domain.models.single.Arima;
+import domain.models.single.ArimaFamily;
 import domain.models.single.Fuzzy;
 import domain.models.single.Neural;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @ParametersAreNonnullByDefault
 public class SortOutEnsemble {
+    /**
+     * Системное свойство: обучать авторегрессионные модели всех порядков одним проходом ({@link ArimaFamily}).
+     */
+    public static final String ARIMA_FAMILY_PROPERTY = "arima.family";
+    /**
+     * Системное свойство: метаалгоритм стекинга вместо метасети нейронных ансамблей ("ridge" или "nnls").
+     */
+    public static final String STACKING_PROPERTY = "ensemble.stacking";
+    /**
+     * Системное свойство: наибольшее количество отбираемых ансамблей каждого вида (по умолчанию без ограничения).
+     */
+    public static final String ENSEMBLE_LIMIT_PROPERTY = "ensemble.limit";
+    /**
+     * Системное свойство: бюджет обучения нейронных моделей "эпохи,терпение,миллисекунды[,улучшение]"
+     * (см. {@link TrainingBudget#parse(String, int)}).
+     */
+    public static final String NEURAL_BUDGET_PROPERTY = "neural.budget";
+    /**
+     * Системное свойство: стратегия перебора ансамблей ("exhaustive", "beam", "greedy" или "branch",
+     * по умолчанию выбирается по количеству моделей, см. {@link #setSearch(EnsembleSearch)}).
+     */
+    public static final String SEARCH_PROPERTY = "ensemble.search";
+    /**
+     * Системное свойство: бюджет перебора ансамблей "оценки,миллисекунды" (см. {@link SearchBudget#parse(String)}).
+     */
+    public static final String SEARCH_BUDGET_PROPERTY = "ensemble.search.budget";
+    /**
+     * Системное свойство: бюджет обучения метасети нейронных ансамблей в том же формате, что и {@link #NEURAL_BUDGET_PROPERTY}.
+     */
+    public static final String NEURAL_ENSEMBLE_BUDGET_PROPERTY = "neural.ensemble.budget";
+
     /**
      * Временной ряд.
      */
@@ -68,8 +111,68 @@ public class SortOutEnsemble {
      */
     private final int forecastCount;
 
+    /**
+     * Планировщик обучения моделей.
+     */
+    private ModelFitScheduler fitScheduler;
+    /**
+     * Ошибки обучения моделей.
+     */
+    private List<ModelFitScheduler.Failure> failures = new ArrayList<>();
+
+    /**
+     * Стратегия перебора ансамблей.
+     */
+    @Nullable
+    private EnsembleSearch search;
+    /**
+     * Бюджет перебора ансамблей.
+     */
+    @Nullable
+    private SearchBudget searchBudget;
+    /**
+     * Обучать ли авторегрессионные модели всех порядков одним проходом.
+     */
+    private boolean arimaFamily = Boolean.getBoolean(ARIMA_FAMILY_PROPERTY);
+    /**
+     * Бюджет обучения нейронных моделей (если не задан, используется бюджет модели по умолчанию).
+     */
+    @Nullable
+    private TrainingBudget neuralBudget = getBudgetProperty(NEURAL_BUDGET_PROPERTY, Neural.ITERATIONS);
+    /**
+     * Бюджет обучения метасети нейронных ансамблей (если не задан, используется бюджет ансамбля по умолчанию).
+     */
+    @Nullable
+    private TrainingBudget neuralEnsembleBudget = getBudgetProperty(NEURAL_ENSEMBLE_BUDGET_PROPERTY, NeuralEnsemble.ITERATIONS);
+    /**
+     * Метод стекинга, заменяющего метасеть нейронных ансамблей (если не задан, обучается метасеть).
+     */
+    @Nullable
+    private StackingEnsemble.Method stacking = getStackingProperty();
+    /**
+     * Наибольшее количество отбираемых ансамблей каждого вида.
+     */
+    private int ensembleLimit = Integer.getInteger(ENSEMBLE_LIMIT_PROPERTY, Integer.MAX_VALUE);
+    /**
+     * Предварительный отбор моделей перед полным обучением (если не задан, обучаются все модели).
+     */
+    @Nullable
+    private ModelScreening screening = ModelScreening.fromProperty();
+
     private final static int TRAIN_PERSENT = 70;
     private final static int TEST_PERSENT = 20;
+    private final static int EXHAUSTIVE_SEARCH_LIMIT = 12;
+    private final static int BEAM_WIDTH = 4;
+    /**
+     * Наибольшее количество моделей, для которого оценки средневзвешенных ансамблей всех подмножеств
+     * рассчитываются заранее обходом в порядке кода Грея.
+     */
+    private final static int GRAY_WALK_LIMIT = 16;
+    /**
+     * Запас при отсеве средневзвешенных ансамблей по оценке без построения ансамбля
+     * (оценка и ошибка построенного ансамбля могут отличаться на ошибку округления).
+     */
+    private final static double SCORE_TOLERANCE = 1e-9;
 
     public SortOutEnsemble(
             TimeSeries timeSeries,
@@ -97,6 +200,9 @@ public class SortOutEnsemble {
         this.needNeuralEnsemble = needNeuralEnsemble;
         this.needWeightedEnsemble = needWightedEnsemble;
         this.forecastCount = forecastCount;
+        this.search = getSearchProperty(qualityBorder);
+        String budget = System.getProperty(SEARCH_BUDGET_PROPERTY);
+        this.searchBudget = (budget == null || budget.isEmpty()) ? null : SearchBudget.parse(budget);
     }
 
     /**
@@ -110,36 +216,185 @@ public class SortOutEnsemble {
      * @throws NoEqualsTimeSeriesException    разные временные ряды в моделях.
      */
     public void sortOut(List<Model> allModels, List<Ensemble> weighted, List<Ensemble> neural) throws InvalidTemporaryValueException, ForecastNotFitedModelException, NoEqualsTimeSeriesException, TimeSeriesSizeException, IOException, InvalidOrderException {
-        List<Model> empty = new ArrayList<>(0);
-        List<Model> modelsArima = (!needArima) ? empty : fitedModels(Models.ARIMA, orderArima);
-        List<Model> modelsNeural = (!needNeural) ? empty : fitedModels(Models.NEURAL, orderNeural);
-        List<Model> modelsFuzzy = (!needFuzzy) ? empty : fitedModels(Models.FUZZY, orderFuzzy);
-
-        allModels.addAll(modelsArima);
-        allModels.addAll(modelsNeural);
-        allModels.addAll(modelsFuzzy);
-
-        createEnsembleLists(allModels, weighted, neural);
-        selectEnsembles(weighted);
-        selectEnsembles(neural);
+        Map<Models, List<Model>> candidates = new EnumMap<>(Models.class);
+        if (needArima && !arimaFamily) {
+            candidates.put(Models.ARIMA, createModels(Models.ARIMA, orderArima));
+        }
+        if (needNeural) {
+            candidates.put(Models.NEURAL, createModels(Models.NEURAL, orderNeural));
+        }
+        if (needFuzzy) {
+            candidates.put(Models.FUZZY, createModels(Models.FUZZY, orderFuzzy));
+        }
+
+        Map<Models, List<Model>> fited = new EnumMap<>(fitedModels(candidates));
+        if (needArima && arimaFamily) {
+            fited.put(Models.ARIMA, fitArimaFamily());
+        }
+        for (List<Model> models : fited.values()) {
+            allModels.addAll(models);
+        }
+
+        EnsembleSelection weightedSelection = new EnsembleSelection(ensembleLimit);
+        EnsembleSelection neuralSelection = new EnsembleSelection(ensembleLimit);
+        createEnsembleLists(allModels, weightedSelection, neuralSelection);
+        weighted.addAll(weightedSelection.getEnsembles());
+        neural.addAll(neuralSelection.getEnsembles());
         selectModels(allModels);
     }
 
     /**
-     * Созадание списка обученных моделей.
+     * Задать планировщик обучения моделей.
+     * Если планировщик не задан, на время перебора создается собственный.
+     *
+     * @param fitScheduler планировщик обучения моделей.
+     */
+    public void setFitScheduler(ModelFitScheduler fitScheduler) {
+        this.fitScheduler = fitScheduler;
+    }
+
+    /**
+     * Задать обучение авторегрессионных моделей всех порядков одним проходом (оценки Юла-Уокера).
+     * По умолчанию определяется системным свойством {@link #ARIMA_FAMILY_PROPERTY}.
+     *
+     * @param arimaFamily обучать ли модели одним проходом.
+     */
+    public void setArimaFamily(boolean arimaFamily) {
+        this.arimaFamily = arimaFamily;
+    }
+
+    /**
+     * Задать бюджет обучения нейронных моделей: количество эпох, ранняя остановка и ограничение по времени.
+     * По умолчанию определяется системным свойством {@link #NEURAL_BUDGET_PROPERTY}.
+     *
+     * @param neuralBudget бюджет обучения.
+     */
+    public void setNeuralBudget(TrainingBudget neuralBudget) {
+        this.neuralBudget = neuralBudget;
+    }
+
+    /**
+     * Задать бюджет обучения метасети нейронных ансамблей.
+     * По умолчанию определяется системным свойством {@link #NEURAL_ENSEMBLE_BUDGET_PROPERTY}.
+     *
+     * @param neuralEnsembleBudget бюджет обучения.
+     */
+    public void setNeuralEnsembleBudget(TrainingBudget neuralEnsembleBudget) {
+        this.neuralEnsembleBudget = neuralEnsembleBudget;
+    }
+
+    /**
+     * Задать стекинг вместо метасети нейронных ансамблей: веса моделей рассчитываются в замкнутой форме
+     * по общей для всех перебираемых ансамблей матрице Грама.
+     * По умолчанию определяется системным свойством {@link #STACKING_PROPERTY}.
+     *
+     * @param stacking метод стекинга (null - обучать метасеть).
+     */
+    public void setStacking(@Nullable StackingEnsemble.Method stacking) {
+        this.stacking = stacking;
+    }
+
+    /**
+     * Задать наибольшее количество отбираемых ансамблей каждого вида: при переполнении остаются ансамбли
+     * с наименьшей ошибкой на тестовой выборке. По умолчанию определяется системным свойством
+     * {@link #ENSEMBLE_LIMIT_PROPERTY}, без него количество не ограничено.
+     *
+     * @param ensembleLimit количество ансамблей.
+     */
+    public void setEnsembleLimit(int ensembleLimit) {
+        if (ensembleLimit < 1) {
+            throw new IllegalArgumentException("Количество отбираемых ансамблей должно быть положительным: " + ensembleLimit);
+        }
+        this.ensembleLimit = ensembleLimit;
+    }
+
+    /**
+     * Задать предварительный отбор моделей: полностью обучаются только модели, лучшие по пробному обучению
+     * на коротких рядах. По умолчанию определяется системным свойством {@link ModelScreening#PROPERTY}.
+     * Авторегрессионные модели, обучаемые одним проходом, не отбираются.
+     *
+     * @param screening отбор моделей (null - обучать все модели).
+     */
+    public void setScreening(@Nullable ModelScreening screening) {
+        this.screening = screening;
+    }
+
+    /**
+     * Получить ошибки обучения моделей, исключенных из перебора.
+     *
+     * @return ошибки обучения.
+     */
+    public List<ModelFitScheduler.Failure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Создание списка моделей всех порядков от 1 до заданного.
      *
      * @param model тип модели.
      * @param order порядок модели.
-     * @return список обученных моделей.
-     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
-     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @return список моделей.
      */
-    private List<Model> fitedModels(Models model, int order) throws InvalidTemporaryValueException, ForecastNotFitedModelException, IOException, InvalidOrderException {
+    private List<Model> createModels(Models model, int order) throws InvalidOrderException {
         List<Model> models = new ArrayList<>(order);
         for (int i = 1; i <= order; ++i) {
-            Model creation = createModel(model, i);
-            creation.fit();
-            models.add(creation);
+            models.add(createModel(model, i));
+        }
+        return models;
+    }
+
+    /**
+     * Параллельное обучение моделей.
+     * Модели, которые не удалось обучить, исключаются из перебора.
+     *
+     * @param candidates модели по типам.
+     * @return список обученных моделей по типам.
+     */
+    private Map<Models, List<Model>> fitedModels(Map<Models, List<Model>> candidates) {
+        if (fitScheduler != null) {
+            return fitedModels(candidates, fitScheduler);
+        }
+        try (ModelFitScheduler scheduler = new ModelFitScheduler()) {
+            return fitedModels(candidates, scheduler);
+        }
+    }
+
+    /**
+     * Предварительный отбор и обучение моделей планировщиком.
+     *
+     * @param candidates модели по типам.
+     * @param scheduler  планировщик обучения.
+     * @return список обученных моделей по типам.
+     */
+    private Map<Models, List<Model>> fitedModels(Map<Models, List<Model>> candidates, ModelFitScheduler scheduler) {
+        Map<Models, List<Model>> promising = (screening != null)
+                ? screening.screen(candidates, timeSeries, TRAIN_PERSENT, TEST_PERSENT, this::createModel, scheduler)
+                : candidates;
+        List<ModelFitScheduler.Failure> fitFailures = Collections.synchronizedList(new ArrayList<>());
+        Map<Models, List<Model>> fited = scheduler.fit(promising, fitFailures);
+        failures.addAll(fitFailures);
+        return fited;
+    }
+
+    /**
+     * Обучение авторегрессионных моделей всех порядков одним проходом.
+     * Модели, которые не удалось обучить, исключаются из перебора.
+     *
+     * @return обученные модели в порядке возрастания порядка.
+     */
+    private List<Model> fitArimaFamily() {
+        ArimaFamily family = new ArimaFamily(timeSeries, orderArima, forecastCount, TRAIN_PERSENT, TEST_PERSENT);
+        List<Model> models = new ArrayList<>(orderArima);
+        for (int order = 1; order <= orderArima; ++order) {
+            try {
+                long start = Metrics.start();
+                Model model = family.fit(order);
+                Metrics.stop(Metrics.Stage.MODEL_FIT, model, start);
+                models.add(model);
+            } catch (Exception e) {
+                Metrics.increment(Metrics.Counter.MODEL_FIT_FAILURES);
+                failures.add(new ModelFitScheduler.Failure(Models.ARIMA, order, e));
+            }
         }
         return models;
     }
@@ -153,11 +408,27 @@ public class SortOutEnsemble {
      */
     @NotNull
     private Model createModel(Models model, int order) throws InvalidOrderException {
+        return createModel(model, order, timeSeries);
+    }
+
+    /**
+     * Создание модели для временного ряда.
+     *
+     * @param model      тип модели.
+     * @param order      порядок модели.
+     * @param timeSeries временной ряд.
+     * @return модель.
+     */
+    @NotNull
+    private Model createModel(Models model, int order, TimeSeries timeSeries) throws InvalidOrderException {
         switch (model) {
             case ARIMA: {
                 return new Arima(timeSeries, order, forecastCount, TRAIN_PERSENT, TEST_PERSENT);
             }
             case NEURAL: {
+                if (neuralBudget != null) {
+                    return new Neural(timeSeries, order, forecastCount, TRAIN_PERSENT, TEST_PERSENT, neuralBudget);
+                }
                 return new Neural(timeSeries, order, forecastCount, TRAIN_PERSENT, TEST_PERSENT);
             }
             case FUZZY: {
@@ -168,98 +439,135 @@ public class SortOutEnsemble {
     }
 
     /**
-     * Создание списка ансамблей.
+     * Перебор и отбор ансамблей.
      *
      * @param allModels список моделей.
-     * @param weighted  список средневзвешенных ансамблей.
-     * @param neural    список нейронных ансамблей.
+     * @param weighted  отбор средневзвешенных ансамблей.
+     * @param neural    отбор нейронных ансамблей.
      * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
      * @throws ForecastNotFitedModelException модель не была обучена.
      * @throws TimeSeriesSizeException        некорректная длина временных рядов.
      * @throws NoEqualsTimeSeriesException    разные временные ряды в моделях.
      */
-    private void createEnsembleLists(List<Model> allModels, List<Ensemble> weighted, List<Ensemble> neural) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
-        List<String> tableSortOut = tableSortOut(allModels.size());
-        for (String rowSortOut : tableSortOut) {
-            Ensemble ensembleWeighted = new WeightedAverageEnsemble(timeSeries, forecastCount, TRAIN_PERSENT, TEST_PERSENT);
-            Ensemble ensembleNeural = new NeuralEnsemble(timeSeries, forecastCount, TRAIN_PERSENT, TEST_PERSENT);
-            createEnsemble(rowSortOut, allModels, ensembleWeighted, ensembleNeural);
-            if (ensembleWeighted.getModels().size() > 1 && ensembleNeural.getModels().size() > 1) {
-                if (needWeightedEnsemble) {
-                    ensembleWeighted.fit();
-                    weighted.add(ensembleWeighted);
-                }
-                if (needNeuralEnsemble) {
-                    ensembleNeural.fit();
-                    neural.add(ensembleNeural);
-                }
-            }
+    private void createEnsembleLists(List<Model> allModels, EnsembleSelection weighted, EnsembleSelection neural) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
+        if (allModels.size() < 2 || (!needWeightedEnsemble && !needNeuralEnsemble)) {
+            return;
         }
+        EnsembleSearch ensembleSearch = (search != null) ? search
+                : (allModels.size() <= EXHAUSTIVE_SEARCH_LIMIT) ? new ExhaustiveSearch() : new BeamSearch(BEAM_WIDTH);
+        SearchBudget budget = (searchBudget != null) ? searchBudget : SearchBudget.unlimited();
+        StackingGram gram = (needNeuralEnsemble && stacking != null) ? new StackingGram(allModels) : null;
+        WeightedScores scores = needWeightedEnsemble
+                ? new WeightedScores(allModels, ensembleSearch instanceof ExhaustiveSearch && allModels.size() <= GRAY_WALK_LIMIT)
+                : null;
+        ensembleSearch.search(allModels.size(), subset -> evaluate(subset, allModels, weighted, neural, gram, scores), budget);
     }
 
     /**
-     * Создать таблицу перебора моделей.
+     * Построить и оценить ансамбли из подмножества моделей; ансамбли, отвечающие требованиям качества,
+     * сразу предлагаются в отбор, остальные освобождаются.
+     * Для подмножества из одной модели ансамбль не строится, оценкой служит ошибка самой модели.
+     * Средневзвешенный ансамбль строится, только если его оценка без построения проходит границы качества
+     * (остальные ансамбли все равно были бы отсеяны).
      *
-     * @param size количество моделей.
-     * @return таблица перебора моделей
-     */
-    private List<String> tableSortOut(int size) {
-        int tableSize = (int) Math.pow(2, size);
-        System.out.println(size);
-        List<String> tableSortOut = new ArrayList<>(tableSize);
-        for (int i = 1; i <= tableSize - 1; ++i) {
-            String rowSortOut = Integer.toBinaryString(i);
-            for(int k = 0; k < size; ++k) {
-                rowSortOut = "0" + rowSortOut;
+     * @param subset    битовая маска подмножества.
+     * @param allModels список моделей.
+     * @param weighted  отбор средневзвешенных ансамблей.
+     * @param neural    отбор нейронных ансамблей.
+     * @param gram      общая матрица Грама для стекинга.
+     * @param scores    оценки средневзвешенных ансамблей.
+     * @return наименьшая ошибка на тестовой выборке среди построенных ансамблей.
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws TimeSeriesSizeException        некорректная длина временных рядов.
+     * @throws NoEqualsTimeSeriesException    разные временные ряды в моделях.
+     */
+    private double evaluate(long subset, List<Model> allModels, EnsembleSelection weighted, EnsembleSelection neural, @Nullable StackingGram gram, @Nullable WeightedScores scores) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException {
+        if (Long.bitCount(subset) < 2) {
+            return allModels.get(Long.numberOfTrailingZeros(subset)).getTestMape();
+        }
+        long start = Metrics.start();
+        double score = Double.POSITIVE_INFINITY;
+        if (scores != null && !isCandidate(scores.getTrainMape(subset), scores.getTestMape(subset))) {
+            score = Math.min(score, scores.getTestMape(subset));
+        } else if (needWeightedEnsemble) {
+            Ensemble ensembleWeighted = new WeightedAverageEnsemble(timeSeries, forecastCount, TRAIN_PERSENT, TEST_PERSENT);
+            createEnsemble(subset, allModels, ensembleWeighted);
+            ensembleWeighted.fit();
+            score = Math.min(score, select(ensembleWeighted, weighted));
+        }
+        if (needNeuralEnsemble) {
+            Ensemble ensembleNeural;
+            if (stacking != null) {
+                ensembleNeural = new StackingEnsemble(timeSeries, forecastCount, TRAIN_PERSENT, TEST_PERSENT,
+                        stacking, StackingEnsemble.DEFAULT_REGULARIZATION, gram);
+            } else if (neuralEnsembleBudget != null) {
+                ensembleNeural = new NeuralEnsemble(timeSeries, forecastCount, TRAIN_PERSENT, TEST_PERSENT, neuralEnsembleBudget);
+            } else {
+                ensembleNeural = new NeuralEnsemble(timeSeries, forecastCount, TRAIN_PERSENT, TEST_PERSENT);
             }
-            System.out.println(rowSortOut);
-            tableSortOut.add(rowSortOut.substring(rowSortOut.length() - size));
+            createEnsemble(subset, allModels, ensembleNeural);
+            ensembleNeural.fit();
+            score = Math.min(score, select(ensembleNeural, neural));
         }
-        return tableSortOut;
+        Metrics.stop(Metrics.Stage.SUBSET_EVALUATION, Long.bitCount(subset), start);
+        return score;
+    }
+
+    /**
+     * Задать стратегию перебора ансамблей.
+     * По умолчанию определяется системным свойством {@link #SEARCH_PROPERTY}, без него небольшое количество моделей
+     * перебирается полностью, большое - лучевым поиском.
+     *
+     * @param search стратегия перебора.
+     */
+    public void setSearch(EnsembleSearch search) {
+        this.search = search;
+    }
+
+    /**
+     * Задать бюджет перебора ансамблей.
+     * По умолчанию определяется системным свойством {@link #SEARCH_BUDGET_PROPERTY}, без него перебор не ограничен.
+     *
+     * @param searchBudget бюджет перебора.
+     */
+    public void setSearchBudget(SearchBudget searchBudget) {
+        this.searchBudget = searchBudget;
     }
 
     /**
      * Создание ансамбля.
      *
-     * @param row      строка таблицы перебора моделей.
+     * @param subset   битовая маска подмножества моделей.
      * @param models   список моделей.
-     * @param weighted список средневзвешенных ансамблей.
-     * @param neural   список нейронных ансамблей.
-     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
-     * @throws ForecastNotFitedModelException модель не была обучена.
-     * @throws TimeSeriesSizeException        некорректная длина временных рядов.
-     * @throws NoEqualsTimeSeriesException    разные временные ряды в моделях.
+     * @param ensemble ансамбль.
+     * @throws NoEqualsTimeSeriesException разные временные ряды в моделях.
      */
-    @Nullable
-    private void createEnsemble(String row, List<Model> models, Ensemble weighted, Ensemble neural) throws NoEqualsTimeSeriesException, TimeSeriesSizeException, ForecastNotFitedModelException, InvalidTemporaryValueException {
-        int size = models.size();
-        for (int i = 0; i < row.length(); ++i) {
-            if (row.charAt(i) == '1') {
-                Model model = models.get(i);
-                //if (!model.isOverFited(overFitedBorder)) {
-                weighted.addModel(model);
-                neural.addModel(model);
-                //}
+    private void createEnsemble(long subset, List<Model> models, Ensemble ensemble) throws NoEqualsTimeSeriesException {
+        for (int i = 0; i < models.size(); ++i) {
+            if ((subset & (1L << i)) != 0) {
+                ensemble.addModel(models.get(i));
             }
         }
     }
 
     /**
-     * Выбор ансамблей, отвечающих требованиям качества.
+     * Проверить обученный ансамбль на соответствие требованиям качества и, если он им отвечает, предложить в отбор.
      *
-     * @param ensembles список ансамблей.
+     * @param ensemble  обученный ансамбль.
+     * @param selection отбор ансамблей.
+     * @return ошибка ансамбля на тестовой выборке.
      * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
      * @throws ForecastNotFitedModelException модель не была обучена.
      * @throws TimeSeriesSizeException        некорректная длина временных рядов.
      */
-    private void selectEnsembles(List<Ensemble> ensembles) throws TimeSeriesSizeException, ForecastNotFitedModelException, InvalidTemporaryValueException {
-        Iterator<Ensemble> ensembleIterator = ensembles.iterator();
-        while (ensembleIterator.hasNext()) {
-            Ensemble ensemble = ensembleIterator.next();
-            if (isIncorrect(ensemble)) {
-                ensembleIterator.remove();
-            }
+    private double select(Ensemble ensemble, EnsembleSelection selection) throws TimeSeriesSizeException, ForecastNotFitedModelException, InvalidTemporaryValueException {
+        QualityReport report = ensemble.evaluate();
+        double error = report.getTest().getMape();
+        if (!isIncorrect(report)) {
+            selection.offer(ensemble, error);
         }
+        return error;
     }
 
     /**
@@ -290,7 +598,136 @@ public class SortOutEnsemble {
      * @throws TimeSeriesSizeException        некорректная длина временных рядов.
      */
     private boolean isIncorrect(Model model) throws TimeSeriesSizeException, ForecastNotFitedModelException, InvalidTemporaryValueException {
-        return model.getTestMape() > qualityBorder || model.isOverFited(overFitedBorder);
+        return isIncorrect(model.evaluate());
+    }
+
+    /**
+     * Проверка показателей качества на соответствие границам.
+     *
+     * @param report показатели качества.
+     * @return некорректность.
+     */
+    private boolean isIncorrect(QualityReport report) {
+        boolean incorrect = report.getTest().getMape() > qualityBorder || report.getOverFit() > overFitedBorder;
+        if (incorrect) {
+            Metrics.increment(Metrics.Counter.MODELS_REJECTED);
+        }
+        return incorrect;
+    }
+
+    /**
+     * Может ли ансамбль с такой оценкой пройти границы качества (см. {@link #isIncorrect(Model)}).
+     * Неопределенная оценка не отсеивает ансамбль.
+     *
+     * @param trainMape MAPE на обучающей выборке.
+     * @param testMape  MAPE на тестовой выборке.
+     * @return может ли ансамбль пройти отбор.
+     */
+    private boolean isCandidate(double trainMape, double testMape) {
+        return !(testMape > qualityBorder + SCORE_TOLERANCE)
+                && !(Quality.sMape(trainMape, testMape) > overFitedBorder + SCORE_TOLERANCE);
+    }
+
+    /**
+     * Получить метод стекинга из системного свойства {@link #STACKING_PROPERTY}.
+     *
+     * @return метод стекинга или null, если свойство не задано.
+     */
+    @Nullable
+    private static StackingEnsemble.Method getStackingProperty() {
+        String value = System.getProperty(STACKING_PROPERTY);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return StackingEnsemble.Method.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Получить стратегию перебора из системного свойства {@link #SEARCH_PROPERTY}.
+     *
+     * @param qualityBorder порог качества ансамбля (для перебора с отсечением).
+     * @return стратегия перебора или null, если свойство не задано.
+     */
+    @Nullable
+    private static EnsembleSearch getSearchProperty(double qualityBorder) {
+        String value = System.getProperty(SEARCH_PROPERTY);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "exhaustive":
+                return new ExhaustiveSearch();
+            case "beam":
+                return new BeamSearch(BEAM_WIDTH);
+            case "greedy":
+                return new GreedySearch();
+            case "branch":
+                return new BranchAndBoundSearch(qualityBorder);
+            default:
+                throw new IllegalArgumentException("Неизвестная стратегия перебора: " + value);
+        }
+    }
+
+    /**
+     * Получить бюджет обучения из системного свойства.
+     *
+     * @param property   системное свойство.
+     * @param iterations количество итераций оптимизатора на пакет.
+     * @return бюджет или null, если свойство не задано.
+     */
+    @Nullable
+    private static TrainingBudget getBudgetProperty(String property, int iterations) {
+        String value = System.getProperty(property);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return TrainingBudget.parse(value, iterations);
+    }
+
+    /**
+     * Оценки средневзвешенных ансамблей по подмножествам без построения ансамблей.
+     * При полном переборе небольшого количества моделей оценки всех подмножеств рассчитываются заранее
+     * одним обходом в порядке кода Грея, иначе оценщик переходит к каждому запрошенному подмножеству.
+     */
+    private static final class WeightedScores {
+        private final WeightedSubsetScorer scorer;
+        @Nullable
+        private final double[] trainMapes;
+        @Nullable
+        private final double[] testMapes;
+
+        WeightedScores(List<Model> models, boolean precompute) throws ForecastNotFitedModelException {
+            scorer = new WeightedSubsetScorer(models);
+            if (precompute) {
+                double[] train = new double[1 << models.size()];
+                double[] test = new double[train.length];
+                scorer.forEachSubset((subset, trainMape, testMape) -> {
+                    train[(int) subset] = trainMape;
+                    test[(int) subset] = testMape;
+                });
+                trainMapes = train;
+                testMapes = test;
+            } else {
+                trainMapes = null;
+                testMapes = null;
+            }
+        }
+
+        double getTrainMape(long subset) {
+            if (trainMapes != null) {
+                return trainMapes[(int) subset];
+            }
+            scorer.moveTo(subset);
+            return scorer.getTrainMape();
+        }
+
+        double getTestMape(long subset) {
+            if (testMapes != null) {
+                return testMapes[(int) subset];
+            }
+            scorer.moveTo(subset);
+            return scorer.getTestMape();
+        }
     }
 
     enum Models {
@@ -0,0 +1,21 @@
+import domain.exceptions.*;
+
+import java.io.IOException;
+
+/**
+ * Оценка подмножества моделей при переборе ансамблей.
+ * Подмножество задается битовой маской: бит i соответствует i-й модели списка.
+ */
+public interface SubsetEvaluator {
+    /**
+     * Оценить подмножество моделей.
+     *
+     * @param subset битовая маска подмножества.
+     * @return ошибка на тестовой выборке (чем меньше, тем лучше).
+     * @throws InvalidTemporaryValueException некорректна метка времени предсказываемого значения.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws TimeSeriesSizeException        некорректная длина временных рядов.
+     * @throws NoEqualsTimeSeriesException    разные временные ряды в моделях.
+     */
+    double evaluate(long subset) throws NoEqualsTimeSeriesException, InvalidTemporaryValueException, ForecastNotFitedModelException, TimeSeriesSizeException, IOException, InvalidOrderException;
+}
@@ -0,0 +1,25 @@
+import java.io.IOException;
+
+/**
+ * Ошибка разбора файла временного ряда.
+ */
+public class TimeSeriesParseException extends IOException {
+    /**
+     * Позиция ошибки в файле (в байтах от начала).
+     */
+    private final long offset;
+
+    public TimeSeriesParseException(String message, long offset) {
+        super(message + " (позиция " + offset + ")");
+        this.offset = offset;
+    }
+
+    /**
+     * Получить позицию ошибки в файле.
+     *
+     * @return позиция в байтах от начала файла.
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
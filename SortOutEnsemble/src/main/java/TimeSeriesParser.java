@@ -0,0 +1,458 @@
+import domain.TimeSeries;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Потоковый разбор файла временного ряда.
+ * Файл отображается в память частями и разбирается побайтно, числа собираются сразу в double без промежуточных строк.
+ * <p>
+ * Поддерживаются два формата:
+ * <ul>
+ * <li>значения, разделенные ';' и переводами строк (исходный формат приложения);</li>
+ * <li>таблица: первый столбец - метка времени, последний - значение, столбцы разделены ';'.
+ * Первая строка считается заголовком, только если ее последний столбец не число.
+ * Значения ставятся по порядку строк с метки 1; целые метки времени только проверяются на непрерывность.</li>
+ * </ul>
+ * Десятичный разделитель - точка или запятая.
+ */
+@ParametersAreNonnullByDefault
+public class TimeSeriesParser {
+    /**
+     * Размер части файла, отображаемой в память за раз.
+     */
+    private static final long MAPPING_SIZE = 64L << 20;
+    /**
+     * Степени десяти, представимые в double точно.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /**
+     * Максимальная мантисса, представимая в double точно.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /**
+     * Максимальное количество значащих цифр, накапливаемых в мантиссе.
+     */
+    private static final int MAX_DIGITS = 18;
+    private static final int MAX_EXPONENT = 100_000;
+
+    private enum Mode {UNKNOWN, VALUES, COLUMNS}
+
+    private enum State {EMPTY, SIGN, INTEGER, FRACTION, EXPONENT_MARK, EXPONENT_SIGN, EXPONENT, TEXT}
+
+    private TimeSeries timeSeries;
+    private Mode mode;
+    /**
+     * Ожидаемая длина ряда.
+     */
+    private int capacity;
+
+    /**
+     * Позиция текущего байта в файле.
+     */
+    private long position;
+
+    // Состояние разбираемого поля.
+    private State state;
+    private long fieldStart;
+    private long errorOffset;
+    private boolean negative;
+    private long mantissa;
+    private int digits;
+    private boolean hasDigits;
+    private int fractionDigits;
+    private boolean exponentNegative;
+    private int exponent;
+    private boolean inexact;
+    /**
+     * После числа встретился пробел: дальше в поле допустимы только пробелы.
+     */
+    private boolean trailingSpace;
+    private char[] token = new char[32];
+    private int tokenLength;
+
+    // Состояние разбираемой строки.
+    private int fieldIndex;
+    private boolean lineHasText;
+    private long lineStart;
+    private boolean integerTime;
+    private long time;
+    private boolean hasValue;
+    private double value;
+    private long valueOffset;
+    private boolean lastFieldNumeric;
+    /**
+     * Используются ли целые метки времени (определяется по первой строке таблицы).
+     */
+    private Boolean timestamped;
+    /**
+     * Метка времени предыдущей строки таблицы.
+     */
+    private long previousTime;
+
+    /**
+     * Разобрать файл временного ряда.
+     *
+     * @param path путь к файлу.
+     * @return временной ряд.
+     * @throws TimeSeriesParseException файл содержит некорректные данные.
+     * @throws IOException              возникает при чтении файла.
+     */
+    public TimeSeries parse(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            capacity = (int) Math.min(size / 16 + 16, Integer.MAX_VALUE / 2);
+            timeSeries = new TimeSeries(capacity);
+            mode = Mode.UNKNOWN;
+            timestamped = null;
+            position = 0;
+            startLine();
+            lineStart = 0;
+            for (long chunk = 0; chunk < size; chunk += MAPPING_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk, Math.min(MAPPING_SIZE, size - chunk));
+                if (chunk == 0) {
+                    skipByteOrderMark(buffer);
+                }
+                while (buffer.hasRemaining()) {
+                    accept(buffer.get());
+                    ++position;
+                }
+            }
+            endLine();
+        }
+        if (timeSeries.getSize() == 0) {
+            throw new TimeSeriesParseException("Файл временного ряда не содержит значений", position);
+        }
+        TimeSeries result = timeSeries;
+        timeSeries = null;
+        return result;
+    }
+
+    /**
+     * Обработать очередной байт.
+     *
+     * @param b байт.
+     */
+    private void accept(byte b) throws TimeSeriesParseException {
+        switch (b) {
+            case ';':
+                endField();
+                break;
+            case '\n':
+                endLine();
+                break;
+            case '\r':
+            case ' ':
+            case '\t':
+                if (state != State.EMPTY && state != State.TEXT) {
+                    trailingSpace = true;
+                }
+                break;
+            default:
+                if (trailingSpace) {
+                    toText();
+                }
+                acceptFieldByte(b);
+        }
+    }
+
+    /**
+     * Обработать байт внутри поля.
+     *
+     * @param b байт.
+     */
+    private void acceptFieldByte(byte b) {
+        if (state == State.EMPTY) {
+            fieldStart = position;
+        }
+        appendToken((char) (b & 0xFF));
+        switch (state) {
+            case EMPTY:
+                if (b == '-' || b == '+') {
+                    negative = b == '-';
+                    state = State.SIGN;
+                } else if (isDigit(b)) {
+                    state = State.INTEGER;
+                    addDigit(b, false);
+                } else if (isDecimalSeparator(b)) {
+                    state = State.FRACTION;
+                } else {
+                    toText();
+                }
+                break;
+            case SIGN:
+            case INTEGER:
+                if (isDigit(b)) {
+                    state = State.INTEGER;
+                    addDigit(b, false);
+                } else if (isDecimalSeparator(b)) {
+                    state = State.FRACTION;
+                } else if ((b == 'e' || b == 'E') && hasDigits) {
+                    state = State.EXPONENT_MARK;
+                } else {
+                    toText();
+                }
+                break;
+            case FRACTION:
+                if (isDigit(b)) {
+                    addDigit(b, true);
+                } else if ((b == 'e' || b == 'E') && hasDigits) {
+                    state = State.EXPONENT_MARK;
+                } else {
+                    toText();
+                }
+                break;
+            case EXPONENT_MARK:
+                if (b == '-' || b == '+') {
+                    exponentNegative = b == '-';
+                    state = State.EXPONENT_SIGN;
+                } else if (isDigit(b)) {
+                    state = State.EXPONENT;
+                    addExponentDigit(b);
+                } else {
+                    toText();
+                }
+                break;
+            case EXPONENT_SIGN:
+            case EXPONENT:
+                if (isDigit(b)) {
+                    state = State.EXPONENT;
+                    addExponentDigit(b);
+                } else {
+                    toText();
+                }
+                break;
+            case TEXT:
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Завершить поле (разделитель ';').
+     */
+    private void endField() throws TimeSeriesParseException {
+        if (state == State.EMPTY) {
+            resetField();
+            return;
+        }
+        boolean numeric = isNumber();
+        if (mode == Mode.VALUES) {
+            if (!numeric) {
+                throw new TimeSeriesParseException("Некорректное значение временного ряда", invalidOffset());
+            }
+            timeSeries.addTimeValue(toDouble());
+        } else if (mode == Mode.UNKNOWN) {
+            // формат еще не известен: поле учитывается и как значение, и как столбец таблицы
+            acceptColumn(numeric);
+            if (!numeric) {
+                lineHasText = true;
+            } else if (!lineHasText) {
+                timeSeries.addTimeValue(toDouble());
+            }
+        } else {
+            acceptColumn(numeric);
+        }
+        ++fieldIndex;
+        resetField();
+    }
+
+    /**
+     * Завершить строку.
+     */
+    private void endLine() throws TimeSeriesParseException {
+        endField();
+        if (mode == Mode.UNKNOWN && fieldIndex > 0) {
+            if (lineHasText) {
+                mode = Mode.COLUMNS;
+                timeSeries = new TimeSeries(capacity);
+                // первая строка с текстом - заголовок, если значение в ней не число (иначе это строка с датой)
+                if (fieldIndex >= 2 && hasValue && lastFieldNumeric) {
+                    acceptRow();
+                }
+            } else {
+                mode = Mode.VALUES;
+            }
+        } else if (mode == Mode.COLUMNS && fieldIndex > 0) {
+            acceptRow();
+        }
+        startLine();
+    }
+
+    /**
+     * Учесть поле строки таблицы.
+     *
+     * @param numeric является ли поле числом.
+     */
+    private void acceptColumn(boolean numeric) {
+        if (fieldIndex == 0) {
+            integerTime = numeric && fractionDigits == 0 && exponent == 0 && !inexact && !hasSeparator();
+            time = integerTime ? (negative ? -mantissa : mantissa) : 0;
+            return;
+        }
+        lastFieldNumeric = numeric;
+        valueOffset = numeric ? fieldStart : invalidOffset();
+        if (numeric) {
+            hasValue = true;
+            value = toDouble();
+        }
+    }
+
+    /**
+     * Добавить значение строки таблицы во временной ряд.
+     */
+    private void acceptRow() throws TimeSeriesParseException {
+        if (fieldIndex < 2 || !hasValue || !lastFieldNumeric) {
+            throw new TimeSeriesParseException("Некорректное значение временного ряда", fieldIndex < 2 ? lineStart : valueOffset);
+        }
+        if (timestamped == null) {
+            timestamped = integerTime;
+        }
+        if (!timestamped) {
+            timeSeries.addTimeValue(value);
+            return;
+        }
+        if (!integerTime) {
+            throw new TimeSeriesParseException("Некорректная метка времени", lineStart);
+        }
+        if (timeSeries.getSize() > 0 && time != previousTime + 1) {
+            throw new TimeSeriesParseException("Метка времени " + time + " нарушает непрерывность ряда", lineStart);
+        }
+        previousTime = time;
+        timeSeries.addTimeValue(value);
+    }
+
+    private void startLine() {
+        resetField();
+        fieldIndex = 0;
+        lineHasText = false;
+        lineStart = position + 1;
+        hasValue = false;
+        lastFieldNumeric = false;
+        integerTime = false;
+    }
+
+    private void resetField() {
+        state = State.EMPTY;
+        trailingSpace = false;
+        negative = false;
+        mantissa = 0;
+        digits = 0;
+        hasDigits = false;
+        fractionDigits = 0;
+        exponentNegative = false;
+        exponent = 0;
+        inexact = false;
+        tokenLength = 0;
+    }
+
+    private void toText() {
+        if (state != State.TEXT) {
+            state = State.TEXT;
+            errorOffset = position;
+        }
+    }
+
+    /**
+     * Позиция, с которой поле перестало быть числом.
+     */
+    private long invalidOffset() {
+        return state == State.TEXT ? errorOffset : fieldStart;
+    }
+
+    private boolean isNumber() {
+        return hasDigits && (state == State.INTEGER || state == State.FRACTION || state == State.EXPONENT);
+    }
+
+    private boolean hasSeparator() {
+        for (int i = 0; i < tokenLength; ++i) {
+            if (token[i] == '.' || token[i] == ',') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addDigit(byte b, boolean fraction) {
+        hasDigits = true;
+        int digit = b - '0';
+        if (digits == 0 && digit == 0) {
+            // незначащий ноль
+            if (fraction) {
+                ++fractionDigits;
+            }
+            return;
+        }
+        if (digits < MAX_DIGITS) {
+            mantissa = mantissa * 10 + digit;
+            ++digits;
+            if (fraction) {
+                ++fractionDigits;
+            }
+        } else {
+            inexact = true;
+        }
+    }
+
+    private void addExponentDigit(byte b) {
+        if (exponent < MAX_EXPONENT) {
+            exponent = exponent * 10 + (b - '0');
+        }
+    }
+
+    /**
+     * Преобразовать разобранное число в double.
+     * Если мантисса и степень десяти представимы точно, результат получается одним точным делением или умножением
+     * (совпадает с Double.parseDouble), иначе используется Double.parseDouble.
+     *
+     * @return значение.
+     */
+    private double toDouble() {
+        int scale = (exponentNegative ? -exponent : exponent) - fractionDigits;
+        if (!inexact && mantissa <= MAX_EXACT_MANTISSA && Math.abs(scale) < POWERS_OF_TEN.length) {
+            double result = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+            return negative ? -result : result;
+        }
+        for (int i = 0; i < tokenLength; ++i) {
+            if (token[i] == ',') {
+                token[i] = '.';
+            }
+        }
+        return Double.parseDouble(new String(token, 0, tokenLength));
+    }
+
+    private void appendToken(char c) {
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, token.length * 2);
+        }
+        token[tokenLength++] = c;
+    }
+
+    /**
+     * Пропустить метку порядка байтов UTF-8 в начале файла.
+     *
+     * @param buffer начало файла.
+     */
+    private void skipByteOrderMark(MappedByteBuffer buffer) {
+        if (buffer.remaining() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            buffer.position(3);
+            position = 3;
+            lineStart = 3;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isDecimalSeparator(byte b) {
+        return b == '.' || b == ',';
+    }
+}
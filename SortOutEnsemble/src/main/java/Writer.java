@@ -1,26 +1,56 @@
+import domain.Model;
+import domain.ModelSnapshot;
 import domain.TimeSeries;
+import domain.exceptions.ForecastNotFitedModelException;
+import domain.metrics.Metrics;
+import domain.metrics.MetricsRegistry;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
 public class Writer {
-    private final static String DIR = "output\\";
+    private final static String DIR = "output";
     private final static String TS_FILE_NAME = "ts%n%.csv";
     private final static String PARAMS_FILE_NAME = "params%n%.csv";
+    private final static String MODEL_FILE_NAME = "model%n%.bin";
     private final static String EXCEPTION_FILE_NAME = "exception.csv";
+    private final static String FAILURES_FILE_NAME = "failures.csv";
+    private final static String RESULTS_FILE_NAME = "results.bin";
+    private final static String BATCH_FILE_NAME = "batch.csv";
+    private final static String METRICS_JSON_FILE_NAME = "metrics.json";
+    private final static String METRICS_PROMETHEUS_FILE_NAME = "metrics.prom";
 
     private static final Charset CHARSET = Charset.forName("windows-1251");
     private static final CSVFormat CSV_WRITER_FORMAT = CSVFormat.EXCEL.withDelimiter(';');
 
+    /**
+     * Каталог выходных файлов.
+     */
+    private final Path dir;
+
+    public Writer() {
+        this(Paths.get(DIR));
+    }
+
+    /**
+     * @param dir каталог выходных файлов ряда.
+     */
+    public Writer(Path dir) {
+        this.dir = dir;
+    }
+
     /**
      * Запись результирующих временных рядов.
      *
@@ -29,7 +59,8 @@ public class Writer {
      * @throws IOException при записи в файл.
      */
     public void writeTs(TimeSeries timeSeries, int order, String name) throws IOException {
-        Path path = Paths.get(DIR, TS_FILE_NAME.replace("%n%", name));
+        long start = Metrics.start();
+        Path path = dir.resolve(TS_FILE_NAME.replace("%n%", name));
         BufferedWriter writer = Files.newBufferedWriter(path, CHARSET);
         CSVPrinter printer = new CSVPrinter(writer, CSV_WRITER_FORMAT);
 
@@ -42,6 +73,7 @@ public class Writer {
         }
         writer.flush();
         writer.close();
+        Metrics.stop(Metrics.Stage.WRITER, "ts", start);
     }
 
     /**
@@ -54,7 +86,8 @@ public class Writer {
      * @throws IOException при записи в файл.
      */
     public void writeParams(double mapeTrain, double mapeTest, double sMape, String description, String name) throws IOException {
-        Path path = Paths.get(DIR, PARAMS_FILE_NAME.replace("%n%", name));
+        long start = Metrics.start();
+        Path path = dir.resolve(PARAMS_FILE_NAME.replace("%n%", name));
         BufferedWriter writer = Files.newBufferedWriter(path, CHARSET);
         CSVPrinter printer = new CSVPrinter(writer, CSV_WRITER_FORMAT);
 
@@ -76,6 +109,68 @@ public class Writer {
 
         writer.flush();
         writer.close();
+        Metrics.stop(Metrics.Stage.WRITER, "params", start);
+    }
+
+    /**
+     * Запись снимка обученной модели (см. {@link ModelSnapshot}).
+     *
+     * @param model обученная модель.
+     * @param name  название ряда.
+     * @throws ForecastNotFitedModelException модель не была обучена.
+     * @throws IOException                    при записи в файл.
+     */
+    public void writeModel(Model model, String name) throws ForecastNotFitedModelException, IOException {
+        long start = Metrics.start();
+        Path path = dir.resolve(MODEL_FILE_NAME.replace("%n%", name));
+        try (OutputStream stream = Files.newOutputStream(path)) {
+            ModelSnapshot.write(model, stream);
+        }
+        Metrics.stop(Metrics.Stage.WRITER, "model", start);
+    }
+
+    /**
+     * Запись замеров этапов расчета в JSON и в текстовом формате Prometheus (см. {@link Metrics}).
+     *
+     * @param registry реестр замеров.
+     * @throws IOException при записи в файл.
+     */
+    public void writeMetrics(MetricsRegistry registry) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve(METRICS_JSON_FILE_NAME), StandardCharsets.UTF_8)) {
+            registry.writeJson(writer);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve(METRICS_PROMETHEUS_FILE_NAME), StandardCharsets.UTF_8)) {
+            registry.writePrometheus(writer);
+        }
+    }
+
+    /**
+     * Открыть двоичный файл результатов вместо отдельных CSV-файлов на каждую модель.
+     *
+     * @return файл результатов.
+     * @throws IOException при создании файла.
+     */
+    public ResultStore openResultStore() throws IOException {
+        return new ResultStore(getResultStorePath());
+    }
+
+    /**
+     * Получить путь к двоичному файлу результатов.
+     *
+     * @return путь к файлу.
+     */
+    public Path getResultStorePath() {
+        return dir.resolve(RESULTS_FILE_NAME);
+    }
+
+    /**
+     * Открыть журнал пакетной обработки: по строке на обработанный ряд.
+     *
+     * @return журнал.
+     * @throws IOException при создании файла.
+     */
+    public CSVPrinter openBatchLog() throws IOException {
+        return new CSVPrinter(Files.newBufferedWriter(dir.resolve(BATCH_FILE_NAME), CHARSET), CSV_WRITER_FORMAT);
     }
 
     /**
@@ -85,7 +180,7 @@ public class Writer {
      * @param stackTrace  трасировка.
      */
     public void writeException(String description, String stackTrace) throws IOException {
-        Path path = Paths.get(DIR, EXCEPTION_FILE_NAME);
+        Path path = dir.resolve(EXCEPTION_FILE_NAME);
         BufferedWriter writer = Files.newBufferedWriter(path, CHARSET);
         CSVPrinter printer = new CSVPrinter(writer, CSV_WRITER_FORMAT);
 
@@ -100,4 +195,28 @@ public class Writer {
         writer.flush();
         writer.close();
     }
+
+    /**
+     * Запись ошибок обучения моделей, исключенных из перебора.
+     *
+     * @param failures ошибки обучения.
+     * @throws IOException при записи в файл.
+     */
+    public void writeFailures(List<ModelFitScheduler.Failure> failures) throws IOException {
+        Path path = dir.resolve(FAILURES_FILE_NAME);
+        BufferedWriter writer = Files.newBufferedWriter(path, CHARSET);
+        CSVPrinter printer = new CSVPrinter(writer, CSV_WRITER_FORMAT);
+
+        for (ModelFitScheduler.Failure failure : failures) {
+            List<String> record = new ArrayList<>();
+            record.add(String.valueOf(failure.getModel()));
+            record.add(String.valueOf(failure.getOrder()));
+            record.add(String.valueOf(failure.getCause()));
+            record.add(Arrays.toString(failure.getCause().getStackTrace()));
+            printer.printRecord(record);
+        }
+
+        writer.flush();
+        writer.close();
+    }
 }
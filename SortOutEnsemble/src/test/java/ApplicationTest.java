@@ -0,0 +1,68 @@
+import domain.Model;
+import domain.ModelSnapshot;
+import domain.TimeSeries;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ApplicationTest {
+    private static final Charset CHARSET = Charset.forName("windows-1251");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ShouldApplySortOutSnapshotWithoutRefit() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 80; ++i) {
+            content.append(String.valueOf(10 + 3 * Math.sin(i / 4.0) + 0.02 * i).replace('.', ',')).append(";\n");
+        }
+        Path sortOutInput = createInput("sortout", content.toString(), "1;0;0;1000000000;1000000000;2;0;0;0;1;5;Test;");
+        Path sortOutOutput = folder.newFolder("sortout-output").toPath();
+        System.setProperty("models.snapshot", "true");
+        try {
+            assertTrue(Application.process(new Reader(sortOutInput), new Writer(sortOutOutput), null));
+        } finally {
+            System.clearProperty("models.snapshot");
+        }
+
+        Path applyInput = createInput("apply", content.toString(), "1;0;0;1000000000;1000000000;2;0;0;0;1;5;Apply;");
+        String description = Files.readAllLines(sortOutOutput.resolve("params1.csv"), CHARSET).get(3);
+        Files.write(applyInput.resolve("model.csv"), Collections.singletonList(description), CHARSET);
+        Files.copy(sortOutOutput.resolve("model1.bin"), applyInput.resolve("model.bin"));
+        Path applyOutput = folder.newFolder("apply-output").toPath();
+        assertTrue(Application.process(new Reader(applyInput), new Writer(applyOutput), null));
+        assertFalse(Files.exists(applyOutput.resolve("exception.csv")));
+
+        TimeSeries timeSeries = new Reader(applyInput).readTimeSeries();
+        timeSeries.normalize();
+        Model sortedOut = readSnapshot(sortOutOutput.resolve("model1.bin"), timeSeries);
+        Model applied = readSnapshot(applyOutput.resolve("model0.bin"), timeSeries);
+        // при переобучении ансамбль был бы обучен на разбиении применения 90/10
+        assertEquals(70, applied.getTrainPercent());
+        assertEquals(20, applied.getTestPercent());
+        assertArrayEquals(sortedOut.getForecast(), applied.getForecast(), 0);
+    }
+
+    private Path createInput(String name, String timeSeries, String params) throws Exception {
+        Path dir = folder.newFolder(name).toPath();
+        Files.write(dir.resolve("ts.csv"), timeSeries.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("params.csv"), Collections.singletonList(params), StandardCharsets.UTF_8);
+        return dir;
+    }
+
+    private static Model readSnapshot(Path path, TimeSeries timeSeries) throws Exception {
+        try (InputStream stream = Files.newInputStream(path)) {
+            return ModelSnapshot.read(stream, timeSeries);
+        }
+    }
+}
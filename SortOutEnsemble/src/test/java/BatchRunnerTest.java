@@ -0,0 +1,56 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ShouldIsolateSeriesFailures() throws Exception {
+        Path input = folder.newFolder("input").toPath();
+        createSeries(input.resolve("a"), "1;0;0;1;1;3;2;2;0;1;5;Test;");
+        createSeries(input.resolve("b"), "1;0;0;1;1;3;2;2;0;1;5;Apply;");
+        createSeries(input.resolve("c"), "not;params");
+        Path output = folder.getRoot().toPath().resolve("output");
+
+        List<Path> series = BatchRunner.listSeries(input);
+        assertEquals(Arrays.asList(input.resolve("a"), input.resolve("b"), input.resolve("c")), series);
+        int failed;
+        try (BatchRunner runner = new BatchRunner(output, 2)) {
+            failed = runner.run(series);
+        }
+
+        assertEquals(2, failed);
+        assertTrue(Files.exists(output.resolve("a").resolve("params1.csv")));
+        assertFalse(Files.exists(output.resolve("a").resolve("model1.bin")));
+        assertFalse(Files.exists(output.resolve("a").resolve("exception.csv")));
+        assertTrue(Files.exists(output.resolve("b").resolve("exception.csv")));
+        assertTrue(Files.exists(output.resolve("c").resolve("exception.csv")));
+        assertEquals(3, Files.readAllLines(output.resolve("batch.csv"), StandardCharsets.US_ASCII).size());
+    }
+
+    @Test
+    public void ShouldReadManifest() throws Exception {
+        Path manifest = folder.newFile("series.txt").toPath();
+        Files.write(manifest, Arrays.asList("# nightly", "", "x", " y/z "), StandardCharsets.UTF_8);
+        Path base = manifest.toAbsolutePath().getParent();
+        assertEquals(Arrays.asList(base.resolve("x"), base.resolve("y/z")), BatchRunner.listSeries(manifest));
+    }
+
+    private static void createSeries(Path dir, String params) throws Exception {
+        Files.createDirectories(dir);
+        Files.copy(Paths.get("input", "ts.csv"), dir.resolve("ts.csv"));
+        Files.write(dir.resolve("params.csv"), Collections.singletonList(params), StandardCharsets.UTF_8);
+    }
+}
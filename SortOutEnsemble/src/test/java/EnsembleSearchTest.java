@@ -0,0 +1,89 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EnsembleSearchTest {
+    /**
+     * Ошибки моделей: ансамбль тем лучше, чем меньше средняя ошибка входящих в него моделей.
+     */
+    private static final double[] ERRORS = {0.5, 0.1, 0.4, 0.2, 0.9};
+
+    @Test
+    public void ShouldEnumerateTableSortOut() throws Exception {
+        List<Long> subsets = new ArrayList<>();
+        new ExhaustiveSearch().search(3, subset -> {
+            subsets.add(subset);
+            return 0;
+        }, SearchBudget.unlimited());
+        // строки 011, 101, 110, 111: первый символ строки - первая модель
+        assertEquals(4, subsets.size());
+        assertEquals(Long.valueOf(0b110), subsets.get(0));
+        assertEquals(Long.valueOf(0b101), subsets.get(1));
+        assertEquals(Long.valueOf(0b011), subsets.get(2));
+        assertEquals(Long.valueOf(0b111), subsets.get(3));
+    }
+
+    @Test
+    public void ShouldFindBestPairGreedy() throws Exception {
+        List<Long> subsets = new ArrayList<>();
+        new GreedySearch().search(ERRORS.length, subset -> {
+            subsets.add(subset);
+            return meanError(subset);
+        }, SearchBudget.unlimited());
+        assertTrue(subsets.contains(0b01010L));
+        assertFalse(subsets.contains(0b11111L));
+    }
+
+    @Test
+    public void ShouldCutByQualityBorder() throws Exception {
+        List<Long> subsets = new ArrayList<>();
+        new BranchAndBoundSearch(0.3).search(ERRORS.length, subset -> {
+            subsets.add(subset);
+            return meanError(subset);
+        }, SearchBudget.unlimited());
+        // подмножество {0, 2} хуже порога, поэтому {0, 2, 4} не строится
+        assertTrue(subsets.contains(0b00101L));
+        assertFalse(subsets.contains(0b10101L));
+        assertTrue(subsets.contains(0b01010L));
+    }
+
+    @Test
+    public void ShouldRespectBudget() throws Exception {
+        SearchBudget budget = new SearchBudget(5, Long.MAX_VALUE);
+        List<Long> subsets = new ArrayList<>();
+        new BeamSearch(2).search(ERRORS.length, subset -> {
+            if (Long.bitCount(subset) > 1) {
+                subsets.add(subset);
+            }
+            return meanError(subset);
+        }, budget);
+        assertEquals(5, subsets.size());
+        assertTrue(budget.isExhausted());
+    }
+
+    @Test
+    public void ShouldParseBudget() {
+        SearchBudget budget = SearchBudget.parse("2, 0");
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldRejectMalformedBudget() {
+        SearchBudget.parse("100");
+    }
+
+    private static double meanError(long subset) {
+        double sum = 0;
+        for (int i = 0; i < ERRORS.length; ++i) {
+            if ((subset & (1L << i)) != 0) {
+                sum += ERRORS[i];
+            }
+        }
+        return sum / Long.bitCount(subset);
+    }
+}
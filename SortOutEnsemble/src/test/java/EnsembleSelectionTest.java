@@ -0,0 +1,29 @@
+import domain.Ensemble;
+import domain.TimeSeries;
+import domain.models.ensemble.WeightedAverageEnsemble;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EnsembleSelectionTest {
+    @Test
+    public void ShouldKeepBestInArrivalOrder() throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 1; i <= 10; ++i) {
+            timeSeries.addTimeValue(i);
+        }
+        double[] errors = {0.3, 0.1, 0.2, Double.NaN, 0.1, 0.1};
+        boolean[] accepted = {true, true, true, false, true, false};
+        List<Ensemble> ensembles = new ArrayList<>();
+        EnsembleSelection selection = new EnsembleSelection(2);
+        for (int i = 0; i < errors.length; ++i) {
+            ensembles.add(new WeightedAverageEnsemble(timeSeries, 1, 70, 20));
+            assertEquals(accepted[i], selection.offer(ensembles.get(i), errors[i]));
+        }
+        assertEquals(Arrays.asList(ensembles.get(1), ensembles.get(4)), selection.getEnsembles());
+    }
+}
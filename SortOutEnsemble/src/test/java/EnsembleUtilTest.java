@@ -0,0 +1,69 @@
+import domain.Model;
+import domain.TimeSeries;
+import domain.models.single.Arima;
+import domain.models.single.Neural;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class EnsembleUtilTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ShouldUseOnlyMatchingSnapshot() throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 1; i <= 80; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 4.0));
+        }
+        Arima arima = new Arima(timeSeries, 2, 5, 70, 20);
+        arima.fit();
+        Path dir = folder.getRoot().toPath();
+        new Writer(dir).writeModel(arima, "");
+        Reader reader = new Reader(dir);
+
+        Model restored = new EnsembleUtil(timeSeries, 5, 70, 20, reader).readSnapshot(new Arima(timeSeries, 2, 5, 70, 20));
+        assertNotNull(restored);
+        assertArrayEquals(arima.getForecast(), restored.getForecast(), 0);
+
+        assertNull(new EnsembleUtil(timeSeries, 3, 70, 20, reader).readSnapshot(new Arima(timeSeries, 2, 3, 70, 20)));
+        Model resplit = new EnsembleUtil(timeSeries, 5, 90, 10, reader).readSnapshot(new Arima(timeSeries, 2, 5, 90, 10));
+        assertNotNull(resplit);
+        assertEquals(70, resplit.getTrainPercent());
+        assertArrayEquals(arima.getForecast(), resplit.getForecast(), 0);
+
+        Neural neural = new Neural(timeSeries, 3, 5, 70, 20, Neural.Engine.JAVA);
+        neural.fit();
+        new Writer(dir).writeModel(neural, "");
+        EnsembleUtil ensembleUtil = new EnsembleUtil(timeSeries, 5, 70, 20, reader);
+        assertNotNull(ensembleUtil.readSnapshot(new Neural(timeSeries, 3, 5, 70, 20, Neural.Engine.JAVA)));
+        assertNull(ensembleUtil.readSnapshot(new Neural(timeSeries, 3, 5, 70, 20, Neural.Engine.DL4J)));
+    }
+
+    @Test
+    public void ShouldRefitOnCorruptSnapshot() throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 1; i <= 40; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 4.0));
+        }
+        Neural neural = new Neural(timeSeries, 3, 5, 70, 20, Neural.Engine.DL4J);
+        neural.fit();
+        Path dir = folder.getRoot().toPath();
+        new Writer(dir).writeModel(neural, "");
+        // портим середину архива DL4J, длина снимка сохраняется
+        Path path = dir.resolve("model.bin");
+        byte[] bytes = Files.readAllBytes(path);
+        for (int i = bytes.length / 3; i < bytes.length / 2; ++i) {
+            bytes[i] ^= 0x5A;
+        }
+        Files.write(path, bytes);
+
+        EnsembleUtil ensembleUtil = new EnsembleUtil(timeSeries, 5, 70, 20, new Reader(dir));
+        assertNull(ensembleUtil.readSnapshot(new Neural(timeSeries, 3, 5, 70, 20, Neural.Engine.DL4J)));
+    }
+}
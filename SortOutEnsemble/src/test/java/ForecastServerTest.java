@@ -0,0 +1,210 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import domain.Model;
+import domain.TimeSeries;
+import domain.models.single.Arima;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ForecastServerTest {
+    @Test
+    public void ShouldServeAndUpdateForecast() throws Exception {
+        CountingStore store = new CountingStore();
+        try (ForecastServer server = new ForecastServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), store, 4)) {
+            server.start();
+            String base = "http://localhost:" + server.getAddress().getPort() + "/series/";
+
+            Arima expected = store.create();
+            double scale = expected.getTimeSeries().getMaxValue();
+            assertArrayEquals(denormalize(expected.getForecast(), scale), parseForecast(request("GET", base + "a/forecast", null, 200)), 1e-12);
+
+            expected.update(12.0 / scale);
+            String observed = request("POST", base + "a/observations", "{\"values\": [12.0]}", 200);
+            assertArrayEquals(denormalize(expected.getForecast(), scale), parseForecast(observed), 1e-12);
+            assertArrayEquals(new double[]{12.0}, store.appended.get("a"), 0);
+
+            request("GET", base + "missing/forecast", null, 404);
+            request("POST", base + "a/observations", "[1, 2]", 400);
+            request("POST", base + "a/refit", "", 202);
+        }
+    }
+
+    @Test
+    public void ShouldEvictLeastRecentlyUsed() throws Exception {
+        CountingStore store = new CountingStore();
+        try (ForecastServer server = new ForecastServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), store, 2)) {
+            server.forecast("a");
+            server.forecast("b");
+            server.forecast("a");
+            server.forecast("c");
+            server.forecast("a");
+            assertEquals(1, store.loads.get("a").get());
+            server.forecast("b");
+            assertEquals(2, store.loads.get("b").get());
+        }
+    }
+
+    @Test
+    public void ShouldReplayObservationsAfterRefit() throws Exception {
+        RefitStore store = new RefitStore();
+        try (ForecastServer server = new ForecastServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), store, 4)) {
+            server.forecast("a");
+            assertTrue(server.refit("a"));
+            assertTrue(store.started.await(10, TimeUnit.SECONDS));
+            double[] old = server.observe("a", new double[]{12.0});
+            store.release.countDown();
+            ForecastServer.Status status = awaitRefit(server, "a");
+
+            Arima expected = store.create(3);
+            double scale = expected.getTimeSeries().getMaxValue();
+            expected.update(12.0 / scale);
+            assertNull(status.getLastRefitError());
+            assertEquals(41, status.getSize());
+            assertArrayEquals(denormalize(expected.getForecast(), scale), server.forecast("a"), 1e-12);
+            assertFalse(Arrays.equals(old, server.forecast("a")));
+        }
+    }
+
+    @Test
+    public void ShouldReportRefitFailure() throws Exception {
+        RefitStore store = new RefitStore();
+        store.failure = new IOException("нет места на диске");
+        store.release.countDown();
+        try (ForecastServer server = new ForecastServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), store, 4)) {
+            server.start();
+            double[] forecast = server.forecast("a");
+            assertTrue(server.refit("a"));
+            ForecastServer.Status status = awaitRefit(server, "a");
+
+            assertEquals(String.valueOf(store.failure), status.getLastRefitError());
+            assertArrayEquals(forecast, server.forecast("a"), 0);
+            String base = "http://localhost:" + server.getAddress().getPort() + "/series/";
+            JsonObject response = new Gson().fromJson(request("GET", base + "a/status", null, 200), JsonObject.class);
+            assertEquals(String.valueOf(store.failure), response.get("lastRefitError").getAsString());
+            request("GET", base + "missing/status", null, 404);
+        }
+    }
+
+    private static ForecastServer.Status awaitRefit(ForecastServer server, String id) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        ForecastServer.Status status = server.status(id);
+        while (status.isRefitting()) {
+            assertTrue("Переобучение не завершилось", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            status = server.status(id);
+        }
+        return status;
+    }
+
+    private static double[] parseForecast(String response) {
+        Gson gson = new Gson();
+        return gson.fromJson(gson.fromJson(response, JsonObject.class).get("forecast"), double[].class);
+    }
+
+    private static double[] denormalize(double[] forecast, double scale) {
+        double[] result = new double[forecast.length];
+        for (int i = 0; i < forecast.length; ++i) {
+            result[i] = forecast[i] * scale;
+        }
+        return result;
+    }
+
+    private static String request(String method, String url, String body, int status) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream stream = connection.getOutputStream()) {
+                stream.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(status, connection.getResponseCode());
+        try (InputStream stream = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int b;
+            while ((b = stream.read()) != -1) {
+                bytes.write(b);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class CountingStore implements ModelStore {
+        final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+        final Map<String, double[]> appended = new ConcurrentHashMap<>();
+
+        @Override
+        public Model load(String id) throws Exception {
+            if (id.equals("missing")) {
+                return null;
+            }
+            loads.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+            return create();
+        }
+
+        @Override
+        public Model refit(String id) throws Exception {
+            return load(id);
+        }
+
+        @Override
+        public void append(String id, double[] values) {
+            appended.put(id, values);
+        }
+
+        @Override
+        public void save(String id, Model model) {
+        }
+
+        Arima create() throws Exception {
+            return create(2);
+        }
+
+        Arima create(int order) throws Exception {
+            TimeSeries timeSeries = new TimeSeries();
+            for (int i = 0; i < 40; ++i) {
+                timeSeries.addTimeValue(5 + 4 * Math.sin(i / 3.0) + 0.02 * i);
+            }
+            timeSeries.normalize();
+            Arima arima = new Arima(timeSeries, order, 3, 90, 10);
+            arima.fit();
+            return arima;
+        }
+    }
+
+    /**
+     * Хранилище, переобучение в котором ждет разрешения теста и строит модель другого порядка.
+     */
+    private static class RefitStore extends CountingStore {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile Exception failure;
+
+        @Override
+        public Model refit(String id) throws Exception {
+            started.countDown();
+            release.await();
+            if (failure != null) {
+                throw failure;
+            }
+            return create(3);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import domain.Model;
+import domain.TimeSeries;
+import domain.models.Stub;
+import domain.models.single.Arima;
+import domain.models.single.Fuzzy;
+import domain.models.single.FuzzyBackend;
+import domain.models.single.LocalFuzzyBackend;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ModelFitSchedulerTest {
+    @Test
+    public void ShouldFitFuzzyModelsInOneBatch() throws Exception {
+        BatchBackend backend = new BatchBackend(false);
+        Map<SortOutEnsemble.Models, List<Model>> fited = fit(backend);
+
+        assertEquals(1, backend.batches.get());
+        assertEquals(0, backend.singles.get());
+        assertEquals(4, fited.get(SortOutEnsemble.Models.FUZZY).size());
+        for (Model model : fited.get(SortOutEnsemble.Models.FUZZY)) {
+            assertTrue(model.isFit());
+        }
+    }
+
+    @Test
+    public void ShouldFitOneByOneWhenBatchFails() throws Exception {
+        BatchBackend backend = new BatchBackend(true);
+        Map<SortOutEnsemble.Models, List<Model>> fited = fit(backend);
+
+        assertEquals(1, backend.batches.get());
+        assertEquals(4, backend.singles.get());
+        assertEquals(4, fited.get(SortOutEnsemble.Models.FUZZY).size());
+    }
+
+    @Test
+    public void ShouldKeepOriginalOrder() throws Exception {
+        List<Model> models = new ArrayList<>();
+        for (int order = 1; order <= 8; ++order) {
+            // модели меньшего порядка обучаются дольше и завершаются позже
+            models.add(new SlowArima(order, 5 * (9 - order), null));
+        }
+        Map<SortOutEnsemble.Models, List<Model>> candidates = new EnumMap<>(SortOutEnsemble.Models.class);
+        candidates.put(SortOutEnsemble.Models.ARIMA, models);
+        try (ModelFitScheduler scheduler = new ModelFitScheduler()) {
+            scheduler.setParallelism(SortOutEnsemble.Models.ARIMA, 4);
+            List<ModelFitScheduler.Failure> failures = Collections.synchronizedList(new ArrayList<>());
+            assertEquals(models, scheduler.fit(candidates, failures).get(SortOutEnsemble.Models.ARIMA));
+            assertEquals(Collections.emptyList(), failures);
+        }
+    }
+
+    @Test
+    public void ShouldExcludeFailedModels() throws Exception {
+        List<Model> models = new ArrayList<>();
+        for (int order = 1; order <= 5; ++order) {
+            Throwable failure = (order == 2) ? new IllegalStateException("сбой обучения")
+                    : (order == 4) ? new StackOverflowError() : null;
+            models.add(new SlowArima(order, 0, failure));
+        }
+        Map<SortOutEnsemble.Models, List<Model>> candidates = new EnumMap<>(SortOutEnsemble.Models.class);
+        candidates.put(SortOutEnsemble.Models.ARIMA, models);
+        try (ModelFitScheduler scheduler = new ModelFitScheduler()) {
+            // единственный поток типа не должен потерять модели после ошибки
+            scheduler.setParallelism(SortOutEnsemble.Models.ARIMA, 1);
+            List<ModelFitScheduler.Failure> failures = Collections.synchronizedList(new ArrayList<>());
+            List<Model> fited = scheduler.fit(candidates, failures).get(SortOutEnsemble.Models.ARIMA);
+
+            assertEquals(Arrays.asList(models.get(0), models.get(2), models.get(4)), fited);
+            assertEquals(2, failures.size());
+            for (ModelFitScheduler.Failure failure : failures) {
+                assertEquals(SortOutEnsemble.Models.ARIMA, failure.getModel());
+            }
+            assertEquals(2, failures.get(0).getOrder());
+            assertEquals(4, failures.get(1).getOrder());
+
+            // ошибки следующего вызова не включают ошибки предыдущего
+            List<ModelFitScheduler.Failure> next = Collections.synchronizedList(new ArrayList<>());
+            scheduler.fit(Collections.singletonMap(SortOutEnsemble.Models.ARIMA, Collections.singletonList(models.get(0))), next);
+            assertEquals(Collections.emptyList(), next);
+        }
+    }
+
+    @Test
+    public void ShouldRespectParallelismLimit() throws Exception {
+        List<Model> models = new ArrayList<>();
+        for (int order = 1; order <= 8; ++order) {
+            models.add(new SlowArima(order, 30, null));
+        }
+        Map<SortOutEnsemble.Models, List<Model>> candidates = new EnumMap<>(SortOutEnsemble.Models.class);
+        candidates.put(SortOutEnsemble.Models.ARIMA, models);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (ModelFitScheduler scheduler = new ModelFitScheduler(executor)) {
+            scheduler.setParallelism(SortOutEnsemble.Models.ARIMA, 2);
+            SlowArima.running.set(0);
+            SlowArima.maxRunning.set(0);
+            scheduler.fit(candidates, Collections.synchronizedList(new ArrayList<>()));
+            assertEquals(2, SlowArima.maxRunning.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<SortOutEnsemble.Models, List<Model>> fit(FuzzyBackend backend) throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 60; ++i) {
+            timeSeries.addTimeValue(1 + (i % 4));
+        }
+        List<Model> models = new ArrayList<>();
+        for (int order = 1; order <= 4; ++order) {
+            models.add(new Fuzzy(timeSeries, order, 3, 70, 20, backend));
+        }
+        Map<SortOutEnsemble.Models, List<Model>> candidates = new EnumMap<>(SortOutEnsemble.Models.class);
+        candidates.put(SortOutEnsemble.Models.FUZZY, models);
+        try (ModelFitScheduler scheduler = new ModelFitScheduler()) {
+            List<ModelFitScheduler.Failure> failures = Collections.synchronizedList(new ArrayList<>());
+            Map<SortOutEnsemble.Models, List<Model>> fited = scheduler.fit(candidates, failures);
+            assertEquals(Collections.emptyList(), failures);
+            return fited;
+        }
+    }
+
+    private static class BatchBackend implements FuzzyBackend {
+        private final FuzzyBackend local = new LocalFuzzyBackend();
+        private final boolean failBatch;
+        private final AtomicInteger batches = new AtomicInteger();
+        private final AtomicInteger singles = new AtomicInteger();
+
+        BatchBackend(boolean failBatch) {
+            this.failBatch = failBatch;
+        }
+
+        @Override
+        public Stub fit(Stub request) throws IOException {
+            singles.incrementAndGet();
+            return local.fit(request);
+        }
+
+        @Override
+        public List<Stub> fitAll(List<Stub> requests) throws IOException {
+            batches.incrementAndGet();
+            if (failBatch) {
+                throw new IOException("Пакетный адрес недоступен");
+            }
+            return local.fitAll(requests);
+        }
+
+        @Override
+        public boolean isBatchPreferred() {
+            return true;
+        }
+    }
+
+    /**
+     * Авторегрессионная модель с задержкой и ошибкой обучения, считающая одновременно обучаемые модели.
+     */
+    private static class SlowArima extends Arima {
+        static final AtomicInteger running = new AtomicInteger();
+        static final AtomicInteger maxRunning = new AtomicInteger();
+        private final long delay;
+        private final Throwable failure;
+
+        SlowArima(int order, long delay, Throwable failure) throws Exception {
+            super(createTimeSeries(), order, 3, 70, 20);
+            this.delay = delay;
+            this.failure = failure;
+        }
+
+        @Override
+        public void fit() {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(delay);
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                super.fit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        private static TimeSeries createTimeSeries() {
+            TimeSeries timeSeries = new TimeSeries();
+            for (int i = 0; i < 60; ++i) {
+                timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 3.0));
+            }
+            return timeSeries;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import domain.Model;
+import domain.TimeSeries;
+import domain.exceptions.InvalidOrderException;
+import domain.models.single.Arima;
+import domain.models.single.Fuzzy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ModelScreeningTest {
+    @Test
+    public void ShouldScreenArimaAndFuzzyCandidates() throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        Random random = new Random(5);
+        for (int i = 0; i < 200; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 5.0) + 0.05 * random.nextDouble());
+        }
+        Map<SortOutEnsemble.Models, List<Model>> candidates = new EnumMap<>(SortOutEnsemble.Models.class);
+        List<Model> arima = new ArrayList<>();
+        for (int order = 1; order <= 8; ++order) {
+            arima.add(new Arima(timeSeries, order, 1, 70, 20));
+        }
+        List<Model> fuzzy = new ArrayList<>();
+        for (int order : new int[]{1, 2, 3, 15}) {
+            fuzzy.add(new Fuzzy(timeSeries, order, 1, 70, 20));
+        }
+        candidates.put(SortOutEnsemble.Models.ARIMA, arima);
+        candidates.put(SortOutEnsemble.Models.FUZZY, fuzzy);
+
+        Map<SortOutEnsemble.Models, List<Integer>> lengths = new EnumMap<>(SortOutEnsemble.Models.class);
+        ModelScreening.ProbeFactory factory = (type, order, series) -> {
+            synchronized (lengths) {
+                lengths.computeIfAbsent(type, key -> new ArrayList<>()).add(series.getSize());
+            }
+            if (type == SortOutEnsemble.Models.ARIMA && order == 1) {
+                throw new InvalidOrderException();
+            }
+            return (type == SortOutEnsemble.Models.ARIMA)
+                    ? new Arima(series, order, 1, 70, 20)
+                    : new Fuzzy(series, order, 1, 70, 20);
+        };
+        Map<SortOutEnsemble.Models, List<Model>> survivors;
+        try (ModelFitScheduler scheduler = new ModelFitScheduler()) {
+            survivors = new ModelScreening(2, 2).screen(candidates, timeSeries, 70, 20, factory, scheduler);
+        }
+
+        // шаги на 1/4 и 1/2 ряда; на первом пробный ряд короче наибольшего порядка нечетких моделей
+        assertEquals(Arrays.asList(50, 50, 50, 50, 50, 50, 50, 50, 100, 100, 100, 100), lengths.get(SortOutEnsemble.Models.ARIMA));
+        assertEquals(Arrays.asList(100, 100, 100, 100), lengths.get(SortOutEnsemble.Models.FUZZY));
+        assertEquals(2, survivors.get(SortOutEnsemble.Models.ARIMA).size());
+        assertEquals(2, survivors.get(SortOutEnsemble.Models.FUZZY).size());
+        assertFalse(survivors.get(SortOutEnsemble.Models.ARIMA).contains(arima.get(0)));
+        assertTrue(arima.containsAll(survivors.get(SortOutEnsemble.Models.ARIMA)));
+        assertTrue(fuzzy.containsAll(survivors.get(SortOutEnsemble.Models.FUZZY)));
+        for (Model model : survivors.get(SortOutEnsemble.Models.ARIMA)) {
+            assertFalse(model.isFit());
+        }
+    }
+
+    @Test
+    public void ShouldKeepBestInOriginalOrder() throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 1; i <= 20; ++i) {
+            timeSeries.addTimeValue(i);
+        }
+        List<Model> models = new ArrayList<>();
+        for (int order = 1; order <= 5; ++order) {
+            models.add(new Arima(timeSeries, order, 1, 70, 20));
+        }
+        double[] scores = {0.4, 0.1, Double.POSITIVE_INFINITY, 0.2, 0.1};
+        assertEquals(Arrays.asList(models.get(1), models.get(3), models.get(4)),
+                ModelScreening.keepBest(models, scores, 3));
+    }
+}
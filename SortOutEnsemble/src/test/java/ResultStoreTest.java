@@ -0,0 +1,42 @@
+import domain.TimeSeries;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ShouldReadWrittenResults() throws IOException {
+        File file = folder.newFile();
+        TimeSeries first = new TimeSeries();
+        first.add(3, 0.5);
+        first.add(4, 1.5);
+        TimeSeries second = new TimeSeries();
+        for (int t = 1; t <= 20000; ++t) {
+            second.addTimeValue(t / 3.0);
+        }
+        try (ResultStore store = new ResultStore(file.toPath())) {
+            store.write(1, first, 0.1, 0.2, 0.3, "Тип ансамбля: автономная модель.");
+            store.write(2, second, 1, 2, 3, "");
+        }
+
+        try (ResultStoreReader reader = new ResultStoreReader(file.toPath())) {
+            List<ResultStore.Entry> entries = reader.getEntries();
+            assertEquals(2, entries.size());
+            assertEquals(3, entries.get(0).getStartTime());
+            assertEquals(0.2, entries.get(0).getMapeTest(), 0);
+            assertEquals("Тип ансамбля: автономная модель.", entries.get(0).getDescription());
+            assertEquals(first, reader.readTimeSeries(entries.get(0)));
+            assertEquals(2, entries.get(1).getIndex());
+            assertArrayEquals(second.toArray(), reader.readValues(entries.get(1)), 0);
+        }
+    }
+}
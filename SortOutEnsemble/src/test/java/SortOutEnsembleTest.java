@@ -1,5 +1,11 @@
+import domain.Ensemble;
+import domain.Model;
+import domain.TimeSeries;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class SortOutEnsembleTest {
@@ -10,4 +16,36 @@ public class SortOutEnsembleTest {
         System.out.println(Integer.toBinaryString(3));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void ShouldStopSearchWithConfiguredBudget() throws Exception {
+        assertEquals(120, sortOutWeighted(null));
+        assertEquals(5, sortOutWeighted("5,0"));
+    }
+
+    /**
+     * Перебрать средневзвешенные ансамбли 4 авторегрессионных и 3 нечетких моделей полным перебором.
+     *
+     * @param budget значение свойства бюджета перебора (null - без ограничения).
+     * @return количество отобранных ансамблей (границы качества пропускают все ансамбли).
+     */
+    private static int sortOutWeighted(String budget) throws Exception {
+        TimeSeries timeSeries = new TimeSeries();
+        for (int i = 0; i < 120; ++i) {
+            timeSeries.addTimeValue(0.5 + 0.3 * Math.sin(i / 5.0) + 0.001 * i);
+        }
+        System.setProperty(SortOutEnsemble.SEARCH_PROPERTY, "exhaustive");
+        if (budget != null) {
+            System.setProperty(SortOutEnsemble.SEARCH_BUDGET_PROPERTY, budget);
+        }
+        SortOutEnsemble sortOut;
+        try {
+            sortOut = new SortOutEnsemble(timeSeries, true, false, true, 1e9, 1e9, 4, 0, 3, false, true, 3);
+        } finally {
+            System.clearProperty(SortOutEnsemble.SEARCH_PROPERTY);
+            System.clearProperty(SortOutEnsemble.SEARCH_BUDGET_PROPERTY);
+        }
+        List<Ensemble> weighted = new ArrayList<>();
+        sortOut.sortOut(new ArrayList<Model>(), weighted, new ArrayList<>());
+        return weighted.size();
+    }
+}
@@ -0,0 +1,96 @@
+import domain.TimeSeries;
+import domain.models.single.Arima;
+import domain.models.single.Fuzzy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimeSeriesParserTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ShouldParseAsDouble() throws IOException {
+        Random random = new Random(1);
+        String[] values = new String[1000];
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (i % 3 == 0) ? String.valueOf(random.nextDouble() * 1000) : String.valueOf(random.nextGaussian() * 1e-8);
+            content.append(i % 2 == 0 ? values[i].replace('.', ',') : values[i]).append(";\r\n");
+        }
+        TimeSeries timeSeries = new TimeSeriesParser().parse(write(content.toString()).toPath());
+
+        assertEquals(values.length, timeSeries.getSize());
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(values[i])), Double.doubleToLongBits(timeSeries.getTimeValue(i + 1)));
+        }
+    }
+
+    @Test
+    public void ShouldParseColumns() throws IOException {
+        TimeSeries timeSeries = new TimeSeriesParser().parse(write("time;value\n3;1,5\n4;2.5\n5;4\n").toPath());
+
+        assertArrayEquals(new double[]{1.5, 2.5, 4}, timeSeries.toArray(), 0);
+    }
+
+    @Test
+    public void ShouldFitModelsOnTimestampedFile() throws Exception {
+        StringBuilder content = new StringBuilder("time;value\n");
+        for (int t = 2000; t < 2060; ++t) {
+            content.append(t).append(';').append(0.5 + 0.3 * Math.sin(t / 4.0)).append('\n');
+        }
+        TimeSeries timeSeries = new TimeSeriesParser().parse(write(content.toString()).toPath());
+        assertEquals(1, timeSeries.getStartTime());
+        assertEquals(60, timeSeries.getSize());
+
+        Arima arima = new Arima(timeSeries, 2, 5, 70, 20);
+        arima.fit();
+        arima.update(arima.getForecast()[0]);
+        Fuzzy fuzzy = new Fuzzy(timeSeries, 3, 5, 70, 20);
+        fuzzy.fit();
+        assertTrue(arima.getTrainMape() < 100);
+        assertTrue(fuzzy.getTrainMape() < 100);
+        assertEquals(61, timeSeries.getSize());
+    }
+
+    @Test
+    public void ShouldKeepFirstRowWithoutHeader() throws IOException {
+        TimeSeries timeSeries = new TimeSeriesParser().parse(write("2020-01-01;1,5\n2020-01-02;2.5\n2020-01-03;4\n").toPath());
+
+        assertArrayEquals(new double[]{1.5, 2.5, 4}, timeSeries.toArray(), 0);
+    }
+
+    @Test
+    public void ShouldRejectTimestampGap() throws IOException {
+        try {
+            new TimeSeriesParser().parse(write("time;value\n3;1\n5;2\n").toPath());
+            fail();
+        } catch (TimeSeriesParseException e) {
+            assertEquals(15, e.getOffset());
+        }
+    }
+
+    @Test
+    public void ShouldReportErrorOffset() throws IOException {
+        try {
+            new TimeSeriesParser().parse(write("1,5;\n2x5;\n").toPath());
+            fail();
+        } catch (TimeSeriesParseException e) {
+            assertEquals(6, e.getOffset());
+        }
+    }
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}